@@ -0,0 +1,15 @@
+#!/bin/bash
+
+echo "Running benchmark..."
+
+# Benchmarks live outside the application build
+bash compile.sh > /dev/null || exit 1
+mkdir -p build-bench
+find src/bench/java -name "*.java" -print0 | xargs -0 javac -encoding UTF-8 -d build-bench -cp build
+
+if [ $? -ne 0 ]; then
+    echo "❌ Benchmark compilation failed!"
+    exit 1
+fi
+
+java -cp build:build-bench "${1:-com.chatapp.moderation.ModerationBenchmark}" "${@:2}"
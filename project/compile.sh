@@ -5,8 +5,8 @@ echo "Compiling Real-time Chat Application..."
 # Create build directory
 mkdir -p build
 
-# Compile all Java files
-find src -name "*.java" -print0 | xargs -0 javac -d build -cp build
+# Compile all application Java files (benchmarks are built by bench.sh)
+find src/main/java -name "*.java" -print0 | xargs -0 javac -encoding UTF-8 -d build -cp build
 
 if [ $? -eq 0 ]; then
     echo "✅ Compilation successful!"
@@ -0,0 +1,120 @@
+package com.chatapp.moderation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Throughput benchmark for the moderation scan with 10k rules
+ * Compares one Aho-Corasick pass against a String.contains loop over every rule.
+ *
+ * Run with ./bench.sh com.chatapp.moderation.ModerationBenchmark [rules] [messages]
+ */
+public class ModerationBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    
+    public static void main(String[] args) {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int messageCount = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Random random = new Random(42);
+        
+        List<ModerationRule> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            ModerationAction action = ModerationAction.values()[random.nextInt(3)];
+            rules.add(new ModerationRule(randomWord(random, 5 + random.nextInt(8)), action));
+        }
+        
+        // Typical chat lines; about one in twenty contains a banned term
+        String[] messages = new String[messageCount];
+        for (int i = 0; i < messageCount; i++) {
+            StringBuilder line = new StringBuilder();
+            int words = 5 + random.nextInt(20);
+            for (int w = 0; w < words; w++) {
+                line.append(randomWord(random, 2 + random.nextInt(7))).append(' ');
+            }
+            if (random.nextInt(20) == 0) {
+                line.append(rules.get(random.nextInt(ruleCount)).getTerm().toUpperCase(Locale.ROOT));
+            }
+            messages[i] = line.toString();
+        }
+        
+        long buildStart = System.nanoTime();
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.compile(rules);
+        System.out.printf("Compiled %d rules into %d states in %.1f ms%n",
+            automaton.getRuleCount(), automaton.getStateCount(), (System.nanoTime() - buildStart) / 1e6);
+        
+        String[] lowered = new String[ruleCount];
+        for (int i = 0; i < ruleCount; i++) {
+            lowered[i] = rules.get(i).getTerm().toLowerCase(Locale.ROOT);
+        }
+        
+        // Both strategies must agree before their speed means anything
+        int[] hits = new int[1];
+        for (String message : messages) {
+            hits[0] = 0;
+            automaton.scan(message, (rule, start, end) -> {
+                hits[0]++;
+                return true;
+            });
+            if ((hits[0] > 0) != (naiveMatches(message, lowered) > 0)) {
+                throw new IllegalStateException("Scan results differ for: " + message);
+            }
+        }
+        
+        report("aho-corasick", messages, () -> {
+            long found = 0;
+            for (String message : messages) {
+                hits[0] = 0;
+                automaton.scan(message, (rule, start, end) -> {
+                    hits[0]++;
+                    return true;
+                });
+                found += hits[0];
+            }
+            return found;
+        });
+        report("contains-loop", messages, () -> {
+            long found = 0;
+            for (String message : messages) {
+                found += naiveMatches(message, lowered);
+            }
+            return found;
+        });
+    }
+    
+    private static int naiveMatches(String message, String[] terms) {
+        String text = message.toLowerCase(Locale.ROOT);
+        int found = 0;
+        for (String term : terms) {
+            if (text.contains(term)) {
+                found++;
+            }
+        }
+        return found;
+    }
+    
+    private static void report(String name, String[] messages, LongSupplier round) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += round.getAsLong();
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += round.getAsLong();
+        }
+        double nanosPerMessage = (double) (System.nanoTime() - start) / MEASURED_ROUNDS / messages.length;
+        System.out.printf("%-14s %10.0f ns/message  (%d)%n", name, nanosPerMessage, sink);
+    }
+    
+    private static String randomWord(Random random, int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.chatapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Latency benchmark for delivering one message to every session of a room
+ * Compares delivery on the calling thread against chunked fork-join fan-out for growing rooms.
+ * Each recipient encodes the message into its own buffer, standing in for a session's send path.
+ *
+ * Run with ./bench.sh com.chatapp.service.FanOutBenchmark [max room size] [threads] [chunk]
+ */
+public class FanOutBenchmark {
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+    private static final String MESSAGE = "[12:00:00] alice: has everyone seen the release notes for today?";
+    
+    public static void main(String[] args) {
+        int maxRoomSize = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int chunk = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        
+        ForkJoinPool pool = FanOutExecutor.newPool(threads);
+        FanOutExecutor sequential = new FanOutExecutor(Integer.MAX_VALUE, chunk, pool);
+        FanOutExecutor parallel = new FanOutExecutor(0, chunk, pool);
+        System.out.printf("%d fan-out threads, chunks of %d recipients%n", threads, chunk);
+        System.out.printf("%10s %14s %14s %8s%n", "recipients", "sequential us", "fork-join us", "speedup");
+        
+        for (int size = 1_000; size <= maxRoomSize; size *= 10) {
+            Session[] sessions = new Session[size];
+            for (int i = 0; i < size; i++) {
+                sessions[i] = new Session();
+            }
+            
+            double sequentialMicros = measure(sequential, sessions);
+            double parallelMicros = measure(parallel, sessions);
+            
+            // Every session must have seen every round exactly once before timings mean anything
+            long expected = 2L * (WARMUP_ROUNDS + MEASURED_ROUNDS);
+            for (Session session : sessions) {
+                if (session.delivered != expected) {
+                    throw new IllegalStateException("Session saw " + session.delivered + " of " + expected + " messages");
+                }
+            }
+            System.out.printf("%10d %14.1f %14.1f %7.2fx%n",
+                size, sequentialMicros, parallelMicros, sequentialMicros / parallelMicros);
+        }
+        pool.shutdown();
+    }
+    
+    private static double measure(FanOutExecutor executor, Session[] sessions) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            executor.fanOut(sessions, Session::deliver);
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            executor.fanOut(sessions, Session::deliver);
+        }
+        return (System.nanoTime() - start) / 1e3 / MEASURED_ROUNDS;
+    }
+    
+    private static final class Session {
+        private final byte[] buffer = new byte[128];
+        private long delivered;
+        private int checksum;
+        
+        void deliver() {
+            byte[] encoded = MESSAGE.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(encoded, 0, buffer, 0, encoded.length);
+            for (byte b : encoded) {
+                checksum = checksum * 31 + b;
+            }
+            delivered++;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.chatapp.adapter;
 
 import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.ReactionUpdate;
 import com.chatapp.model.User;
 
+import java.util.List;
+
 /**
  * ADAPTER PATTERN (Structural)
  * Interface for different communication protocols
@@ -12,6 +16,10 @@ public interface CommunicationAdapter {
     void sendMessage(Message message);
     void notifyUserJoined(User user, String roomId);
     void notifyUserLeft(User user, String roomId);
+    void notifyTyping(List<User> typingUsers, String roomId);
+    void notifyMessageEdited(MessageEdit edit, String roomId);
+    void notifyReplyCount(long parentId, int replyCount, String roomId);
+    void notifyReactions(List<ReactionUpdate> updates, String roomId);
     void displaySystemMessage(String message);
     boolean isConnected();
     void connect();
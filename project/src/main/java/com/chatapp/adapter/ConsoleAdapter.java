@@ -2,10 +2,15 @@ package com.chatapp.adapter;
 
 import com.chatapp.logger.Logger;
 import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.AttachmentRef;
 import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.ReactionUpdate;
 import com.chatapp.model.User;
 
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * ADAPTER PATTERN (Structural) - Concrete Adapter
@@ -45,6 +50,13 @@ public class ConsoleAdapter implements CommunicationAdapter {
                     message.getSender().getUsername(),
                     message.getContent());
             }
+            if (message.hasAttachment()) {
+                AttachmentRef attachment = message.getAttachment();
+                System.out.printf("   📎 %s (%d bytes) [%s]%n",
+                    attachment.getFileName(),
+                    attachment.getSize(),
+                    attachment.getShortId());
+            }
             
             logger.debug("Message sent via console adapter: " + message.getMessageId());
             
@@ -81,6 +93,67 @@ public class ConsoleAdapter implements CommunicationAdapter {
         }
     }
     
+    @Override
+    public void notifyTyping(List<User> typingUsers, String roomId) {
+        if (!connected || typingUsers.isEmpty()) {
+            return;
+        }
+        
+        try {
+            String names = typingUsers.stream().map(User::getUsername).collect(Collectors.joining(", "));
+            System.out.println("✏️ " + names + (typingUsers.size() == 1 ? " is" : " are") + " typing in " + roomId + "...");
+        } catch (Exception e) {
+            logger.error("Error sending typing notification", e);
+        }
+    }
+    
+    @Override
+    public void notifyMessageEdited(MessageEdit edit, String roomId) {
+        if (!connected) {
+            return;
+        }
+        
+        try {
+            if (edit.isDeletion()) {
+                System.out.println("🗑️ Message " + edit.getMessageId() + " in " + roomId + " was deleted");
+            } else {
+                System.out.println("✏️ Message " + edit.getMessageId() + " in " + roomId + " edited: " + edit.getContent());
+            }
+        } catch (Exception e) {
+            logger.error("Error sending message edit notification", e);
+        }
+    }
+    
+    @Override
+    public void notifyReplyCount(long parentId, int replyCount, String roomId) {
+        if (!connected) {
+            return;
+        }
+        
+        try {
+            System.out.println("🧵 Message " + parentId + " in " + roomId + " has " + replyCount +
+                               (replyCount == 1 ? " reply" : " replies"));
+        } catch (Exception e) {
+            logger.error("Error sending reply count notification", e);
+        }
+    }
+    
+    @Override
+    public void notifyReactions(List<ReactionUpdate> updates, String roomId) {
+        if (!connected || updates.isEmpty()) {
+            return;
+        }
+        
+        try {
+            for (ReactionUpdate update : updates) {
+                System.out.println(update.getEmoji() + " Message " + update.getMessageId() + " in " + roomId +
+                                   " now has " + update.getCount() + " (" + String.format("%+d", update.getDelta()) + ")");
+            }
+        } catch (Exception e) {
+            logger.error("Error sending reaction notification", e);
+        }
+    }
+    
     @Override
     public void displaySystemMessage(String message) {
         if (!connected) {
@@ -0,0 +1,260 @@
+package com.chatapp.adapter;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.ReactionUpdate;
+import com.chatapp.model.User;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * DECORATOR PATTERN (Structural)
+ * Outbound delivery scheduler for one connection, wrapping any communication adapter
+ *
+ * Events are queued into three lanes - system notices, chat messages and presence updates - and
+ * drained by weighted rounds, so a burst in one lane delays the others by at most one round
+ * instead of queueing them behind it. Once the presence lane is congested, a join, leave or typing
+ * update replaces the pending one for the same user and room rather than adding another.
+ */
+public class PrioritizedDeliveryAdapter implements CommunicationAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(PrioritizedDeliveryAdapter.class);
+    private static final int DEFAULT_COALESCE_THRESHOLD = 64;
+    
+    // Shared by all connections; a connection drains on at most one thread at a time
+    private static final ExecutorService DELIVERY_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "adapter-delivery");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public enum Lane {
+        SYSTEM(8),
+        MESSAGE(4),
+        PRESENCE(1);
+        
+        // Deliveries taken from the lane per round
+        private final int defaultWeight;
+        
+        Lane(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+        
+        public int getDefaultWeight() {
+            return defaultWeight;
+        }
+    }
+    
+    private final CommunicationAdapter delegate;
+    private final Executor executor;
+    private final EnumMap<Lane, Integer> weights;
+    private final int coalesceThreshold;
+    private final EnumMap<Lane, ArrayDeque<Delivery>> lanes;
+    // Pending presence deliveries by user and room, for coalescing
+    private final Map<String, Delivery> pendingPresence;
+    // Serializes delivery: only the thread that moves this from 0 runs the drain loop
+    private final AtomicInteger wip;
+    private final AtomicLong coalescedCount;
+    
+    public PrioritizedDeliveryAdapter(CommunicationAdapter delegate) {
+        this(delegate, DELIVERY_POOL, defaultWeights(), DEFAULT_COALESCE_THRESHOLD);
+    }
+    
+    public PrioritizedDeliveryAdapter(CommunicationAdapter delegate, Executor executor,
+                                      Map<Lane, Integer> weights, int coalesceThreshold) {
+        if (delegate == null || executor == null) {
+            throw new IllegalArgumentException("Delegate adapter and executor cannot be null");
+        }
+        if (weights == null || !weights.keySet().containsAll(List.of(Lane.values()))) {
+            throw new IllegalArgumentException("A weight is required for every lane");
+        }
+        if (weights.values().stream().anyMatch(weight -> weight <= 0)) {
+            throw new IllegalArgumentException("Lane weights must be positive");
+        }
+        if (coalesceThreshold < 0) {
+            throw new IllegalArgumentException("Coalesce threshold cannot be negative");
+        }
+        
+        this.delegate = delegate;
+        this.executor = executor;
+        this.weights = new EnumMap<>(weights);
+        this.coalesceThreshold = coalesceThreshold;
+        this.lanes = new EnumMap<>(Lane.class);
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new ArrayDeque<>());
+        }
+        this.pendingPresence = new HashMap<>();
+        this.wip = new AtomicInteger();
+        this.coalescedCount = new AtomicLong();
+        logger.debug("Prioritized delivery enabled for " + delegate.getProtocolType() + " adapter");
+    }
+    
+    public static Map<Lane, Integer> defaultWeights() {
+        EnumMap<Lane, Integer> weights = new EnumMap<>(Lane.class);
+        for (Lane lane : Lane.values()) {
+            weights.put(lane, lane.getDefaultWeight());
+        }
+        return weights;
+    }
+    
+    @Override
+    public void sendMessage(Message message) {
+        enqueue(Lane.MESSAGE, null, adapter -> adapter.sendMessage(message));
+    }
+    
+    // Same lane as messages, so an edit never overtakes the message it changes
+    @Override
+    public void notifyMessageEdited(MessageEdit edit, String roomId) {
+        enqueue(Lane.MESSAGE, null, adapter -> adapter.notifyMessageEdited(edit, roomId));
+    }
+    
+    // Only the latest count of a thread matters, so congested updates coalesce like presence
+    @Override
+    public void notifyReplyCount(long parentId, int replyCount, String roomId) {
+        enqueue(Lane.MESSAGE, "replies:" + roomId + ":" + parentId, adapter -> adapter.notifyReplyCount(parentId, replyCount, roomId));
+    }
+    
+    // Not coalesced: each batch carries deltas, so replacing one would lose counts
+    @Override
+    public void notifyReactions(List<ReactionUpdate> updates, String roomId) {
+        List<ReactionUpdate> snapshot = List.copyOf(updates);
+        enqueue(Lane.MESSAGE, null, adapter -> adapter.notifyReactions(snapshot, roomId));
+    }
+    
+    @Override
+    public void notifyUserJoined(User user, String roomId) {
+        enqueue(Lane.PRESENCE, "presence:" + roomId + ":" + user.getId(), adapter -> adapter.notifyUserJoined(user, roomId));
+    }
+    
+    @Override
+    public void notifyUserLeft(User user, String roomId) {
+        enqueue(Lane.PRESENCE, "presence:" + roomId + ":" + user.getId(), adapter -> adapter.notifyUserLeft(user, roomId));
+    }
+    
+    @Override
+    public void notifyTyping(List<User> typingUsers, String roomId) {
+        List<User> snapshot = List.copyOf(typingUsers);
+        enqueue(Lane.PRESENCE, "typing:" + roomId, adapter -> adapter.notifyTyping(snapshot, roomId));
+    }
+    
+    @Override
+    public void displaySystemMessage(String message) {
+        enqueue(Lane.SYSTEM, null, adapter -> adapter.displaySystemMessage(message));
+    }
+    
+    @Override
+    public boolean isConnected() {
+        return delegate.isConnected();
+    }
+    
+    @Override
+    public void connect() {
+        delegate.connect();
+    }
+    
+    /**
+     * Disconnects the underlying adapter; deliveries still queued are dropped
+     */
+    @Override
+    public void disconnect() {
+        synchronized (lanes) {
+            lanes.values().forEach(ArrayDeque::clear);
+            pendingPresence.clear();
+        }
+        delegate.disconnect();
+    }
+    
+    @Override
+    public String getProtocolType() {
+        return delegate.getProtocolType();
+    }
+    
+    public int getPendingCount(Lane lane) {
+        synchronized (lanes) {
+            return lanes.get(lane).size();
+        }
+    }
+    
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+    
+    private void enqueue(Lane lane, String coalesceKey, Consumer<CommunicationAdapter> action) {
+        synchronized (lanes) {
+            ArrayDeque<Delivery> queue = lanes.get(lane);
+            Delivery pending = coalesceKey != null ? pendingPresence.get(coalesceKey) : null;
+            if (pending != null && queue.size() >= coalesceThreshold) {
+                // Keeps its place in the lane; only the latest state is delivered
+                pending.action = action;
+                coalescedCount.incrementAndGet();
+            } else {
+                Delivery delivery = new Delivery(coalesceKey, action);
+                queue.add(delivery);
+                if (coalesceKey != null) {
+                    pendingPresence.put(coalesceKey, delivery);
+                }
+            }
+        }
+        
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(this::drainLoop);
+        }
+    }
+    
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            List<Delivery> round;
+            while (!(round = nextRound()).isEmpty()) {
+                for (Delivery delivery : round) {
+                    try {
+                        delivery.action.accept(delegate);
+                    } catch (RuntimeException e) {
+                        logger.error("Delivery via " + delegate.getProtocolType() + " adapter failed", e);
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+    
+    // Takes up to each lane's weight, highest priority first
+    private List<Delivery> nextRound() {
+        synchronized (lanes) {
+            List<Delivery> round = new ArrayList<>();
+            for (Lane lane : Lane.values()) {
+                ArrayDeque<Delivery> queue = lanes.get(lane);
+                for (int i = weights.get(lane); i > 0 && !queue.isEmpty(); i--) {
+                    Delivery delivery = queue.poll();
+                    if (delivery.coalesceKey != null) {
+                        pendingPresence.remove(delivery.coalesceKey, delivery);
+                    }
+                    round.add(delivery);
+                }
+            }
+            return round;
+        }
+    }
+    
+    private static final class Delivery {
+        private final String coalesceKey;
+        private Consumer<CommunicationAdapter> action; // guarded by lanes
+        
+        private Delivery(String coalesceKey, Consumer<CommunicationAdapter> action) {
+            this.coalesceKey = coalesceKey;
+            this.action = action;
+        }
+    }
+}
\ No newline at end of file
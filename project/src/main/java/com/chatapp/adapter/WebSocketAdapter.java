@@ -2,9 +2,15 @@ package com.chatapp.adapter;
 
 import com.chatapp.logger.Logger;
 import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.AttachmentRef;
 import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.ReactionUpdate;
 import com.chatapp.model.User;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * ADAPTER PATTERN (Structural) - Concrete Adapter
  * Simulates WebSocket communication adapter
@@ -79,6 +85,94 @@ public class WebSocketAdapter implements CommunicationAdapter {
         }
     }
     
+    @Override
+    public void notifyTyping(List<User> typingUsers, String roomId) {
+        if (!connected) {
+            return;
+        }
+        
+        try {
+            String users = typingUsers.stream()
+                .map(user -> "\"" + user.getUsername() + "\"")
+                .collect(Collectors.joining(","));
+            String notification = String.format(
+                "{\"type\":\"typing\",\"room\":\"%s\",\"users\":[%s],\"timestamp\":\"%d\"}",
+                roomId, users, System.currentTimeMillis());
+            
+            simulateWebSocketSend(notification);
+            logger.debug("Typing update sent via WebSocket for room: " + roomId);
+            
+        } catch (Exception e) {
+            logger.error("Error sending typing update via WebSocket", e);
+        }
+    }
+    
+    @Override
+    public void notifyMessageEdited(MessageEdit edit, String roomId) {
+        if (!connected) {
+            return;
+        }
+        
+        try {
+            // Only the changed fields travel; clients patch the message they already hold
+            String notification = edit.isDeletion()
+                ? String.format(
+                    "{\"type\":\"message_deleted\",\"room\":\"%s\",\"messageId\":\"%d\",\"revision\":%d,\"timestamp\":\"%d\"}",
+                    roomId, edit.getMessageId(), edit.getRevision(), edit.getEditedAtMillis())
+                : String.format(
+                    "{\"type\":\"message_edited\",\"room\":\"%s\",\"messageId\":\"%d\",\"revision\":%d,\"content\":\"%s\",\"timestamp\":\"%d\"}",
+                    roomId, edit.getMessageId(), edit.getRevision(), escapeJson(edit.getContent()), edit.getEditedAtMillis());
+            
+            simulateWebSocketSend(notification);
+            logger.debug("Message edit sent via WebSocket: " + edit.getMessageId());
+            
+        } catch (Exception e) {
+            logger.error("Error sending message edit via WebSocket", e);
+        }
+    }
+    
+    @Override
+    public void notifyReplyCount(long parentId, int replyCount, String roomId) {
+        if (!connected) {
+            return;
+        }
+        
+        try {
+            String notification = String.format(
+                "{\"type\":\"reply_count\",\"room\":\"%s\",\"messageId\":\"%d\",\"replies\":%d,\"timestamp\":\"%d\"}",
+                roomId, parentId, replyCount, System.currentTimeMillis());
+            
+            simulateWebSocketSend(notification);
+            logger.debug("Reply count sent via WebSocket for message: " + parentId);
+            
+        } catch (Exception e) {
+            logger.error("Error sending reply count via WebSocket", e);
+        }
+    }
+    
+    @Override
+    public void notifyReactions(List<ReactionUpdate> updates, String roomId) {
+        if (!connected || updates.isEmpty()) {
+            return;
+        }
+        
+        try {
+            String reactions = updates.stream()
+                .map(update -> String.format("{\"messageId\":\"%d\",\"emoji\":\"%s\",\"delta\":%d,\"count\":%d}",
+                    update.getMessageId(), update.getEmoji(), update.getDelta(), update.getCount()))
+                .collect(Collectors.joining(","));
+            String notification = String.format(
+                "{\"type\":\"reactions\",\"room\":\"%s\",\"reactions\":[%s],\"timestamp\":\"%d\"}",
+                roomId, reactions, System.currentTimeMillis());
+            
+            simulateWebSocketSend(notification);
+            logger.debug("Reaction update of " + updates.size() + " counts sent via WebSocket for room: " + roomId);
+            
+        } catch (Exception e) {
+            logger.error("Error sending reactions via WebSocket", e);
+        }
+    }
+    
     @Override
     public void displaySystemMessage(String message) {
         if (!connected) {
@@ -139,13 +233,29 @@ public class WebSocketAdapter implements CommunicationAdapter {
     
     private String formatMessageAsJson(Message message) {
         return String.format(
-            "{\"type\":\"%s\",\"messageId\":\"%s\",\"sender\":\"%s\",\"content\":\"%s\",\"timestamp\":\"%s\"%s}",
+            "{\"type\":\"%s\",\"messageId\":\"%s\",\"sender\":\"%s\",\"content\":\"%s\",\"timestamp\":\"%s\"%s%s%s%s%s}",
             message.isPrivate() ? "private_message" : "public_message",
             message.getMessageId(),
             message.getSender().getUsername(),
             escapeJson(message.getContent()),
             message.getTimestamp().toString(),
-            message.isPrivate() ? ",\"recipient\":\"" + message.getRecipient().getUsername() + "\"" : ""
+            // Clients compare consecutive sequences to detect gaps and request the missing range
+            message.getSequence() != Message.NO_SEQUENCE ? ",\"seq\":" + message.getSequence() : "",
+            message.isEdited() ? ",\"revision\":" + message.getRevision() : "",
+            message.isReply() ? ",\"parentId\":\"" + message.getParentId() + "\"" : "",
+            message.isPrivate() ? ",\"recipient\":\"" + message.getRecipient().getUsername() + "\"" : "",
+            message.hasAttachment() ? ",\"attachment\":" + formatAttachmentAsJson(message.getAttachment()) : ""
+        );
+    }
+    
+    // Clients fetch the bytes separately by digest; only the reference travels with the message
+    private String formatAttachmentAsJson(AttachmentRef attachment) {
+        return String.format(
+            "{\"sha256\":\"%s\",\"fileName\":\"%s\",\"size\":%d,\"contentType\":\"%s\"}",
+            attachment.getSha256(),
+            escapeJson(attachment.getFileName()),
+            attachment.getSize(),
+            escapeJson(attachment.getContentType())
         );
     }
     
@@ -2,18 +2,47 @@ package com.chatapp.controller;
 
 import com.chatapp.adapter.CommunicationAdapter;
 import com.chatapp.adapter.ConsoleAdapter;
+import com.chatapp.adapter.PrioritizedDeliveryAdapter;
 import com.chatapp.exceptions.ChatException;
 import com.chatapp.logger.Logger;
 import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.AttachmentRef;
 import com.chatapp.model.ChatRoom;
 import com.chatapp.model.Message;
 import com.chatapp.model.User;
+import com.chatapp.observer.AdapterChatObserver;
+import com.chatapp.observer.ChatNotificationService;
+import com.chatapp.persistence.AttachmentStore;
+import com.chatapp.persistence.SnapshotService;
+import com.chatapp.persistence.WriteAheadLog;
 import com.chatapp.service.ChatRoomManager;
+import com.chatapp.service.DirectMessageService;
 import com.chatapp.service.MessageHistoryService;
+import com.chatapp.service.MessageSendService;
+import com.chatapp.service.MessageView;
+import com.chatapp.service.ReactionService;
+import com.chatapp.service.ReadReceiptService;
+import com.chatapp.service.ResyncResult;
+import com.chatapp.service.RoomEventLoops;
+import com.chatapp.service.RoomSummary;
+import com.chatapp.service.SessionService;
 import com.chatapp.service.UserService;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -25,24 +54,51 @@ public class ChatController {
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
     private static volatile ChatController instance;
     private static final Object lock = new Object();
+    private static final DateTimeFormatter TIME_FORMAT =
+        DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final int ROOM_PAGE_SIZE = 10;
+    private static final int THREAD_PAGE_SIZE = 10;
     
     private final ChatRoomManager chatRoomManager;
     private final UserService userService;
     private final MessageHistoryService messageHistoryService;
+    private final SnapshotService snapshotService;
+    private final WriteAheadLog writeAheadLog;
+    private final MessageSendService messageSendService;
+    private final DirectMessageService directMessageService;
+    private final ReadReceiptService readReceiptService;
+    private final ReactionService reactionService;
+    private final AttachmentStore attachmentStore;
+    private final SessionService sessionService;
     private final CommunicationAdapter communicationAdapter;
     private final AtomicBoolean applicationRunning;
     private final Scanner scanner;
+    // Latest sequence number seen per room, used to resync only the delta on rejoin
+    private final Map<String, Long> lastSeenSequences;
     
     private User currentUser;
     private ChatRoom currentRoom;
+    private SessionService.Session currentSession;
+    // Per-session delivery: the adapter forwards room events, digests replace per-message output
+    private AdapterChatObserver sessionObserver;
+    private ChatNotificationService notificationService;
     
     private ChatController() {
         this.chatRoomManager = ChatRoomManager.getInstance();
         this.userService = UserService.getInstance();
         this.messageHistoryService = MessageHistoryService.getInstance();
-        this.communicationAdapter = new ConsoleAdapter();
+        this.snapshotService = SnapshotService.getInstance();
+        this.writeAheadLog = WriteAheadLog.getInstance();
+        this.messageSendService = MessageSendService.getInstance();
+        this.directMessageService = DirectMessageService.getInstance();
+        this.readReceiptService = ReadReceiptService.getInstance();
+        this.reactionService = ReactionService.getInstance();
+        this.attachmentStore = AttachmentStore.getInstance();
+        this.sessionService = SessionService.getInstance();
+        this.communicationAdapter = new PrioritizedDeliveryAdapter(new ConsoleAdapter());
         this.applicationRunning = new AtomicBoolean(false);
         this.scanner = new Scanner(System.in);
+        this.lastSeenSequences = new HashMap<>();
         logger.info("Chat Controller initialized");
     }
     
@@ -60,7 +116,12 @@ public class ChatController {
     public void startApplication() throws ChatException {
         try {
             applicationRunning.set(true);
+            snapshotService.restore();
+            writeAheadLog.replay();
+            writeAheadLog.start();
+            snapshotService.startPeriodicSnapshots();
             showWelcomeMessage();
+            communicationAdapter.connect();
             authenticateUser();
             runMainLoop();
         } catch (Exception e) {
@@ -78,7 +139,7 @@ public class ChatController {
     }
     
     private void authenticateUser() {
-        System.out.print("\n👤 Enter your username: ");
+        System.out.print("\n👤 Enter your username (or a session token to resume): ");
         String username = scanner.nextLine().trim();
         
         if (username.isEmpty()) {
@@ -87,11 +148,60 @@ public class ChatController {
             return;
         }
         
-        currentUser = userService.createOrGetUser(username);
-        System.out.println("✅ Welcome, " + currentUser.getUsername() + "!");
+        if (sessionService.looksLikeToken(username)) {
+            if (!resumeSession(username)) {
+                System.out.println("❌ Session token is invalid or expired. Please sign in again.");
+                authenticateUser();
+            }
+            return;
+        }
+        
+        User user = userService.createOrGetUser(username);
+        startSession(user, sessionService.openSession(user));
+        System.out.println("🔑 Session token (use it to resume): " + currentSession.getToken());
         logger.info("User authenticated: " + username);
     }
     
+    // Verified locally from the token signature; room memberships come from the session cache
+    private boolean resumeSession(String token) {
+        SessionService.Session session = sessionService.resume(token);
+        User user = session != null ? userService.getUserById(session.getUserId()) : null;
+        if (user == null) {
+            return false;
+        }
+        
+        startSession(user, session);
+        for (String roomId : session.getRoomIds()) {
+            ChatRoom room = chatRoomManager.getRoomById(roomId);
+            if (room == null) {
+                session.roomLeft(roomId);
+                continue;
+            }
+            if (!room.isUserInRoom(user)) {
+                room.addUser(user);
+            }
+            if (roomId.equals(session.getActiveRoomId())) {
+                attachSession(room);
+                currentRoom = room;
+            }
+        }
+        
+        System.out.println("🔄 Session resumed" + (currentRoom != null ? " in room: " + currentRoom.getRoomId() : ""));
+        logger.info("Session resumed for " + user.getUsername());
+        return true;
+    }
+    
+    private void startSession(User user, SessionService.Session session) {
+        currentUser = user;
+        currentSession = session;
+        if (!currentUser.isOnline()) {
+            currentUser.setOnline(true);
+        }
+        System.out.println("✅ Welcome, " + currentUser.getUsername() + "!");
+        directMessageService.connect(currentUser, this::receiveDirectMessages);
+        notificationService = new ChatNotificationService();
+    }
+    
     private void runMainLoop() {
         while (applicationRunning.get()) {
             try {
@@ -115,10 +225,11 @@ public class ChatController {
         System.out.println("1. Join Existing Room");
         System.out.println("2. Create New Room");
         System.out.println("3. List Active Rooms");
-        System.out.println("4. Exit Application");
-        System.out.print("Choose option (1-4): ");
+        System.out.println("4. Direct Messages" + unreadBadge(directMessageService.getTotalUnreadCount(currentUser)));
+        System.out.println("5. Exit Application");
+        System.out.print("Choose option (1-5): ");
         
-        int choice = getValidChoice(1, 4);
+        int choice = getValidChoice(1, 5);
         processRoomChoice(choice);
     }
     
@@ -130,10 +241,16 @@ public class ChatController {
         System.out.println("2. View Recent Messages");
         System.out.println("3. View Active Users");
         System.out.println("4. Send Private Message");
-        System.out.println("5. Leave Room");
-        System.out.print("Choose option (1-5): ");
+        System.out.println("5. Share File");
+        System.out.println("6. Save Attachment");
+        System.out.println("7. Notification Mode: " + notificationService.getDeliveryMode());
+        System.out.println("8. Edit or Delete a Message");
+        System.out.println("9. Open a Thread");
+        System.out.println("10. React to a Message");
+        System.out.println("11. Leave Room");
+        System.out.print("Choose option (1-11): ");
         
-        int choice = getValidChoice(1, 5);
+        int choice = getValidChoice(1, 11);
         processChatChoice(choice);
     }
     
@@ -156,7 +273,8 @@ public class ChatController {
             case 1 -> joinExistingRoom();
             case 2 -> createNewRoom();
             case 3 -> listActiveRooms();
-            case 4 -> {
+            case 4 -> openDirectMessages();
+            case 5 -> {
                 applicationRunning.set(false);
                 System.out.println("👋 Goodbye! Thanks for using our chat application.");
             }
@@ -169,7 +287,13 @@ public class ChatController {
             case 2 -> viewRecentMessages();
             case 3 -> viewActiveUsers();
             case 4 -> sendPrivateMessage();
-            case 5 -> leaveRoom();
+            case 5 -> shareFile();
+            case 6 -> saveAttachment();
+            case 7 -> toggleNotificationMode();
+            case 8 -> editOwnMessage();
+            case 9 -> openThread();
+            case 10 -> reactToMessage();
+            case 11 -> leaveRoom();
         }
     }
     
@@ -190,15 +314,20 @@ public class ChatController {
             }
             
             room.addUser(currentUser);
+            attachSession(room);
             currentRoom = room;
+            currentSession.roomJoined(roomId);
             System.out.println("✅ Successfully joined room: " + roomId);
             
-            // Show message history
-            List<Message> history = messageHistoryService.getMessageHistory(roomId);
-            if (!history.isEmpty()) {
+            // Show only what was missed if this room was visited before, otherwise recent history
+            Long lastSeenSequence = lastSeenSequences.get(roomId);
+            if (lastSeenSequence != null) {
+                showMissedMessages(roomId, lastSeenSequence);
+            } else if (messageHistoryService.getMessageCount(roomId) > 0) {
                 System.out.println("\n📜 Recent Messages:");
-                history.stream().limit(5).forEach(this::displayMessage);
+                messageHistoryService.visitRecentMessages(roomId, 5, this::displayMessage);
             }
+            markRoomRead();
             
         } catch (Exception e) {
             logger.error("Error joining room: " + roomId, e);
@@ -217,7 +346,9 @@ public class ChatController {
         
         try {
             ChatRoom room = chatRoomManager.createRoom(roomId, currentUser);
+            attachSession(room);
             currentRoom = room;
+            currentSession.roomJoined(roomId);
             System.out.println("✅ Room '" + roomId + "' created successfully!");
             System.out.println("🎉 You are now the room administrator.");
             
@@ -228,57 +359,96 @@ public class ChatController {
     }
     
     private void listActiveRooms() {
-        List<ChatRoom> activeRooms = chatRoomManager.getActiveRooms();
-        
-        if (activeRooms.isEmpty()) {
+        if (chatRoomManager.getTotalRooms() == 0) {
             System.out.println("📭 No active rooms available.");
             return;
         }
         
-        System.out.println("\n🏠 Active Rooms:");
-        System.out.println("-".repeat(50));
-        for (ChatRoom room : activeRooms) {
-            System.out.printf("🏠 %-15s | 👥 %d users | 📅 Created: %s%n",
-                room.getRoomId(),
-                room.getActiveUsers().size(),
-                room.getCreatedAt().toString().substring(0, 19));
+        System.out.print("🔍 Room ID prefix to search (blank for all rooms): ");
+        String prefix = scanner.nextLine().trim();
+        
+        // Pages are read from the room directory; each continues after the last entry shown
+        RoomSummary last = null;
+        while (true) {
+            List<RoomSummary> page = prefix.isEmpty()
+                ? chatRoomManager.listRooms(last, ROOM_PAGE_SIZE)
+                : chatRoomManager.searchRooms(prefix, last, ROOM_PAGE_SIZE);
+            
+            if (page.isEmpty()) {
+                System.out.println(last == null ? "📭 No rooms match '" + prefix + "'." : "📭 No more rooms.");
+                return;
+            }
+            
+            if (last == null) {
+                System.out.println("\n🏠 Active Rooms:");
+                System.out.println("-".repeat(50));
+            }
+            for (RoomSummary room : page) {
+                System.out.printf("🏠 %-15s | 👥 %d users | 📅 Created: %s%n",
+                    room.getRoomId(),
+                    room.getMemberCount(),
+                    room.getCreatedAt().toString().substring(0, 19));
+            }
+            last = page.get(page.size() - 1);
+            
+            if (page.size() < ROOM_PAGE_SIZE) {
+                return;
+            }
+            System.out.print("More rooms? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                return;
+            }
         }
     }
     
     private void sendMessage() {
         System.out.print("💬 Enter your message: ");
+        currentRoom.setTyping(currentUser, true);
         String content = scanner.nextLine().trim();
         
         if (content.isEmpty()) {
+            currentRoom.setTyping(currentUser, false);
             System.out.println("❌ Message cannot be empty!");
             return;
         }
         
-        try {
-            Message message = new Message(currentUser, content);
-            currentRoom.broadcastMessage(message);
-            messageHistoryService.saveMessage(currentRoom.getRoomId(), message);
-            
-            System.out.println("✅ Message sent successfully!");
-            
-        } catch (Exception e) {
-            logger.error("Error sending message", e);
-            System.out.println("❌ Failed to send message: " + e.getMessage());
+        // Retries reuse the nonce, so a send that did go through is not delivered twice
+        long nonce = ThreadLocalRandom.current().nextLong();
+        while (true) {
+            try {
+                Message message = messageSendService.sendMessage(currentRoom, new Message(currentUser, content), nonce);
+                readReceiptService.markRead(currentRoom, currentUser, message.getSequence());
+                
+                System.out.println("✅ Message sent successfully!");
+                return;
+                
+            } catch (ChatException e) {
+                logger.error("Error sending message", e);
+                System.out.println("❌ Failed to send message: " + e.getMessage());
+                System.out.print("🔁 Retry? (y/n): ");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                    return;
+                }
+                
+            } catch (Exception e) {
+                logger.error("Error sending message", e);
+                System.out.println("❌ Failed to send message: " + e.getMessage());
+                return;
+            }
         }
     }
     
     private void viewRecentMessages() {
         try {
-            List<Message> messages = messageHistoryService.getMessageHistory(currentRoom.getRoomId());
-            
-            if (messages.isEmpty()) {
+            if (messageHistoryService.getMessageCount(currentRoom.getRoomId()) == 0) {
                 System.out.println("📭 No messages in this room yet.");
                 return;
             }
             
             System.out.println("\n📜 Recent Messages (Last 10):");
             System.out.println("-".repeat(50));
-            messages.stream().limit(10).forEach(this::displayMessage);
+            messageHistoryService.visitRecentMessages(currentRoom.getRoomId(), 10, this::displayMessageWithReceipt);
+            markRoomRead();
             
         } catch (Exception e) {
             logger.error("Error retrieving messages", e);
@@ -286,6 +456,159 @@ public class ChatController {
         }
     }
     
+    private void editOwnMessage() {
+        List<Message> ownMessages = new ArrayList<>();
+        messageHistoryService.visitRecentMessages(currentRoom.getRoomId(), 10, view -> {
+            if (!view.isPrivate() && currentUser.getUsername().equals(view.getSenderName())) {
+                ownMessages.add(view.toMessage());
+            }
+        });
+        
+        if (ownMessages.isEmpty()) {
+            System.out.println("📭 You have no recent messages in this room.");
+            return;
+        }
+        
+        System.out.println("\n✏️ Your Recent Messages:");
+        for (int i = 0; i < ownMessages.size(); i++) {
+            System.out.println((i + 1) + ". " + ownMessages.get(i).getContent());
+        }
+        System.out.print("Select message (1-" + ownMessages.size() + "): ");
+        Message selected = ownMessages.get(getValidChoice(1, ownMessages.size()) - 1);
+        
+        System.out.print("Edit or delete? (e/d): ");
+        String action = scanner.nextLine().trim();
+        try {
+            if (action.equalsIgnoreCase("d")) {
+                messageSendService.deleteMessage(currentRoom, currentUser, selected.getId());
+                System.out.println("✅ Message deleted.");
+            } else if (action.equalsIgnoreCase("e")) {
+                System.out.print("💬 Enter the new text: ");
+                String content = scanner.nextLine().trim();
+                if (content.isEmpty()) {
+                    System.out.println("❌ Message cannot be empty!");
+                    return;
+                }
+                messageSendService.editMessage(currentRoom, currentUser, selected.getId(), content);
+                System.out.println("✅ Message edited.");
+            } else {
+                System.out.println("❌ Please enter e or d.");
+            }
+            
+        } catch (Exception e) {
+            logger.error("Error editing message", e);
+            System.out.println("❌ Failed to change message: " + e.getMessage());
+        }
+    }
+    
+    private void openThread() {
+        List<Message> recent = new ArrayList<>();
+        messageHistoryService.visitRecentMessages(currentRoom.getRoomId(), 10, view -> {
+            if (!view.isPrivate()) {
+                recent.add(view.toMessage());
+            }
+        });
+        
+        if (recent.isEmpty()) {
+            System.out.println("📭 No messages in this room yet.");
+            return;
+        }
+        
+        System.out.println("\n🧵 Recent Messages:");
+        for (int i = 0; i < recent.size(); i++) {
+            Message message = recent.get(i);
+            int replies = messageHistoryService.getReplyCount(currentRoom.getRoomId(), message.getId());
+            System.out.println((i + 1) + ". " + message.getSender().getUsername() + ": " + message.getContent() +
+                               (replies > 0 ? " (" + replies + (replies == 1 ? " reply)" : " replies)") : ""));
+        }
+        System.out.print("Select message (1-" + recent.size() + "): ");
+        Message parent = recent.get(getValidChoice(1, recent.size()) - 1);
+        
+        // Replies are only loaded now, newest page first
+        String roomId = currentRoom.getRoomId();
+        sessionObserver.openThread(roomId, parent.getId());
+        try {
+            long before = Long.MAX_VALUE;
+            while (true) {
+                int[] shown = new int[1];
+                long[] oldest = {before};
+                messageHistoryService.visitThread(roomId, parent.getId(), before, THREAD_PAGE_SIZE, view -> {
+                    displayMessage(view);
+                    oldest[0] = view.getId();
+                    shown[0]++;
+                });
+                if (shown[0] == 0 && before == Long.MAX_VALUE) {
+                    System.out.println("💬 No replies yet.");
+                }
+                if (shown[0] < THREAD_PAGE_SIZE) {
+                    break;
+                }
+                System.out.print("Older replies? (y/n): ");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                    break;
+                }
+                before = oldest[0];
+            }
+            
+            System.out.print("↩️ Reply (blank to go back): ");
+            String content = scanner.nextLine().trim();
+            if (!content.isEmpty()) {
+                messageSendService.sendMessage(currentRoom, new Message(currentUser, content, null, null, parent.getId()));
+                System.out.println("✅ Reply posted.");
+            }
+            
+        } catch (Exception e) {
+            logger.error("Error in thread", e);
+            System.out.println("❌ Failed to post reply: " + e.getMessage());
+        } finally {
+            sessionObserver.closeThread(roomId, parent.getId());
+        }
+    }
+    
+    private void reactToMessage() {
+        List<Message> recent = new ArrayList<>();
+        messageHistoryService.visitRecentMessages(currentRoom.getRoomId(), 10, view -> {
+            if (!view.isPrivate()) {
+                recent.add(view.toMessage());
+            }
+        });
+        
+        if (recent.isEmpty()) {
+            System.out.println("📭 No messages in this room yet.");
+            return;
+        }
+        
+        System.out.println("\n😀 Recent Messages:");
+        for (int i = 0; i < recent.size(); i++) {
+            Message message = recent.get(i);
+            System.out.println((i + 1) + ". " + message.getSender().getUsername() + ": " + message.getContent() +
+                               formatReactions(message.getId()));
+        }
+        System.out.print("Select message (1-" + recent.size() + "): ");
+        Message selected = recent.get(getValidChoice(1, recent.size()) - 1);
+        
+        System.out.print("Emoji (choosing one you already used removes it): ");
+        String emoji = scanner.nextLine().trim();
+        if (emoji.isEmpty()) {
+            System.out.println("❌ Emoji cannot be empty!");
+            return;
+        }
+        
+        try {
+            if (reactionService.hasReacted(currentRoom.getRoomId(), currentUser, selected.getId(), emoji)) {
+                reactionService.removeReaction(currentRoom, currentUser, selected.getId(), emoji);
+                System.out.println("✅ Reaction removed.");
+            } else {
+                reactionService.addReaction(currentRoom, currentUser, selected.getId(), emoji);
+                System.out.println("✅ Reaction added.");
+            }
+            
+        } catch (Exception e) {
+            logger.error("Error reacting to message", e);
+            System.out.println("❌ Failed to react: " + e.getMessage());
+        }
+    }
+    
     private void viewActiveUsers() {
         List<User> activeUsers = currentRoom.getActiveUsers();
         
@@ -336,9 +659,224 @@ public class ChatController {
         }
     }
     
+    private void shareFile() {
+        System.out.print("📎 Enter file path: ");
+        String pathInput = scanner.nextLine().trim();
+        
+        if (pathInput.isEmpty()) {
+            System.out.println("❌ File path cannot be empty!");
+            return;
+        }
+        
+        Path file = Paths.get(pathInput);
+        if (!Files.isRegularFile(file)) {
+            System.out.println("❌ File not found: " + pathInput);
+            return;
+        }
+        
+        String uploadId = null;
+        try {
+            long size = Files.size(file);
+            uploadId = attachmentStore.beginUpload(file.getFileName().toString(), size);
+            
+            // Chunked so a large file never sits in memory and an interrupted upload can resume
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                long uploaded = 0;
+                while (uploaded < size) {
+                    long chunk = Math.min(AttachmentStore.RECOMMENDED_CHUNK_BYTES, size - uploaded);
+                    uploaded = attachmentStore.appendChunk(uploadId, uploaded, source, chunk);
+                }
+            }
+            AttachmentRef attachment = attachmentStore.completeUpload(uploadId);
+            uploadId = null;
+            
+            System.out.print("💬 Enter a caption (blank for file name): ");
+            String caption = scanner.nextLine().trim();
+            if (caption.isEmpty()) {
+                caption = attachment.getFileName();
+            }
+            
+            Message message = messageSendService.sendMessage(currentRoom,
+                new Message(currentUser, caption, null, attachment));
+            readReceiptService.markRead(currentRoom, currentUser, message.getSequence());
+            System.out.println("✅ Shared " + attachment.getFileName() + " (" + attachment.getSize() + " bytes)");
+            
+        } catch (Exception e) {
+            logger.error("Error sharing file: " + pathInput, e);
+            System.out.println("❌ Failed to share file: " + e.getMessage());
+            abortUpload(uploadId);
+        }
+    }
+    
+    private void abortUpload(String uploadId) {
+        if (uploadId == null) {
+            return;
+        }
+        try {
+            attachmentStore.abortUpload(uploadId);
+        } catch (IOException e) {
+            logger.warn("Failed to discard upload " + uploadId + ": " + e.getMessage());
+        }
+    }
+    
+    private void saveAttachment() {
+        System.out.print("📎 Enter attachment ID: ");
+        String attachmentId = scanner.nextLine().trim().toLowerCase();
+        
+        if (attachmentId.isEmpty()) {
+            System.out.println("❌ Attachment ID cannot be empty!");
+            return;
+        }
+        
+        AttachmentRef attachment = findAttachment(attachmentId);
+        if (attachment == null) {
+            System.out.println("❌ No attachment '" + attachmentId + "' in this room's history.");
+            return;
+        }
+        
+        System.out.print("💾 Save as (blank for " + attachment.getFileName() + "): ");
+        String target = scanner.nextLine().trim();
+        Path destination = Paths.get(target.isEmpty() ? attachment.getFileName() : target);
+        
+        try (FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = attachmentStore.transferTo(attachment, 0, out);
+            System.out.println("✅ Saved " + written + " bytes to " + destination.toAbsolutePath());
+            
+        } catch (Exception e) {
+            logger.error("Error saving attachment: " + attachment.getSha256(), e);
+            System.out.println("❌ Failed to save attachment: " + e.getMessage());
+        }
+    }
+    
+    // Matches the full digest or the short ID shown next to each attachment
+    private AttachmentRef findAttachment(String attachmentId) {
+        if (attachmentId.length() < 12) {
+            return null;
+        }
+        List<Message> history = messageHistoryService.getChronologicalHistory(currentRoom.getRoomId());
+        for (int i = history.size() - 1; i >= 0; i--) {
+            AttachmentRef attachment = history.get(i).getAttachment();
+            if (attachment != null && attachment.getSha256().startsWith(attachmentId)) {
+                return attachment;
+            }
+        }
+        return null;
+    }
+    
+    // Room events for this session reach the user through the communication adapter
+    private void attachSession(ChatRoom room) {
+        boolean digest = notificationService.getDeliveryMode() == ChatNotificationService.DeliveryMode.DIGEST;
+        sessionObserver = new AdapterChatObserver(communicationAdapter, currentUser);
+        sessionObserver.setMessageForwarding(!digest);
+        room.addUserObserver(currentUser, sessionObserver);
+        if (digest) {
+            room.addUserObserver(currentUser, notificationService);
+        }
+    }
+    
+    private void toggleNotificationMode() {
+        if (notificationService.getDeliveryMode() == ChatNotificationService.DeliveryMode.REALTIME) {
+            currentRoom.addUserObserver(currentUser, notificationService);
+            sessionObserver.setMessageForwarding(false);
+            notificationService.setDeliveryMode(ChatNotificationService.DeliveryMode.DIGEST);
+            System.out.println("✅ Room messages will now be summarized periodically; private messages still arrive as sent.");
+        } else {
+            currentRoom.removeObserver(notificationService);
+            notificationService.setDeliveryMode(ChatNotificationService.DeliveryMode.REALTIME);
+            sessionObserver.setMessageForwarding(true);
+            System.out.println("✅ Messages will now be shown as they arrive.");
+        }
+    }
+    
+    private void openDirectMessages() {
+        List<User> partners = directMessageService.getConversationPartners(currentUser);
+        
+        System.out.println("\n📨 Direct Messages:");
+        System.out.println("-".repeat(40));
+        for (User partner : partners) {
+            System.out.println("👤 " + partner.getUsername() +
+                unreadBadge(directMessageService.getUnreadCount(currentUser, partner)));
+        }
+        if (partners.isEmpty()) {
+            System.out.println("📭 No conversations yet.");
+        }
+        
+        System.out.print("Enter username to open (blank to go back): ");
+        String username = scanner.nextLine().trim();
+        if (username.isEmpty()) {
+            return;
+        }
+        
+        User partner = userService.getUserByUsername(username);
+        if (partner == null) {
+            System.out.println("❌ User '" + username + "' not found!");
+            return;
+        }
+        if (partner.equals(currentUser)) {
+            System.out.println("❌ You cannot message yourself.");
+            return;
+        }
+        
+        List<Message> conversation = directMessageService.getConversation(currentUser, partner);
+        System.out.println("\n💌 Conversation with " + partner.getUsername() + ":");
+        System.out.println("-".repeat(50));
+        int from = Math.max(0, conversation.size() - 20);
+        for (Message message : conversation.subList(from, conversation.size())) {
+            displayDirectMessage(message);
+        }
+        directMessageService.markRead(currentUser, partner);
+        
+        System.out.print("💬 Reply (blank to go back): ");
+        String content = scanner.nextLine().trim();
+        if (content.isEmpty()) {
+            return;
+        }
+        
+        try {
+            directMessageService.sendDirectMessage(currentUser, partner, content);
+            System.out.println("✅ Direct message sent to " + partner.getUsername() +
+                (partner.isOnline() ? "" : " (delivered when they return)"));
+        } catch (Exception e) {
+            logger.error("Error sending direct message", e);
+            System.out.println("❌ Failed to send direct message: " + e.getMessage());
+        }
+    }
+    
+    private void receiveDirectMessages(List<Message> messages) {
+        if (messages.size() > 1) {
+            System.out.println("\n📬 " + messages.size() + " direct message(s) while you were away:");
+        }
+        for (Message message : messages) {
+            displayDirectMessage(message);
+        }
+    }
+    
+    private String unreadBadge(int unread) {
+        return unread > 0 ? " (" + unread + " unread)" : "";
+    }
+    
+    private void showMissedMessages(String roomId, long lastSeenSequence) {
+        System.out.println("\n📜 Messages since your last visit:");
+        ResyncResult result = messageHistoryService.resync(roomId, lastSeenSequence, this::displayMessage);
+        
+        switch (result.getStatus()) {
+            case UP_TO_DATE -> System.out.println("✅ You're all caught up.");
+            case DELTA_SENT -> System.out.println("✅ " + result.getDeliveredCount() + " new message(s).");
+            case GAP_TOO_LARGE -> {
+                System.out.println("⚠️ You missed more messages than this room retains. Latest messages:");
+                messageHistoryService.visitRecentMessages(roomId, 10, this::displayMessage);
+            }
+        }
+        logger.debug("Resync for room " + roomId + ": " + result);
+    }
+    
     private void leaveRoom() {
         try {
+            lastSeenSequences.put(currentRoom.getRoomId(),
+                messageHistoryService.getLatestSequence(currentRoom.getRoomId()));
             currentRoom.removeUser(currentUser);
+            currentSession.roomLeft(currentRoom.getRoomId());
             System.out.println("👋 Left room: " + currentRoom.getRoomId());
             currentRoom = null;
             
@@ -348,20 +886,63 @@ public class ChatController {
         }
     }
     
-    private void displayMessage(Message message) {
-        String timestamp = message.getTimestamp().toString().substring(11, 19);
+    private void displayDirectMessage(Message message) {
+        String timestamp = TIME_FORMAT.format(Instant.ofEpochMilli(message.getTimestampMillis()));
+        System.out.printf("[%s] 💌 %s -> %s: %s%n",
+            timestamp,
+            message.getSender().getUsername(),
+            message.getRecipient().getUsername(),
+            message.getContent());
+    }
+    
+    private void markRoomRead() {
+        readReceiptService.markRead(currentRoom, currentUser,
+            messageHistoryService.getLatestSequence(currentRoom.getRoomId()));
+    }
+    
+    // Own messages also show how many members have read them
+    private void displayMessageWithReceipt(MessageView message) {
+        displayMessage(message);
+        if (currentUser.getUsername().equals(message.getSenderName()) && !message.isPrivate()) {
+            int seenBy = readReceiptService.getSeenByCount(currentRoom.getRoomId(), message.getSequence(), currentUser.getId());
+            System.out.println("    ✓ Seen by " + seenBy);
+        }
+    }
+    
+    private void displayMessage(MessageView message) {
+        String timestamp = TIME_FORMAT.format(Instant.ofEpochMilli(message.getTimestampMillis()));
         if (message.isPrivate()) {
             System.out.printf("[%s] 💌 %s -> %s: %s%n",
                 timestamp,
-                message.getSender().getUsername(),
-                message.getRecipient().getUsername(),
+                message.getSenderName(),
+                message.getRecipientName(),
                 message.getContent());
         } else {
-            System.out.printf("[%s] %s: %s%n",
+            System.out.printf("[%s] %s: %s%s%n",
                 timestamp,
-                message.getSender().getUsername(),
-                message.getContent());
+                message.getSenderName(),
+                message.getContent(),
+                message.getRevision() != Message.NO_REVISION ? " (edited)" : "");
+        }
+        AttachmentRef attachment = message.getAttachment();
+        if (attachment != null) {
+            System.out.printf("    📎 %s (%d bytes) [%s]%n",
+                attachment.getFileName(),
+                attachment.getSize(),
+                attachment.getShortId());
         }
+        String reactions = formatReactions(message.getId());
+        if (!message.isPrivate() && !reactions.isEmpty()) {
+            System.out.println("   " + reactions);
+        }
+    }
+    
+    // " 👍 3 🎉 1", or empty if nobody reacted
+    private String formatReactions(long messageId) {
+        StringBuilder reactions = new StringBuilder();
+        reactionService.getReactionCounts(currentRoom.getRoomId(), messageId)
+            .forEach((emoji, count) -> reactions.append(' ').append(emoji).append(' ').append(count));
+        return reactions.toString();
     }
     
     private void cleanup() {
@@ -369,6 +950,15 @@ public class ChatController {
             if (currentRoom != null) {
                 currentRoom.removeUser(currentUser);
             }
+            directMessageService.disconnect(currentUser);
+            // Exiting signs out: the session token stops working for resume
+            sessionService.closeSession(currentSession);
+            communicationAdapter.disconnect();
+            // The final snapshot rotates the log and deletes the segments it makes redundant
+            snapshotService.shutdown();
+            writeAheadLog.shutdown();
+            chatRoomManager.shutdown();
+            RoomEventLoops.getInstance().shutdown();
             scanner.close();
             logger.info("Chat application shutdown completed");
             System.out.println("🔒 Application closed successfully. Goodbye!");
@@ -0,0 +1,78 @@
+package com.chatapp.model;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Reference to a file held by the attachment store
+ * Files are content-addressed: the SHA-256 digest identifies the bytes, so identical uploads
+ * share one stored copy. Messages carry only this reference, never the file contents.
+ */
+public final class AttachmentRef {
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    
+    private final String sha256;
+    private final String fileName;
+    private final long size;
+    private final String contentType;
+    
+    public AttachmentRef(String sha256, String fileName, long size, String contentType) {
+        if (sha256 == null || !SHA256_HEX.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("Invalid SHA-256 digest: " + sha256);
+        }
+        if (fileName == null || fileName.trim().isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be null or empty");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Attachment size cannot be negative");
+        }
+        
+        this.sha256 = sha256;
+        this.fileName = fileName.trim();
+        this.size = size;
+        this.contentType = contentType != null ? contentType : "application/octet-stream";
+    }
+    
+    public static boolean isValidDigest(String sha256) {
+        return sha256 != null && SHA256_HEX.matcher(sha256).matches();
+    }
+    
+    public String getSha256() {
+        return sha256;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    // Short form of the digest for display
+    public String getShortId() {
+        return sha256.substring(0, 12);
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        AttachmentRef other = (AttachmentRef) obj;
+        return size == other.size && sha256.equals(other.sha256) && fileName.equals(other.fileName);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(sha256, fileName, size);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Attachment[%s, %d bytes, %s]", fileName, size, getShortId());
+    }
+}
\ No newline at end of file
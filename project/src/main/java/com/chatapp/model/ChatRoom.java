@@ -2,45 +2,98 @@ package com.chatapp.model;
 
 import com.chatapp.logger.Logger;
 import com.chatapp.logger.LoggerFactory;
+import com.chatapp.observer.ChatEventPublisher;
 import com.chatapp.observer.ChatObserver;
+import com.chatapp.service.EventScheduler;
+import com.chatapp.service.FanOutExecutor;
+import com.chatapp.service.MessageHistoryService;
+import com.chatapp.service.RoomEventLoops;
+import com.chatapp.service.UserService;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 /**
  * OBSERVER PATTERN (Behavioral) - Subject
  * Represents a chat room that notifies observers of new messages and user activities
  * Demonstrates real-time notification system
+ * In event-loop mode (see RoomEventLoops) every state change runs on the room's own loop thread
  */
 public class ChatRoom {
     private static final Logger logger = LoggerFactory.getLogger(ChatRoom.class);
+    private static final long TYPING_TIMEOUT_MILLIS = 5000;
+    private static final long TYPING_FLUSH_INTERVAL_MILLIS = 250;
     
     private final String roomId;
     private final User admin;
     private final LocalDateTime createdAt;
     private final List<User> activeUsers;
+    private final Set<Integer> memberIds;
     private final List<ChatObserver> observers;
+    // Observers not bound to a member (services); they see every event, private ones included
+    private final List<ChatObserver> roomObservers;
+    // Member sessions indexed by user ID so private messages reach only the two parties
+    private final ConcurrentHashMap<Integer, List<ChatObserver>> userObservers;
+    // Typing state: user ID -> expiry time; observers only see the coalesced set
+    private final ConcurrentHashMap<Integer, Long> typingDeadlines;
+    private final AtomicBoolean typingFlushScheduled;
+    private volatile Set<Integer> publishedTyping;
+    private volatile ChatEventPublisher eventPublisher;
+    // Serializes sequencing and message fan-out; large rooms deliver on the shared fan-out pool
+    private final Object fanOutLock = new Object();
+    // Sequence number of the newest broadcast message; -1 until loaded from history
+    private long lastSequence = -1;
+    // Last join, leave, message or typing change; drives idle passivation
+    private volatile long lastActivityMillis;
     
     public ChatRoom(String roomId, User admin) {
+        this(roomId, admin, LocalDateTime.now());
+        
+        // Admin automatically joins the room
+        addUser(admin);
+        
+        logger.info("Chat room created: " + roomId);
+    }
+    
+    /**
+     * Recreates a room from persisted state
+     * Members are attached afterwards through restoreMembers, without join notifications
+     */
+    public ChatRoom(String roomId, User admin, LocalDateTime createdAt) {
         if (roomId == null || roomId.trim().isEmpty()) {
             throw new IllegalArgumentException("Room ID cannot be null or empty");
         }
         if (admin == null) {
             throw new IllegalArgumentException("Admin cannot be null");
         }
+        if (createdAt == null) {
+            throw new IllegalArgumentException("Creation time cannot be null");
+        }
         
         this.roomId = roomId;
         this.admin = admin;
-        this.createdAt = LocalDateTime.now();
+        this.createdAt = createdAt;
         this.activeUsers = new CopyOnWriteArrayList<>();
+        this.memberIds = ConcurrentHashMap.newKeySet();
         this.observers = new CopyOnWriteArrayList<>();
-        
-        // Admin automatically joins the room
-        addUser(admin);
-        
-        logger.info("Chat room created: " + roomId);
+        this.roomObservers = new CopyOnWriteArrayList<>();
+        this.userObservers = new ConcurrentHashMap<>();
+        this.typingDeadlines = new ConcurrentHashMap<>();
+        this.typingFlushScheduled = new AtomicBoolean(false);
+        this.publishedTyping = Set.of();
+        this.lastActivityMillis = createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
     
     public void addUser(User user) {
@@ -48,7 +101,12 @@ public class ChatRoom {
             throw new IllegalArgumentException("User cannot be null");
         }
         
-        if (!activeUsers.contains(user)) {
+        if (runOnOwner(() -> addUser(user))) {
+            return;
+        }
+        
+        if (memberIds.add(user.getId())) {
+            lastActivityMillis = System.currentTimeMillis();
             activeUsers.add(user);
             user.addObserver(this);
             notifyUserJoined(user);
@@ -56,29 +114,152 @@ public class ChatRoom {
         }
     }
     
+    /**
+     * Attaches persisted members in bulk without join notifications
+     * Copy-on-write lists are appended once so large rooms restore in linear time
+     */
+    public void restoreMembers(Collection<User> members) {
+        if (members == null) {
+            throw new IllegalArgumentException("Members cannot be null");
+        }
+        
+        List<User> newMembers = new ArrayList<>(members.size());
+        for (User user : members) {
+            if (user != null && memberIds.add(user.getId())) {
+                newMembers.add(user);
+            }
+        }
+        
+        List<ChatObserver> memberObservers = new ArrayList<>(newMembers.size());
+        for (User user : newMembers) {
+            ChatObserver observer = user.restoreMembership(this);
+            if (observer != null) {
+                memberObservers.add(observer);
+                userObservers.computeIfAbsent(user.getId(), id -> new CopyOnWriteArrayList<>()).add(observer);
+            }
+        }
+        
+        activeUsers.addAll(newMembers);
+        observers.addAll(memberObservers);
+    }
+    
     public void removeUser(User user) {
         if (user == null) {
             return;
         }
         
-        if (activeUsers.remove(user)) {
+        if (runOnOwner(() -> removeUser(user))) {
+            return;
+        }
+        
+        if (memberIds.remove(user.getId())) {
+            lastActivityMillis = System.currentTimeMillis();
+            activeUsers.remove(user);
+            List<ChatObserver> sessions = userObservers.remove(user.getId());
+            if (sessions != null) {
+                observers.removeAll(sessions);
+            }
             user.removeObserver(this);
+            setTyping(user, false);
             notifyUserLeft(user);
             logger.info("User left room " + roomId + ": " + user.getUsername());
         }
     }
     
-    public void broadcastMessage(Message message) {
+    /**
+     * Assigns the room's next sequence number, passes the sequenced message to store and then
+     * delivers it. Both happen in sequence order, so stored history never has holes a client
+     * could have seen delivered; if store fails, the number is reused and nothing is delivered
+     */
+    public Message broadcastMessage(Message message, Consumer<Message> store) {
         if (message == null) {
             throw new IllegalArgumentException("Message cannot be null");
         }
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        
+        RoomEventLoops loops = RoomEventLoops.getInstance();
+        if (!loops.isOwner(roomId)) {
+            return RoomEventLoops.await(loops.submit(roomId, () -> broadcastMessage(message, store)));
+        }
         
-        if (!activeUsers.contains(message.getSender())) {
+        if (!memberIds.contains(message.getSenderId())) {
             throw new IllegalArgumentException("Sender is not in this room");
         }
         
-        notifyNewMessage(message);
+        lastActivityMillis = System.currentTimeMillis();
+        // Sending a message ends the sender's typing state
+        if (typingDeadlines.remove(message.getSenderId()) != null) {
+            scheduleTypingFlush();
+        }
+        
+        Message sequenced;
+        synchronized (fanOutLock) {
+            if (lastSequence < 0) {
+                // First broadcast since this room object was created or loaded: continue the history
+                lastSequence = MessageHistoryService.getInstance().getLatestSequence(roomId);
+            }
+            sequenced = message.withSequence(lastSequence + 1);
+            store.accept(sequenced);
+            lastSequence = sequenced.getSequence();
+            notifyNewMessage(sequenced);
+        }
         logger.info("Message broadcast in room " + roomId + " by " + message.getSender().getUsername());
+        return sequenced;
+    }
+    
+    /**
+     * Stores a thread reply through store, which returns the thread's reply count, then delivers it
+     * Replies take no room sequence number: they are not part of the timeline that clients track
+     */
+    public void postReply(Message reply, ToIntFunction<Message> store) {
+        if (reply == null || !reply.isReply()) {
+            throw new IllegalArgumentException("Reply must name a parent message");
+        }
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        
+        if (runOnOwner(() -> postReply(reply, store))) {
+            return;
+        }
+        
+        if (!memberIds.contains(reply.getSenderId())) {
+            throw new IllegalArgumentException("Sender is not in this room");
+        }
+        
+        lastActivityMillis = System.currentTimeMillis();
+        synchronized (fanOutLock) {
+            int replyCount = store.applyAsInt(reply);
+            notifyReplyPosted(reply, replyCount);
+        }
+        logger.info("Reply posted in room " + roomId + " under " + reply.getParentId() + " by " + reply.getSender().getUsername());
+    }
+    
+    /**
+     * Records an edit or deletion through store and delivers the resulting revision to observers
+     * Ordered with broadcasts, so no session is told about an edit before the message itself
+     */
+    public MessageEdit editMessage(Supplier<MessageEdit> store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        
+        RoomEventLoops loops = RoomEventLoops.getInstance();
+        if (!loops.isOwner(roomId)) {
+            return RoomEventLoops.await(loops.submit(roomId, () -> editMessage(store)));
+        }
+        
+        MessageEdit edit;
+        synchronized (fanOutLock) {
+            edit = store.get();
+            notifyMessageEdited(edit);
+        }
+        lastActivityMillis = System.currentTimeMillis();
+        logger.info("Message " + edit.getMessageId() + " in room " + roomId +
+                   (edit.isDeletion() ? " deleted" : " edited (revision " + edit.getRevision() + ")"));
+        return edit;
     }
     
     public void sendPrivateMessage(Message privateMessage) {
@@ -86,44 +267,304 @@ public class ChatRoom {
             throw new IllegalArgumentException("Invalid private message");
         }
         
-        if (!activeUsers.contains(privateMessage.getSender()) || 
-            !activeUsers.contains(privateMessage.getRecipient())) {
+        if (runOnOwner(() -> sendPrivateMessage(privateMessage))) {
+            return;
+        }
+        
+        if (!memberIds.contains(privateMessage.getSenderId()) ||
+            !memberIds.contains(privateMessage.getRecipientId())) {
             throw new IllegalArgumentException("Both sender and recipient must be in this room");
         }
         
+        lastActivityMillis = System.currentTimeMillis();
         notifyPrivateMessage(privateMessage);
         logger.info("Private message sent in room " + roomId + " from " + 
                    privateMessage.getSender().getUsername() + " to " + 
                    privateMessage.getRecipient().getUsername());
     }
     
+    /**
+     * Records a member's typing state
+     * Calls only update a timestamp; observers receive at most one aggregated typing-set
+     * update per room every TYPING_FLUSH_INTERVAL_MILLIS, and idle typers expire on their own
+     */
+    public void setTyping(User user, boolean typing) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        
+        if (runOnOwner(() -> setTyping(user, typing))) {
+            return;
+        }
+        
+        boolean changed;
+        if (typing) {
+            if (!memberIds.contains(user.getId())) {
+                return;
+            }
+            changed = typingDeadlines.put(user.getId(), System.currentTimeMillis() + TYPING_TIMEOUT_MILLIS) == null;
+        } else {
+            changed = typingDeadlines.remove(user.getId()) != null;
+        }
+        
+        if (changed) {
+            lastActivityMillis = System.currentTimeMillis();
+            scheduleTypingFlush();
+        }
+    }
+    
+    /**
+     * Marks the room as in use without changing its state, e.g. when it is loaded back from disk
+     */
+    public void touch() {
+        lastActivityMillis = System.currentTimeMillis();
+    }
+    
+    /**
+     * Returns true if the room may be moved out of memory: nothing has happened in it since
+     * idleSinceMillis, no member is online and no stream subscriber is attached
+     */
+    public boolean isIdleSince(long idleSinceMillis) {
+        if (lastActivityMillis > idleSinceMillis) {
+            return false;
+        }
+        ChatEventPublisher publisher = eventPublisher;
+        if (publisher != null && publisher.getSubscriberCount() > 0) {
+            return false;
+        }
+        for (User user : activeUsers) {
+            if (user.isOnline()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Detaches a passivated room from its members so it can be garbage collected
+     * No leave notifications are sent; the membership lives on in the room's stored record
+     */
+    public void releaseMembers() {
+        for (User user : activeUsers) {
+            user.removeObserver(this);
+        }
+    }
+    
+    public List<User> getTypingUsers() {
+        return resolveUsers(publishedTyping);
+    }
+    
+    // Asynchronous forms for event-loop mode; each completes once the room's loop has applied it
+    public CompletableFuture<Void> addUserAsync(User user) {
+        return RoomEventLoops.getInstance().execute(roomId, () -> addUser(user));
+    }
+    
+    public CompletableFuture<Void> removeUserAsync(User user) {
+        return RoomEventLoops.getInstance().execute(roomId, () -> removeUser(user));
+    }
+    
+    public CompletableFuture<Void> sendPrivateMessageAsync(Message privateMessage) {
+        return RoomEventLoops.getInstance().execute(roomId, () -> sendPrivateMessage(privateMessage));
+    }
+    
+    // In event-loop mode, runs a state change on the room's own loop and waits for it
+    // Returns false when the caller already owns the room and should apply the change itself
+    private boolean runOnOwner(Runnable operation) {
+        RoomEventLoops loops = RoomEventLoops.getInstance();
+        if (loops.isOwner(roomId)) {
+            return false;
+        }
+        RoomEventLoops.await(loops.execute(roomId, operation));
+        return true;
+    }
+    
+    /**
+     * Delivers a batch of read-watermark moves (user -> newest read sequence number) to observers
+     * In event-loop mode delivery is handed to the room's loop and this returns without waiting
+     */
+    public void publishReadReceipts(Map<User, Long> watermarks) {
+        if (watermarks == null || watermarks.isEmpty()) {
+            return;
+        }
+        
+        Map<User, Long> update = Map.copyOf(watermarks);
+        RoomEventLoops loops = RoomEventLoops.getInstance();
+        if (!loops.isOwner(roomId)) {
+            loops.execute(roomId, () -> publishReadReceipts(update));
+            return;
+        }
+        for (ChatObserver observer : observers) {
+            try {
+                observer.onReadReceipts(this, update);
+            } catch (Exception e) {
+                logger.error("Error notifying observer of read receipts", e);
+            }
+        }
+    }
+    
+    /**
+     * Delivers a batch of reaction count changes to observers
+     * In event-loop mode delivery is handed to the room's loop and this returns without waiting
+     */
+    public void publishReactions(List<ReactionUpdate> updates) {
+        if (updates == null || updates.isEmpty()) {
+            return;
+        }
+        
+        List<ReactionUpdate> update = List.copyOf(updates);
+        RoomEventLoops loops = RoomEventLoops.getInstance();
+        if (!loops.isOwner(roomId)) {
+            loops.execute(roomId, () -> publishReactions(update));
+            return;
+        }
+        for (ChatObserver observer : observers) {
+            try {
+                observer.onReactionsChanged(this, update);
+            } catch (Exception e) {
+                logger.error("Error notifying observer of reactions", e);
+            }
+        }
+    }
+    
+    private void scheduleTypingFlush() {
+        if (typingFlushScheduled.compareAndSet(false, true)) {
+            EventScheduler.getInstance().schedule(
+                () -> RoomEventLoops.getInstance().execute(roomId, this::flushTyping), TYPING_FLUSH_INTERVAL_MILLIS);
+        }
+    }
+    
+    // Runs on the scheduler thread, or the room's loop in event-loop mode, so flushes never overlap
+    private void flushTyping() {
+        long now = System.currentTimeMillis();
+        typingDeadlines.values().removeIf(deadline -> deadline <= now);
+        
+        typingFlushScheduled.set(false);
+        Set<Integer> current = Set.copyOf(typingDeadlines.keySet());
+        if (!current.equals(publishedTyping)) {
+            publishedTyping = current;
+            notifyTypingChanged(resolveUsers(current));
+        }
+        
+        // Keep ticking while anyone is typing so expiries are published
+        if (!current.isEmpty()) {
+            scheduleTypingFlush();
+        }
+    }
+    
+    private List<User> resolveUsers(Set<Integer> userIds) {
+        UserService userService = UserService.getInstance();
+        List<User> users = new ArrayList<>(userIds.size());
+        for (Integer userId : userIds) {
+            User user = userService.getUserById(userId);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+    
+    /**
+     * Returns the Flow event stream of this room, created on first use
+     * Subscribers are served asynchronously with their own backpressure
+     */
+    public ChatEventPublisher getEventPublisher() {
+        ChatEventPublisher publisher = eventPublisher;
+        if (publisher == null) {
+            synchronized (this) {
+                publisher = eventPublisher;
+                if (publisher == null) {
+                    publisher = new ChatEventPublisher(roomId);
+                    addObserver(publisher);
+                    eventPublisher = publisher;
+                }
+            }
+        }
+        return publisher;
+    }
+    
     // Observer pattern methods
     public void addObserver(ChatObserver observer) {
         if (observer != null && !observers.contains(observer)) {
             observers.add(observer);
+            roomObservers.add(observer);
             logger.debug("Observer added to room: " + roomId);
         }
     }
     
+    /**
+     * Registers an observer that represents a member's session
+     * Private messages are delivered only to the sessions of their sender and recipient
+     */
+    public void addUserObserver(User user, ChatObserver observer) {
+        if (user == null || observer == null) {
+            throw new IllegalArgumentException("User and observer cannot be null");
+        }
+        
+        List<ChatObserver> sessions = userObservers.computeIfAbsent(user.getId(), id -> new CopyOnWriteArrayList<>());
+        if (!sessions.contains(observer)) {
+            sessions.add(observer);
+            observers.add(observer);
+            logger.debug("Session observer added to room " + roomId + " for " + user.getUsername());
+        }
+    }
+    
     public void removeObserver(ChatObserver observer) {
         if (observer != null) {
             observers.remove(observer);
+            roomObservers.remove(observer);
+            userObservers.values().forEach(sessions -> sessions.remove(observer));
             logger.debug("Observer removed from room: " + roomId);
         }
     }
     
+    // Called under fanOutLock: fan-outs of one room never overlap, so every observer sees the
+    // room's messages in sequence order
     private void notifyNewMessage(Message message) {
-        for (ChatObserver observer : observers) {
+        ChatObserver[] targets = observers.toArray(new ChatObserver[0]);
+        FanOutExecutor.getInstance().fanOut(targets, observer -> {
             try {
                 observer.onMessageReceived(this, message);
             } catch (Exception e) {
                 logger.error("Error notifying observer of new message", e);
             }
-        }
+        });
+    }
+    
+    private void notifyReplyPosted(Message reply, int replyCount) {
+        ChatObserver[] targets = observers.toArray(new ChatObserver[0]);
+        FanOutExecutor.getInstance().fanOut(targets, observer -> {
+            try {
+                observer.onReplyPosted(this, reply, replyCount);
+            } catch (Exception e) {
+                logger.error("Error notifying observer of reply", e);
+            }
+        });
+    }
+    
+    private void notifyMessageEdited(MessageEdit edit) {
+        ChatObserver[] targets = observers.toArray(new ChatObserver[0]);
+        FanOutExecutor.getInstance().fanOut(targets, observer -> {
+            try {
+                observer.onMessageEdited(this, edit);
+            } catch (Exception e) {
+                logger.error("Error notifying observer of message edit", e);
+            }
+        });
     }
     
     private void notifyPrivateMessage(Message message) {
-        for (ChatObserver observer : observers) {
+        notifyPrivateMessage(roomObservers, message);
+        notifyPrivateMessage(userObservers.get(message.getSenderId()), message);
+        if (message.getRecipientId() != message.getSenderId()) {
+            notifyPrivateMessage(userObservers.get(message.getRecipientId()), message);
+        }
+    }
+    
+    private void notifyPrivateMessage(List<ChatObserver> targets, Message message) {
+        if (targets == null) {
+            return;
+        }
+        for (ChatObserver observer : targets) {
             try {
                 observer.onPrivateMessageReceived(this, message);
             } catch (Exception e) {
@@ -132,6 +573,16 @@ public class ChatRoom {
         }
     }
     
+    private void notifyTypingChanged(List<User> typingUsers) {
+        for (ChatObserver observer : observers) {
+            try {
+                observer.onTypingChanged(this, typingUsers);
+            } catch (Exception e) {
+                logger.error("Error notifying observer of typing change", e);
+            }
+        }
+    }
+    
     private void notifyUserJoined(User user) {
         for (ChatObserver observer : observers) {
             try {
@@ -173,8 +624,12 @@ public class ChatRoom {
         return activeUsers.size();
     }
     
+    public long getLastActivityMillis() {
+        return lastActivityMillis;
+    }
+    
     public boolean isUserInRoom(User user) {
-        return activeUsers.contains(user);
+        return user != null && memberIds.contains(user.getId());
     }
     
     @Override
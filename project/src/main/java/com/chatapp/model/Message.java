@@ -1,19 +1,43 @@
 package com.chatapp.model;
 
+import com.chatapp.service.UserService;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.Objects;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a message in the chat system
  * Supports both public and private messages
+ *
+ * Stored compactly: numeric ID, epoch-millis timestamp, sender and recipient user IDs and
+ * UTF-8 content bytes. Users and the text are resolved on demand by the getters.
+ * A file is never inlined; the message carries only an AttachmentRef to the attachment store.
+ * Room messages get a per-room sequence number when broadcast; 0 means not yet sequenced.
+ * Edits replace the content and raise the revision; revision 0 is the content as sent.
+ * A reply names the top-level room message it belongs to; replies live in that message's thread,
+ * not in the room timeline, and are not sequenced.
  */
 public class Message {
-    private final String messageId;
-    private final User sender;
-    private final String content;
-    private final LocalDateTime timestamp;
-    private final User recipient; // null for public messages
-    private final boolean isPrivate;
+    public static final int NO_RECIPIENT = -1;
+    public static final long NO_SEQUENCE = 0;
+    public static final int NO_REVISION = 0;
+    public static final long NO_PARENT = 0;
+    
+    // Seeded from the clock so IDs keep increasing across restarts
+    private static final AtomicLong nextMessageId = new AtomicLong(System.currentTimeMillis() << 12);
+    
+    private final long id;
+    private final long timestamp;
+    private final int senderId;
+    private final int recipientId; // NO_RECIPIENT for public messages
+    private final byte[] content;
+    private final AttachmentRef attachment; // null if the message has no file
+    private final long sequence;
+    private final int revision;
+    private final long parentId; // NO_PARENT unless this is a thread reply
     
     // Constructor for public messages
     public Message(User sender, String content) {
@@ -22,6 +46,16 @@ public class Message {
     
     // Constructor for private messages
     public Message(User sender, String content, User recipient) {
+        this(sender, content, recipient, null);
+    }
+    
+    // Constructor for messages sharing a file; content is the caption
+    public Message(User sender, String content, User recipient, AttachmentRef attachment) {
+        this(sender, content, recipient, attachment, NO_PARENT);
+    }
+    
+    // Constructor for replies in the thread of a room message
+    public Message(User sender, String content, User recipient, AttachmentRef attachment, long parentId) {
         if (sender == null) {
             throw new IllegalArgumentException("Sender cannot be null");
         }
@@ -29,41 +63,164 @@ public class Message {
             throw new IllegalArgumentException("Message content cannot be null or empty");
         }
         
-        this.messageId = generateMessageId();
-        this.sender = sender;
-        this.content = content.trim();
-        this.timestamp = LocalDateTime.now();
-        this.recipient = recipient;
-        this.isPrivate = (recipient != null);
+        this.id = nextMessageId.incrementAndGet();
+        this.timestamp = System.currentTimeMillis();
+        this.senderId = sender.getId();
+        this.recipientId = recipient != null ? recipient.getId() : NO_RECIPIENT;
+        this.content = content.trim().getBytes(StandardCharsets.UTF_8);
+        this.attachment = attachment;
+        this.sequence = NO_SEQUENCE;
+        this.revision = NO_REVISION;
+        this.parentId = parentId;
+    }
+    
+    // Constructor for messages restored from persisted state
+    public Message(long id, User sender, String content, long timestamp, User recipient) {
+        this(id, sender, content, timestamp, recipient, null);
+    }
+    
+    public Message(long id, User sender, String content, long timestamp, User recipient, AttachmentRef attachment) {
+        this(id, sender, content, timestamp, recipient, attachment, NO_SEQUENCE);
+    }
+    
+    public Message(long id, User sender, String content, long timestamp, User recipient, AttachmentRef attachment,
+                   long sequence) {
+        this(id, sender, content, timestamp, recipient, attachment, sequence, NO_REVISION, NO_PARENT);
+    }
+    
+    public Message(long id, User sender, String content, long timestamp, User recipient, AttachmentRef attachment,
+                   long sequence, int revision, long parentId) {
+        if (sender == null) {
+            throw new IllegalArgumentException("Sender cannot be null");
+        }
+        if (content == null) {
+            throw new IllegalArgumentException("Message content cannot be null");
+        }
+        
+        this.id = id;
+        this.timestamp = timestamp;
+        this.senderId = sender.getId();
+        this.recipientId = recipient != null ? recipient.getId() : NO_RECIPIENT;
+        this.content = content.getBytes(StandardCharsets.UTF_8);
+        this.attachment = attachment;
+        this.sequence = sequence;
+        this.revision = revision;
+        this.parentId = parentId;
+        
+        // New messages must never reuse a restored ID
+        nextMessageId.accumulateAndGet(id, Math::max);
     }
     
-    private String generateMessageId() {
-        return "msg_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 1000);
+    private Message(Message original, long sequence, byte[] content, int revision) {
+        this.id = original.id;
+        this.timestamp = original.timestamp;
+        this.senderId = original.senderId;
+        this.recipientId = original.recipientId;
+        this.content = content;
+        this.attachment = original.attachment;
+        this.sequence = sequence;
+        this.revision = revision;
+        this.parentId = original.parentId;
+    }
+    
+    /**
+     * Returns this message carrying the given room sequence number; ID and content are shared
+     */
+    public Message withSequence(long sequence) {
+        if (sequence <= NO_SEQUENCE) {
+            throw new IllegalArgumentException("Sequence must be positive");
+        }
+        return new Message(this, sequence, content, revision);
+    }
+    
+    /**
+     * Returns this message with an edit applied; edits at or below the current revision are ignored
+     */
+    public Message withEdit(MessageEdit edit) {
+        if (edit == null || edit.getMessageId() != id) {
+            throw new IllegalArgumentException("Edit does not belong to message " + id);
+        }
+        if (edit.isDeletion()) {
+            throw new IllegalArgumentException("A deleted message has no content to apply");
+        }
+        if (edit.getRevision() <= revision) {
+            return this;
+        }
+        return new Message(this, sequence, edit.getContent().getBytes(StandardCharsets.UTF_8), edit.getRevision());
     }
     
     // Getters
+    public long getId() {
+        return id;
+    }
+    
     public String getMessageId() {
-        return messageId;
+        return Long.toString(id);
     }
     
     public User getSender() {
-        return sender;
+        return UserService.getInstance().getUserById(senderId);
+    }
+    
+    public int getSenderId() {
+        return senderId;
     }
     
     public String getContent() {
-        return content;
+        return new String(content, StandardCharsets.UTF_8);
     }
     
-    public LocalDateTime getTimestamp() {
+    // Returns a copy of the UTF-8 encoded content
+    public byte[] getContentBytes() {
+        return content.clone();
+    }
+    
+    public long getTimestampMillis() {
         return timestamp;
     }
     
+    public LocalDateTime getTimestamp() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+    
     public User getRecipient() {
-        return recipient;
+        return recipientId != NO_RECIPIENT ? UserService.getInstance().getUserById(recipientId) : null;
+    }
+    
+    public int getRecipientId() {
+        return recipientId;
     }
     
     public boolean isPrivate() {
-        return isPrivate;
+        return recipientId != NO_RECIPIENT;
+    }
+    
+    public AttachmentRef getAttachment() {
+        return attachment;
+    }
+    
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public int getRevision() {
+        return revision;
+    }
+    
+    public boolean isEdited() {
+        return revision != NO_REVISION;
+    }
+    
+    public long getParentId() {
+        return parentId;
+    }
+    
+    public boolean isReply() {
+        return parentId != NO_PARENT;
+    }
+    
+    public boolean hasAttachment() {
+        return attachment != null;
     }
     
     @Override
@@ -71,21 +228,21 @@ public class Message {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Message message = (Message) obj;
-        return Objects.equals(messageId, message.messageId);
+        return id == message.id;
     }
     
     @Override
     public int hashCode() {
-        return Objects.hash(messageId);
+        return Long.hashCode(id);
     }
     
     @Override
     public String toString() {
-        if (isPrivate) {
-            return String.format("PrivateMessage[%s -> %s: %s]", 
-                               sender.getUsername(), recipient.getUsername(), content);
+        if (isPrivate()) {
+            return String.format("PrivateMessage[%s -> %s: %s]",
+                               getSender().getUsername(), getRecipient().getUsername(), getContent());
         } else {
-            return String.format("Message[%s: %s]", sender.getUsername(), content);
+            return String.format("Message[%s: %s]", getSender().getUsername(), getContent());
         }
     }
 }
\ No newline at end of file
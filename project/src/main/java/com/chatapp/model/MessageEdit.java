@@ -0,0 +1,85 @@
+package com.chatapp.model;
+
+import com.chatapp.service.UserService;
+
+/**
+ * Immutable revision of a stored message: new content, or a tombstone if the message was deleted
+ * Revisions of one message are numbered from 1; the highest revision wins, so a deletion is final.
+ * Clients receive this record instead of the whole message again.
+ */
+public final class MessageEdit {
+    private final long messageId;
+    private final int revision;
+    private final String content; // null for a deletion
+    private final int editorId;
+    private final long editedAtMillis;
+    
+    private MessageEdit(long messageId, int revision, String content, int editorId, long editedAtMillis) {
+        if (revision <= Message.NO_REVISION) {
+            throw new IllegalArgumentException("Revision must be positive");
+        }
+        
+        this.messageId = messageId;
+        this.revision = revision;
+        this.content = content;
+        this.editorId = editorId;
+        this.editedAtMillis = editedAtMillis;
+    }
+    
+    public static MessageEdit edit(long messageId, int revision, String content, User editor) {
+        if (content == null || content.trim().isEmpty()) {
+            throw new IllegalArgumentException("Message content cannot be null or empty");
+        }
+        if (editor == null) {
+            throw new IllegalArgumentException("Editor cannot be null");
+        }
+        return new MessageEdit(messageId, revision, content.trim(), editor.getId(), System.currentTimeMillis());
+    }
+    
+    public static MessageEdit deletion(long messageId, int revision, User editor) {
+        if (editor == null) {
+            throw new IllegalArgumentException("Editor cannot be null");
+        }
+        return new MessageEdit(messageId, revision, null, editor.getId(), System.currentTimeMillis());
+    }
+    
+    /**
+     * Rebuilds a revision read back from storage; content is null for a deletion
+     */
+    public static MessageEdit restore(long messageId, int revision, String content, User editor, long editedAtMillis) {
+        if (editor == null) {
+            throw new IllegalArgumentException("Editor cannot be null");
+        }
+        return new MessageEdit(messageId, revision, content, editor.getId(), editedAtMillis);
+    }
+    
+    public long getMessageId() {
+        return messageId;
+    }
+    
+    public int getRevision() {
+        return revision;
+    }
+    
+    // The new content; null for a deletion
+    public String getContent() {
+        return content;
+    }
+    
+    public boolean isDeletion() {
+        return content == null;
+    }
+    
+    public User getEditor() {
+        return UserService.getInstance().getUserById(editorId);
+    }
+    
+    public long getEditedAtMillis() {
+        return editedAtMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("MessageEdit[%d r%d %s]", messageId, revision, isDeletion() ? "deleted" : content);
+    }
+}
@@ -0,0 +1,45 @@
+package com.chatapp.model;
+
+/**
+ * Immutable change of one reaction on a message over a publish interval
+ * delta is the net number of users who added the emoji since the previous update (negative if
+ * more removed it), and count is the total once the delta is applied.
+ */
+public final class ReactionUpdate {
+    private final long messageId;
+    private final String emoji;
+    private final long delta;
+    private final long count;
+    
+    public ReactionUpdate(long messageId, String emoji, long delta, long count) {
+        if (emoji == null || emoji.isEmpty()) {
+            throw new IllegalArgumentException("Emoji cannot be null or empty");
+        }
+        
+        this.messageId = messageId;
+        this.emoji = emoji;
+        this.delta = delta;
+        this.count = count;
+    }
+    
+    public long getMessageId() {
+        return messageId;
+    }
+    
+    public String getEmoji() {
+        return emoji;
+    }
+    
+    public long getDelta() {
+        return delta;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ReactionUpdate[%d %s %+d = %d]", messageId, emoji, delta, count);
+    }
+}
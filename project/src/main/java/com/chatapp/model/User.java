@@ -2,9 +2,9 @@ package com.chatapp.model;
 
 import com.chatapp.logger.Logger;
 import com.chatapp.logger.LoggerFactory;
+import com.chatapp.observer.ChatObserver;
 
 import java.time.LocalDateTime;
-import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -15,35 +15,68 @@ public class User {
     private static final Logger logger = LoggerFactory.getLogger(User.class);
     
     private final String username;
+    private final int id;
     private final String userId;
     private final LocalDateTime joinedAt;
     private boolean isOnline;
     private final CopyOnWriteArrayList<ChatRoom> joinedRooms;
     
-    public User(String username) {
+    // The numeric ID is assigned by UserService, which also resolves it back to the user
+    public User(String username, int id) {
+        this(username, id, LocalDateTime.now(), true);
+        logger.info("User created: " + username);
+    }
+    
+    /**
+     * Recreates a user from persisted state
+     * Restored users start offline until they authenticate again
+     */
+    public User(String username, int id, LocalDateTime joinedAt) {
+        this(username, id, joinedAt, false);
+    }
+    
+    private User(String username, int id, LocalDateTime joinedAt, boolean online) {
         if (username == null || username.trim().isEmpty()) {
             throw new IllegalArgumentException("Username cannot be null or empty");
         }
+        if (joinedAt == null) {
+            throw new IllegalArgumentException("Join time cannot be null");
+        }
+        
+        if (id < 0) {
+            throw new IllegalArgumentException("User ID cannot be negative");
+        }
         
         this.username = username.trim();
-        this.userId = generateUserId(username);
-        this.joinedAt = LocalDateTime.now();
-        this.isOnline = true;
+        this.id = id;
+        this.userId = generateUserId(this.username, id);
+        this.joinedAt = joinedAt;
+        this.isOnline = online;
         this.joinedRooms = new CopyOnWriteArrayList<>();
-        
-        logger.info("User created: " + username);
     }
     
-    private String generateUserId(String username) {
-        return username.toLowerCase().replaceAll("[^a-z0-9]", "") + 
-               "_" + System.currentTimeMillis() % 10000;
+    // Readable form of the numeric ID, which alone makes it unique
+    private static String generateUserId(String username, int id) {
+        return username.toLowerCase().replaceAll("[^a-z0-9]", "") + "_" + id;
     }
     
     public void addObserver(ChatRoom room) {
         if (room != null && !joinedRooms.contains(room)) {
             joinedRooms.add(room);
-            room.addObserver(new UserChatObserver(this));
+            room.addUserObserver(this, new UserChatObserver(this));
+        }
+    }
+    
+    /**
+     * Records a restored room membership and returns the observer the room should attach
+     * Returns null if the user is already associated with the room
+     */
+    public ChatObserver restoreMembership(ChatRoom room) {
+        if (room == null || joinedRooms.contains(room)) {
+            return null;
         }
+        joinedRooms.add(room);
+        return new UserChatObserver(this);
     }
     
     public void removeObserver(ChatRoom room) {
@@ -62,6 +95,10 @@ public class User {
         return username;
     }
     
+    public int getId() {
+        return id;
+    }
+    
     public String getUserId() {
         return userId;
     }
@@ -83,12 +120,12 @@ public class User {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         User user = (User) obj;
-        return Objects.equals(userId, user.userId);
+        return id == user.id;
     }
     
     @Override
     public int hashCode() {
-        return Objects.hash(userId);
+        return Integer.hashCode(id);
     }
     
     @Override
@@ -100,7 +137,7 @@ public class User {
     /**
      * Inner class implementing ChatObserver for this user
      */
-    private static class UserChatObserver implements com.chatapp.observer.ChatObserver {
+    private static class UserChatObserver implements ChatObserver {
         private final User user;
         
         public UserChatObserver(User user) {
@@ -115,8 +152,8 @@ public class User {
         
         @Override
         public void onPrivateMessageReceived(ChatRoom room, Message message) {
-            // User receives notification of private message
-            if (message.getRecipient().equals(user)) {
+            // Only the sender's and recipient's sessions are notified of private messages
+            if (message.getRecipientId() == user.getId()) {
                 // This user is the recipient of the private message
             }
         }
@@ -0,0 +1,215 @@
+package com.chatapp.moderation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Immutable Aho-Corasick automaton over a set of moderation rules
+ *
+ * Finds every occurrence of every rule term in a single pass over the text, independent of the
+ * number of rules. The trie is compiled into flat arrays: the outgoing edges of each state are a
+ * sorted slice of edgeChars/edgeTargets searched by bisection, and failure and output links are
+ * precomputed, so scanning allocates nothing. Matching is case-insensitive.
+ */
+public final class AhoCorasickAutomaton {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    
+    private final ModerationRule[] rules;
+    // Edges of state s are edgeChars/edgeTargets[edgeStart[s] .. edgeStart[s + 1])
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    // Rule whose term ends in this state, or NONE
+    private final int[] ruleAt;
+    // Nearest state on the failure chain that ends a term, or NONE
+    private final int[] outputLink;
+    private final int[] termLength;
+    
+    @FunctionalInterface
+    public interface MatchVisitor {
+        // Return false to stop scanning
+        boolean onMatch(ModerationRule rule, int start, int end);
+    }
+    
+    private AhoCorasickAutomaton(ModerationRule[] rules, int[] edgeStart, char[] edgeChars, int[] edgeTargets,
+                                 int[] fail, int[] ruleAt, int[] outputLink, int[] termLength) {
+        this.rules = rules;
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.ruleAt = ruleAt;
+        this.outputLink = outputLink;
+        this.termLength = termLength;
+    }
+    
+    public static AhoCorasickAutomaton empty() {
+        return compile(List.of());
+    }
+    
+    /**
+     * Builds the automaton; when the same term appears twice the stricter action is kept
+     */
+    public static AhoCorasickAutomaton compile(List<ModerationRule> ruleList) {
+        if (ruleList == null) {
+            throw new IllegalArgumentException("Rules cannot be null");
+        }
+        
+        // Build the trie with maps, then flatten it
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        children.add(new HashMap<>());
+        terminal.add(NONE);
+        List<ModerationRule> kept = new ArrayList<>();
+        
+        for (ModerationRule rule : ruleList) {
+            String term = rule.getTerm();
+            int state = ROOT;
+            for (int i = 0; i < term.length(); i++) {
+                char c = Character.toLowerCase(term.charAt(i));
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(c, next);
+                    children.add(new HashMap<>());
+                    terminal.add(NONE);
+                }
+                state = next;
+            }
+            
+            int existing = terminal.get(state);
+            if (existing == NONE) {
+                terminal.set(state, kept.size());
+                kept.add(rule);
+            } else if (rule.getAction().isStricterThan(kept.get(existing).getAction())) {
+                kept.set(existing, rule);
+            }
+        }
+        
+        int stateCount = children.size();
+        int[] edgeStart = new int[stateCount + 1];
+        for (int s = 0; s < stateCount; s++) {
+            edgeStart[s + 1] = edgeStart[s] + children.get(s).size();
+        }
+        char[] edgeChars = new char[edgeStart[stateCount]];
+        int[] edgeTargets = new int[edgeStart[stateCount]];
+        for (int s = 0; s < stateCount; s++) {
+            Character[] keys = children.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            int offset = edgeStart[s];
+            for (int i = 0; i < keys.length; i++) {
+                edgeChars[offset + i] = keys[i];
+                edgeTargets[offset + i] = children.get(s).get(keys[i]);
+            }
+        }
+        
+        ModerationRule[] rules = kept.toArray(new ModerationRule[0]);
+        int[] ruleAt = new int[stateCount];
+        int[] termLength = new int[rules.length];
+        for (int s = 0; s < stateCount; s++) {
+            ruleAt[s] = terminal.get(s);
+        }
+        for (int r = 0; r < rules.length; r++) {
+            termLength[r] = rules[r].getTerm().length();
+        }
+        
+        AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(rules, edgeStart, edgeChars, edgeTargets,
+            new int[stateCount], ruleAt, new int[stateCount], termLength);
+        automaton.linkFailures();
+        return automaton;
+    }
+    
+    // Breadth-first so every state's failure target is final before its children need it
+    private void linkFailures() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        fail[ROOT] = ROOT;
+        outputLink[ROOT] = NONE;
+        for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+            int child = edgeTargets[e];
+            fail[child] = ROOT;
+            outputLink[child] = NONE;
+            queue.add(child);
+        }
+        
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                char c = edgeChars[e];
+                int child = edgeTargets[e];
+                
+                int f = fail[state];
+                int target = edge(f, c);
+                while (target == NONE && f != ROOT) {
+                    f = fail[f];
+                    target = edge(f, c);
+                }
+                fail[child] = target != NONE ? target : ROOT;
+                outputLink[child] = ruleAt[fail[child]] != NONE ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+    
+    /**
+     * Reports every rule occurrence in text, in order of its end position
+     * start and end are char offsets into text, end exclusive
+     */
+    public void scan(CharSequence text, MatchVisitor visitor) {
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            
+            int next = edge(state, c);
+            while (next == NONE && state != ROOT) {
+                state = fail[state];
+                next = edge(state, c);
+            }
+            state = next != NONE ? next : ROOT;
+            
+            int output = ruleAt[state] != NONE ? state : outputLink[state];
+            while (output != NONE) {
+                int rule = ruleAt[output];
+                if (!visitor.onMatch(rules[rule], i + 1 - termLength[rule], i + 1)) {
+                    return;
+                }
+                output = outputLink[output];
+            }
+        }
+    }
+    
+    private int edge(int state, char c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return NONE;
+    }
+    
+    public int getRuleCount() {
+        return rules.length;
+    }
+    
+    public int getStateCount() {
+        return fail.length;
+    }
+    
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.chatapp.moderation;
+
+/**
+ * What happens to a message that matches a moderation rule
+ * Declared in ascending severity; when several rules match, the most severe one wins
+ */
+public enum ModerationAction {
+    // Deliver unchanged but report the match
+    FLAG,
+    // Deliver with the matched text replaced by asterisks
+    MASK,
+    // Do not deliver
+    REJECT;
+    
+    public boolean isStricterThan(ModerationAction other) {
+        return other == null || ordinal() > other.ordinal();
+    }
+}
\ No newline at end of file
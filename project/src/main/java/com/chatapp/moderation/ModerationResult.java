@@ -0,0 +1,57 @@
+package com.chatapp.moderation;
+
+import java.util.List;
+
+/**
+ * Outcome of scanning one message
+ * The action is the most severe among matched rules, or null if nothing matched
+ */
+public final class ModerationResult {
+    private final ModerationAction action;
+    private final String content;
+    private final List<String> matchedTerms;
+    
+    ModerationResult(ModerationAction action, String content, List<String> matchedTerms) {
+        this.action = action;
+        this.content = content;
+        this.matchedTerms = List.copyOf(matchedTerms);
+    }
+    
+    static ModerationResult clean(String content) {
+        return new ModerationResult(null, content, List.of());
+    }
+    
+    public ModerationAction getAction() {
+        return action;
+    }
+    
+    // The content to deliver; masked when the action is MASK
+    public String getContent() {
+        return content;
+    }
+    
+    public List<String> getMatchedTerms() {
+        return matchedTerms;
+    }
+    
+    public boolean isClean() {
+        return action == null;
+    }
+    
+    public boolean isRejected() {
+        return action == ModerationAction.REJECT;
+    }
+    
+    public boolean isMasked() {
+        return action == ModerationAction.MASK;
+    }
+    
+    public boolean isFlagged() {
+        return action == ModerationAction.FLAG;
+    }
+    
+    @Override
+    public String toString() {
+        return "ModerationResult[" + (action != null ? action + " " + matchedTerms : "CLEAN") + "]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.chatapp.moderation;
+
+/**
+ * A banned term or link fragment together with the action taken when it appears
+ * Terms match case-insensitively anywhere in the content
+ */
+public final class ModerationRule {
+    private final String term;
+    private final ModerationAction action;
+    
+    public ModerationRule(String term, ModerationAction action) {
+        if (term == null || term.isEmpty()) {
+            throw new IllegalArgumentException("Rule term cannot be null or empty");
+        }
+        if (action == null) {
+            throw new IllegalArgumentException("Rule action cannot be null");
+        }
+        this.term = term;
+        this.action = action;
+    }
+    
+    /**
+     * Parses a rule file line of the form "ACTION term", e.g. "reject spam.example.com"
+     */
+    public static ModerationRule parse(String line) {
+        if (line == null) {
+            throw new IllegalArgumentException("Rule line cannot be null");
+        }
+        
+        String trimmed = line.trim();
+        int separator = trimmed.indexOf(' ');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Expected '<action> <term>' but got: " + line);
+        }
+        
+        ModerationAction action;
+        try {
+            action = ModerationAction.valueOf(trimmed.substring(0, separator).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown moderation action in: " + line);
+        }
+        return new ModerationRule(trimmed.substring(separator + 1).trim(), action);
+    }
+    
+    public String getTerm() {
+        return term;
+    }
+    
+    public ModerationAction getAction() {
+        return action;
+    }
+    
+    @Override
+    public String toString() {
+        return action + " " + term;
+    }
+}
\ No newline at end of file
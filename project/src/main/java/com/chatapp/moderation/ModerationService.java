@@ -0,0 +1,220 @@
+package com.chatapp.moderation;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.service.EventScheduler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Content moderation stage of the send pipeline
+ *
+ * Rules are compiled into an Aho-Corasick automaton that scans a message once regardless of the
+ * rule count. Reloading builds a new automaton off to the side and swaps it in atomically, so
+ * scans in flight finish on the old rules and never see a half-built one.
+ *
+ * Rule file (chatapp.moderation.rules): one "ACTION term" per line, '#' starts a comment,
+ * e.g. "reject buy-followers.example" or "mask darn". The file's modification time is checked
+ * every chatapp.moderation.reload.ms (default 10 s) and the rules are reloaded when it changes.
+ */
+public class ModerationService {
+    private static final Logger logger = LoggerFactory.getLogger(ModerationService.class);
+    private static volatile ModerationService instance;
+    private static final Object lock = new Object();
+    
+    private static final String DEFAULT_RULES_PATH = "config/moderation-rules.txt";
+    private static final long DEFAULT_RELOAD_CHECK_MILLIS = 10_000;
+    
+    private final Path rulesPath;
+    private final AtomicReference<AhoCorasickAutomaton> automaton;
+    private final AtomicLong rejectedCount;
+    private final AtomicLong maskedCount;
+    private final AtomicLong flaggedCount;
+    // Modification time of the rule file that is currently loaded
+    private volatile long loadedModifiedMillis;
+    
+    private ModerationService() {
+        this.rulesPath = Paths.get(System.getProperty("chatapp.moderation.rules", DEFAULT_RULES_PATH));
+        this.automaton = new AtomicReference<>(AhoCorasickAutomaton.empty());
+        this.rejectedCount = new AtomicLong();
+        this.maskedCount = new AtomicLong();
+        this.flaggedCount = new AtomicLong();
+        reloadRules();
+        long reloadCheckMillis = Long.getLong("chatapp.moderation.reload.ms", DEFAULT_RELOAD_CHECK_MILLIS);
+        if (reloadCheckMillis > 0) {
+            EventScheduler.getInstance().scheduleAtFixedRate(this::reloadIfChanged, reloadCheckMillis);
+        }
+        logger.info("Moderation Service initialized with " + automaton.get().getRuleCount() + " rules");
+    }
+    
+    public static ModerationService getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new ModerationService();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Re-reads the rule file and swaps in the new automaton
+     * On a read error the current rules stay active and false is returned
+     */
+    public boolean reloadRules() {
+        if (!Files.exists(rulesPath)) {
+            logger.info("No moderation rule file at " + rulesPath.toAbsolutePath());
+            return false;
+        }
+        
+        try {
+            // Read before the content, so a write racing with this load triggers another one
+            long modifiedMillis = Files.getLastModifiedTime(rulesPath).toMillis();
+            List<ModerationRule> rules = new ArrayList<>();
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(rulesPath, StandardCharsets.UTF_8)) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    rules.add(ModerationRule.parse(trimmed));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping moderation rule at line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+            replaceRules(rules);
+            loadedModifiedMillis = modifiedMillis;
+            return true;
+        
+        } catch (IOException e) {
+            logger.error("Failed to load moderation rules from " + rulesPath, e);
+            return false;
+        }
+    }
+    
+    /**
+     * Reloads the rules if the rule file was modified since it was last loaded
+     * Runs periodically on the shared EventScheduler; a deleted file keeps the current rules
+     */
+    public boolean reloadIfChanged() {
+        try {
+            if (!Files.exists(rulesPath) || Files.getLastModifiedTime(rulesPath).toMillis() == loadedModifiedMillis) {
+                return false;
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot check moderation rule file " + rulesPath + ": " + e.getMessage());
+            return false;
+        }
+        
+        logger.info("Moderation rule file changed, reloading");
+        return reloadRules();
+    }
+    
+    /**
+     * Compiles and atomically installs a new rule set
+     */
+    public void replaceRules(List<ModerationRule> rules) {
+        AhoCorasickAutomaton compiled = AhoCorasickAutomaton.compile(rules);
+        automaton.set(compiled);
+        logger.info("Moderation rules loaded: " + compiled.getRuleCount() + " rules, " +
+                   compiled.getStateCount() + " states");
+    }
+    
+    /**
+     * Scans content once and applies the most severe matching action
+     */
+    public ModerationResult moderate(String content) {
+        if (content == null) {
+            throw new IllegalArgumentException("Content cannot be null");
+        }
+        
+        AhoCorasickAutomaton current = automaton.get();
+        if (current.isEmpty()) {
+            return ModerationResult.clean(content);
+        }
+        
+        MatchCollector collector = new MatchCollector(content);
+        current.scan(content, collector);
+        ModerationResult result = collector.toResult();
+        
+        if (result.isRejected()) {
+            rejectedCount.incrementAndGet();
+        } else if (result.isMasked()) {
+            maskedCount.incrementAndGet();
+        } else if (result.isFlagged()) {
+            flaggedCount.incrementAndGet();
+        }
+        return result;
+    }
+    
+    public int getRuleCount() {
+        return automaton.get().getRuleCount();
+    }
+    
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
+    public long getMaskedCount() {
+        return maskedCount.get();
+    }
+    
+    public long getFlaggedCount() {
+        return flaggedCount.get();
+    }
+    
+    private static final class MatchCollector implements AhoCorasickAutomaton.MatchVisitor {
+        private final String content;
+        private final List<String> matchedTerms = new ArrayList<>();
+        private ModerationAction strongest;
+        private char[] masked;
+        
+        private MatchCollector(String content) {
+            this.content = content;
+        }
+        
+        @Override
+        public boolean onMatch(ModerationRule rule, int start, int end) {
+            ModerationAction action = rule.getAction();
+            if (action.isStricterThan(strongest)) {
+                strongest = action;
+            }
+            if (!matchedTerms.contains(rule.getTerm())) {
+                matchedTerms.add(rule.getTerm());
+            }
+            
+            if (action == ModerationAction.MASK) {
+                if (masked == null) {
+                    masked = content.toCharArray();
+                }
+                for (int i = start; i < end; i++) {
+                    if (!Character.isWhitespace(masked[i])) {
+                        masked[i] = '*';
+                    }
+                }
+            }
+            // Nothing else matters once the message is rejected
+            return action != ModerationAction.REJECT;
+        }
+        
+        ModerationResult toResult() {
+            if (strongest == null) {
+                return ModerationResult.clean(content);
+            }
+            String delivered = strongest == ModerationAction.MASK ? new String(masked) : content;
+            return new ModerationResult(strongest, delivered, matchedTerms);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,166 @@
+package com.chatapp.observer;
+
+import com.chatapp.adapter.CommunicationAdapter;
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.ReactionUpdate;
+import com.chatapp.model.User;
+import com.chatapp.service.MessageHistoryService;
+import com.chatapp.service.ResyncResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OBSERVER PATTERN (Behavioral) - Concrete Observer
+ * Bridges room events of one user's session onto a communication adapter
+ *
+ * Room messages are forwarded in sequence order: a message at or below the last forwarded
+ * sequence of its room is a duplicate and is dropped, and a jump past the next sequence is
+ * filled from message history before the new message goes out.
+ * Thread replies are forwarded only for threads the session has opened; for every other
+ * thread the session just receives the new reply count.
+ */
+public class AdapterChatObserver implements ChatObserver {
+    private static final Logger logger = LoggerFactory.getLogger(AdapterChatObserver.class);
+    
+    private final CommunicationAdapter adapter;
+    private final User sessionUser;
+    // Off while room traffic is summarized by a digest instead; private messages are always forwarded
+    private volatile boolean messageForwarding;
+    // Last forwarded sequence per room; rooms are tracked from the first message seen
+    private final Map<String, Long> lastSequences;
+    // Open threads as "roomId:parentId"
+    private final Set<String> openThreads;
+    
+    public AdapterChatObserver(CommunicationAdapter adapter, User sessionUser) {
+        if (adapter == null || sessionUser == null) {
+            throw new IllegalArgumentException("Adapter and session user cannot be null");
+        }
+        this.adapter = adapter;
+        this.sessionUser = sessionUser;
+        this.messageForwarding = true;
+        this.lastSequences = new ConcurrentHashMap<>();
+        this.openThreads = ConcurrentHashMap.newKeySet();
+        logger.debug("Adapter observer created for " + sessionUser.getUsername() + " via " + adapter.getProtocolType());
+    }
+    
+    @Override
+    public void onMessageReceived(ChatRoom room, Message message) {
+        if (!messageForwarding) {
+            return;
+        }
+        
+        long sequence = message.getSequence();
+        if (sequence == Message.NO_SEQUENCE) {
+            adapter.sendMessage(message);
+            return;
+        }
+        
+        Long last = lastSequences.get(room.getRoomId());
+        if (last != null && sequence <= last) {
+            logger.debug("Dropping duplicate message " + sequence + " in room " + room.getRoomId());
+            return;
+        }
+        if (last != null && sequence > last + 1) {
+            fillGap(room.getRoomId(), last + 1, sequence - 1);
+        }
+        adapter.sendMessage(message);
+        lastSequences.put(room.getRoomId(), sequence);
+    }
+    
+    @Override
+    public void onPrivateMessageReceived(ChatRoom room, Message message) {
+        adapter.sendMessage(message);
+    }
+    
+    @Override
+    public void onReplyPosted(ChatRoom room, Message reply, int replyCount) {
+        if (!messageForwarding) {
+            return;
+        }
+        if (openThreads.contains(threadKey(room.getRoomId(), reply.getParentId()))) {
+            adapter.sendMessage(reply);
+        }
+        adapter.notifyReplyCount(reply.getParentId(), replyCount, room.getRoomId());
+    }
+    
+    @Override
+    public void onMessageEdited(ChatRoom room, MessageEdit edit) {
+        if (messageForwarding) {
+            adapter.notifyMessageEdited(edit, room.getRoomId());
+        }
+    }
+    
+    @Override
+    public void onReactionsChanged(ChatRoom room, List<ReactionUpdate> updates) {
+        if (messageForwarding) {
+            adapter.notifyReactions(updates, room.getRoomId());
+        }
+    }
+    
+    @Override
+    public void onUserJoined(ChatRoom room, User user) {
+        if (!user.equals(sessionUser)) {
+            adapter.notifyUserJoined(user, room.getRoomId());
+        }
+    }
+    
+    @Override
+    public void onUserLeft(ChatRoom room, User user) {
+        if (!user.equals(sessionUser)) {
+            adapter.notifyUserLeft(user, room.getRoomId());
+        }
+    }
+    
+    @Override
+    public void onTypingChanged(ChatRoom room, List<User> typingUsers) {
+        // A session is never told that its own user is typing
+        List<User> others = new ArrayList<>(typingUsers);
+        others.remove(sessionUser);
+        adapter.notifyTyping(others, room.getRoomId());
+    }
+    
+    public void setMessageForwarding(boolean messageForwarding) {
+        this.messageForwarding = messageForwarding;
+        if (!messageForwarding) {
+            // Messages skipped while summarized are not gaps to fill once forwarding resumes
+            lastSequences.clear();
+        }
+    }
+    
+    /**
+     * Starts forwarding the replies of a thread; earlier replies are loaded page by page
+     * through MessageHistoryService.visitThread
+     */
+    public void openThread(String roomId, long parentId) {
+        openThreads.add(threadKey(roomId, parentId));
+    }
+    
+    public void closeThread(String roomId, long parentId) {
+        openThreads.remove(threadKey(roomId, parentId));
+    }
+    
+    private static String threadKey(String roomId, long parentId) {
+        return roomId + ":" + parentId;
+    }
+    
+    private void fillGap(String roomId, long fromSequence, long toSequence) {
+        ResyncResult result = MessageHistoryService.getInstance()
+            .fetchRange(roomId, fromSequence, toSequence, view -> adapter.sendMessage(view.toMessage()));
+        if (result.getStatus() == ResyncResult.Status.GAP_TOO_LARGE) {
+            logger.warn("Messages " + fromSequence + "-" + toSequence + " in room " + roomId +
+                       " were already evicted; the session must reload history");
+        }
+    }
+    
+    public User getSessionUser() {
+        return sessionUser;
+    }
+}
\ No newline at end of file
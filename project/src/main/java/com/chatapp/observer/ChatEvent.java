@@ -0,0 +1,115 @@
+package com.chatapp.observer;
+
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.User;
+
+import java.util.List;
+
+/**
+ * Immutable record of something that happened in a chat room
+ * Emitted by ChatEventPublisher streams; only the fields relevant to the type are set
+ */
+public final class ChatEvent {
+    public enum Type {
+        MESSAGE,
+        PRIVATE_MESSAGE,
+        MESSAGE_EDITED,
+        REPLY,
+        USER_JOINED,
+        USER_LEFT,
+        TYPING_CHANGED
+    }
+    
+    private final Type type;
+    private final String roomId;
+    private final Message message;
+    private final User user;
+    private final List<User> users;
+    private final MessageEdit edit;
+    private final long timestampMillis;
+    
+    private ChatEvent(Type type, String roomId, Message message, User user, List<User> users, long timestampMillis) {
+        this(type, roomId, message, user, users, null, timestampMillis);
+    }
+    
+    private ChatEvent(Type type, String roomId, Message message, User user, List<User> users, MessageEdit edit,
+                      long timestampMillis) {
+        this.type = type;
+        this.roomId = roomId;
+        this.message = message;
+        this.user = user;
+        this.users = users;
+        this.edit = edit;
+        this.timestampMillis = timestampMillis;
+    }
+    
+    public static ChatEvent message(String roomId, Message message) {
+        Type type = message.isPrivate() ? Type.PRIVATE_MESSAGE : Type.MESSAGE;
+        return new ChatEvent(type, roomId, message, null, List.of(), message.getTimestampMillis());
+    }
+    
+    public static ChatEvent reply(String roomId, Message reply) {
+        return new ChatEvent(Type.REPLY, roomId, reply, null, List.of(), reply.getTimestampMillis());
+    }
+    
+    public static ChatEvent messageEdited(String roomId, MessageEdit edit) {
+        return new ChatEvent(Type.MESSAGE_EDITED, roomId, null, null, List.of(), edit, edit.getEditedAtMillis());
+    }
+    
+    public static ChatEvent userJoined(String roomId, User user) {
+        return new ChatEvent(Type.USER_JOINED, roomId, null, user, List.of(), System.currentTimeMillis());
+    }
+    
+    public static ChatEvent userLeft(String roomId, User user) {
+        return new ChatEvent(Type.USER_LEFT, roomId, null, user, List.of(), System.currentTimeMillis());
+    }
+    
+    public static ChatEvent typingChanged(String roomId, List<User> typingUsers) {
+        return new ChatEvent(Type.TYPING_CHANGED, roomId, null, null, List.copyOf(typingUsers), System.currentTimeMillis());
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getRoomId() {
+        return roomId;
+    }
+    
+    // Null unless this is a message event
+    public Message getMessage() {
+        return message;
+    }
+    
+    // The joining or leaving user; null for other types
+    public User getUser() {
+        return user;
+    }
+    
+    // Users currently typing, for TYPING_CHANGED events
+    public List<User> getUsers() {
+        return users;
+    }
+    
+    // The new revision or tombstone, for MESSAGE_EDITED events
+    public MessageEdit getEdit() {
+        return edit;
+    }
+    
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+    
+    public boolean isMessage() {
+        return message != null;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ChatEvent[%s in %s%s]", type, roomId,
+                           message != null ? ", message " + message.getMessageId() :
+                           edit != null ? ", " + edit :
+                           user != null ? ", " + user.getUsername() : "");
+    }
+}
\ No newline at end of file
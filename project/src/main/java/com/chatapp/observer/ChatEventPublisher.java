@@ -0,0 +1,314 @@
+package com.chatapp.observer;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.User;
+import com.chatapp.service.MessageHistoryService;
+import com.chatapp.service.MessageView;
+import com.chatapp.service.ResyncResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * OBSERVER PATTERN (Behavioral) - Concrete Observer
+ * Turns synchronous room callbacks into a java.util.concurrent.Flow event stream
+ *
+ * The observer callback only enqueues; each subscription has its own bounded buffer and demand
+ * counter and is drained on an executor, so a slow subscriber never blocks the sending thread or
+ * other subscribers. A subscriber that lets its buffer overflow is cancelled with onError and can
+ * resubscribe with replay from the last sequence number it processed.
+ */
+public class ChatEventPublisher implements ChatObserver, Flow.Publisher<ChatEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(ChatEventPublisher.class);
+    public static final long NO_REPLAY = -1;
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    
+    private final String roomId; // null when publishing events of every room
+    private final Executor executor;
+    private final int bufferSize;
+    private final List<EventSubscription> subscriptions;
+    
+    public ChatEventPublisher(String roomId) {
+        this(roomId, ForkJoinPool.commonPool(), DEFAULT_BUFFER_SIZE);
+    }
+    
+    public ChatEventPublisher(String roomId, Executor executor, int bufferSize) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        
+        this.roomId = roomId;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        logger.debug("Event publisher created for " + (roomId != null ? "room " + roomId : "all rooms"));
+    }
+    
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChatEvent> subscriber) {
+        subscribe(subscriber, EnumSet.allOf(ChatEvent.Type.class), NO_REPLAY);
+    }
+    
+    public void subscribe(Flow.Subscriber<? super ChatEvent> subscriber, Set<ChatEvent.Type> types) {
+        subscribe(subscriber, types, NO_REPLAY);
+    }
+    
+    /**
+     * Subscribes to events of the given types
+     * With replayAfterSequence >= 0, retained messages numbered above it are delivered first,
+     * followed without gaps or duplicates by live events; sequence numbers are per room, so a
+     * publisher of every room applies it to each room, and 0 replays everything retained
+     */
+    public void subscribe(Flow.Subscriber<? super ChatEvent> subscriber, Set<ChatEvent.Type> types, long replayAfterSequence) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+        if (types == null || types.isEmpty()) {
+            throw new IllegalArgumentException("Event types cannot be null or empty");
+        }
+        
+        EventSubscription subscription = new EventSubscription(subscriber, EnumSet.copyOf(types));
+        // Registered before the replay is read so nothing published meanwhile is missed
+        subscriptions.add(subscription);
+        if (replayAfterSequence >= 0) {
+            subscription.loadReplay(replayAfterSequence);
+        }
+        subscription.startDelivery();
+    }
+    
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+    
+    @Override
+    public void onMessageReceived(ChatRoom room, Message message) {
+        publish(() -> ChatEvent.message(room.getRoomId(), message), ChatEvent.Type.MESSAGE);
+    }
+    
+    @Override
+    public void onPrivateMessageReceived(ChatRoom room, Message message) {
+        publish(() -> ChatEvent.message(room.getRoomId(), message), ChatEvent.Type.PRIVATE_MESSAGE);
+    }
+    
+    @Override
+    public void onReplyPosted(ChatRoom room, Message reply, int replyCount) {
+        publish(() -> ChatEvent.reply(room.getRoomId(), reply), ChatEvent.Type.REPLY);
+    }
+    
+    @Override
+    public void onMessageEdited(ChatRoom room, MessageEdit edit) {
+        publish(() -> ChatEvent.messageEdited(room.getRoomId(), edit), ChatEvent.Type.MESSAGE_EDITED);
+    }
+    
+    @Override
+    public void onUserJoined(ChatRoom room, User user) {
+        publish(() -> ChatEvent.userJoined(room.getRoomId(), user), ChatEvent.Type.USER_JOINED);
+    }
+    
+    @Override
+    public void onUserLeft(ChatRoom room, User user) {
+        publish(() -> ChatEvent.userLeft(room.getRoomId(), user), ChatEvent.Type.USER_LEFT);
+    }
+    
+    @Override
+    public void onTypingChanged(ChatRoom room, List<User> typingUsers) {
+        publish(() -> ChatEvent.typingChanged(room.getRoomId(), typingUsers), ChatEvent.Type.TYPING_CHANGED);
+    }
+    
+    // Events are only built when someone is subscribed to their type
+    private void publish(Supplier<ChatEvent> factory, ChatEvent.Type type) {
+        ChatEvent event = null;
+        for (EventSubscription subscription : subscriptions) {
+            if (subscription.accepts(type)) {
+                if (event == null) {
+                    event = factory.get();
+                }
+                subscription.offer(event);
+            }
+        }
+    }
+    
+    private Collection<String> replayRoomIds() {
+        if (roomId != null) {
+            return List.of(roomId);
+        }
+        return MessageHistoryService.getInstance().getRoomIds();
+    }
+    
+    private final class EventSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ChatEvent> subscriber;
+        private final Set<ChatEvent.Type> types;
+        private final Queue<ChatEvent> replay;
+        private final Queue<ChatEvent> live;
+        private final AtomicInteger liveCount;
+        private final AtomicLong demand;
+        // Serializes signals: only the thread that moves this from 0 runs the drain loop
+        private final AtomicInteger wip;
+        private volatile boolean cancelled;
+        private volatile boolean started;
+        private volatile Throwable error;
+        private boolean subscribed;
+        // Room ID -> highest sequence number replayed; written before delivery starts
+        private final Map<String, Long> replayedThrough;
+        
+        private EventSubscription(Flow.Subscriber<? super ChatEvent> subscriber, Set<ChatEvent.Type> types) {
+            this.subscriber = subscriber;
+            this.types = types;
+            this.replay = new ArrayDeque<>();
+            this.live = new ConcurrentLinkedQueue<>();
+            this.liveCount = new AtomicInteger();
+            this.demand = new AtomicLong();
+            this.wip = new AtomicInteger();
+            this.replayedThrough = new HashMap<>();
+        }
+        
+        boolean accepts(ChatEvent.Type type) {
+            return !cancelled && types.contains(type);
+        }
+        
+        void loadReplay(long afterSequence) {
+            MessageHistoryService historyService = MessageHistoryService.getInstance();
+            for (String replayRoomId : replayRoomIds()) {
+                List<ChatEvent> events = new ArrayList<>();
+                ResyncResult result = historyService.resync(replayRoomId, afterSequence,
+                    view -> addReplayEvent(events, replayRoomId, view));
+                if (result.getStatus() == ResyncResult.Status.GAP_TOO_LARGE) {
+                    // Part of the range is gone; replay everything still retained
+                    historyService.getChronologicalHistory(replayRoomId).forEach(message ->
+                        addReplayEvent(events, replayRoomId, message));
+                }
+                replay.addAll(events);
+            }
+        }
+        
+        private void addReplayEvent(List<ChatEvent> events, String replayRoomId, MessageView view) {
+            addReplayEvent(events, replayRoomId, view.toMessage());
+        }
+        
+        private void addReplayEvent(List<ChatEvent> events, String replayRoomId, Message message) {
+            ChatEvent event = ChatEvent.message(replayRoomId, message);
+            if (types.contains(event.getType())) {
+                events.add(event);
+            }
+            replayedThrough.merge(replayRoomId, message.getSequence(), Math::max);
+        }
+        
+        // Sequence numbers are per room, so each room is checked against its own watermark
+        private boolean replayed(ChatEvent event) {
+            Long through = replayedThrough.get(event.getRoomId());
+            return through != null && event.getMessage().getSequence() <= through;
+        }
+        
+        void startDelivery() {
+            started = true;
+            drain();
+        }
+        
+        void offer(ChatEvent event) {
+            if (liveCount.incrementAndGet() > bufferSize) {
+                liveCount.decrementAndGet();
+                if (error == null) {
+                    error = new IllegalStateException("Subscriber fell behind; " + bufferSize + " events buffered");
+                    logger.warn("Cancelling slow event subscriber on " + (roomId != null ? roomId : "all rooms"));
+                }
+            } else {
+                live.add(event);
+            }
+            drain();
+        }
+        
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " events; demand must be positive");
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> {
+                    long sum = current + added;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            drain();
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+        
+        private void drain() {
+            if (started && wip.getAndIncrement() == 0) {
+                executor.execute(this::drainLoop);
+            }
+        }
+        
+        private void drainLoop() {
+            int missed = 1;
+            do {
+                try {
+                    deliver();
+                } catch (Throwable t) {
+                    // A throwing subscriber is treated as having cancelled
+                    logger.error("Event subscriber failed; cancelling subscription", t);
+                    cancel();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+        
+        private void deliver() {
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            
+            while (!cancelled && demand.get() > 0) {
+                ChatEvent event = replay.poll();
+                if (event == null) {
+                    event = live.poll();
+                    if (event == null) {
+                        break;
+                    }
+                    liveCount.decrementAndGet();
+                    // Already delivered by the replay, which covers the timeline but not threads
+                    if (event.isMessage() && event.getType() != ChatEvent.Type.REPLY && replayed(event)) {
+                        continue;
+                    }
+                }
+                
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                subscriber.onNext(event);
+            }
+            
+            Throwable failure = error;
+            if (failure != null && !cancelled) {
+                cancel();
+                subscriber.onError(failure);
+            }
+        }
+    }
+}
\ No newline at end of file
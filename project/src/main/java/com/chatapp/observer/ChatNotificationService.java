@@ -5,32 +5,74 @@ import com.chatapp.logger.LoggerFactory;
 import com.chatapp.model.ChatRoom;
 import com.chatapp.model.Message;
 import com.chatapp.model.User;
+import com.chatapp.service.EventScheduler;
 
 import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * OBSERVER PATTERN (Behavioral) - Concrete Observer
  * Handles real-time notifications for chat events
  * Demonstrates how observers react to chat room activities
+ *
+ * In DIGEST mode nothing is printed per event; activity is counted per room and summarized
+ * once per window ("12 new messages in #ops from 4 users") by the shared EventScheduler.
+ * Private messages are never digested: the recipient's session keeps delivering them as they arrive.
  */
 public class ChatNotificationService implements ChatObserver {
     private static final Logger logger = LoggerFactory.getLogger(ChatNotificationService.class);
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final long DEFAULT_DIGEST_WINDOW_MILLIS = 5000;
+    
+    public enum DeliveryMode {
+        REALTIME,
+        DIGEST
+    }
     
     private final AtomicInteger messageCount;
     private final AtomicInteger userActivityCount;
+    private final AtomicInteger digestCount;
+    private final long digestWindowMillis;
+    private final ConcurrentHashMap<String, RoomDigest> pendingDigests;
+    private final AtomicBoolean digestFlushScheduled;
+    private volatile DeliveryMode deliveryMode;
     
     public ChatNotificationService() {
+        this(DeliveryMode.REALTIME,
+             Long.getLong("chatapp.notifications.digest.window.ms", DEFAULT_DIGEST_WINDOW_MILLIS));
+    }
+    
+    public ChatNotificationService(DeliveryMode deliveryMode, long digestWindowMillis) {
+        if (deliveryMode == null) {
+            throw new IllegalArgumentException("Delivery mode cannot be null");
+        }
+        if (digestWindowMillis <= 0) {
+            throw new IllegalArgumentException("Digest window must be positive");
+        }
+        
         this.messageCount = new AtomicInteger(0);
         this.userActivityCount = new AtomicInteger(0);
-        logger.info("Chat Notification Service initialized");
+        this.digestCount = new AtomicInteger(0);
+        this.digestWindowMillis = digestWindowMillis;
+        this.pendingDigests = new ConcurrentHashMap<>();
+        this.digestFlushScheduled = new AtomicBoolean(false);
+        this.deliveryMode = deliveryMode;
+        logger.info("Chat Notification Service initialized (" + deliveryMode + ")");
     }
     
     @Override
     public void onMessageReceived(ChatRoom room, Message message) {
         try {
             messageCount.incrementAndGet();
+            if (deliveryMode == DeliveryMode.DIGEST) {
+                recordDigest(room, digest -> digest.recordMessage(message.getSenderId()));
+                return;
+            }
             
             String timestamp = message.getTimestamp().format(TIME_FORMAT);
             String notification = String.format("🔔 [%s] New message in %s from %s: %s",
@@ -49,6 +91,10 @@ public class ChatNotificationService implements ChatObserver {
     public void onPrivateMessageReceived(ChatRoom room, Message message) {
         try {
             messageCount.incrementAndGet();
+            if (deliveryMode == DeliveryMode.DIGEST) {
+                // Shown by the session itself; a digest would only count it
+                return;
+            }
             
             String timestamp = message.getTimestamp().format(TIME_FORMAT);
             String notification = String.format("💌 [%s] Private message in %s from %s to %s",
@@ -68,6 +114,10 @@ public class ChatNotificationService implements ChatObserver {
     public void onUserJoined(ChatRoom room, User user) {
         try {
             userActivityCount.incrementAndGet();
+            if (deliveryMode == DeliveryMode.DIGEST) {
+                recordDigest(room, RoomDigest::recordJoin);
+                return;
+            }
             
             String notification = String.format("👋 %s joined room %s (Total users: %d)",
                 user.getUsername(), room.getRoomId(), room.getUserCount());
@@ -84,6 +134,10 @@ public class ChatNotificationService implements ChatObserver {
     public void onUserLeft(ChatRoom room, User user) {
         try {
             userActivityCount.incrementAndGet();
+            if (deliveryMode == DeliveryMode.DIGEST) {
+                recordDigest(room, RoomDigest::recordLeave);
+                return;
+            }
             
             String notification = String.format("👋 %s left room %s (Remaining users: %d)",
                 user.getUsername(), room.getRoomId(), room.getUserCount());
@@ -96,6 +150,54 @@ public class ChatNotificationService implements ChatObserver {
         }
     }
     
+    /**
+     * Switches between per-event and digest notifications
+     * Leaving digest mode delivers whatever has been aggregated so far
+     */
+    public void setDeliveryMode(DeliveryMode deliveryMode) {
+        if (deliveryMode == null) {
+            throw new IllegalArgumentException("Delivery mode cannot be null");
+        }
+        
+        this.deliveryMode = deliveryMode;
+        if (deliveryMode == DeliveryMode.REALTIME) {
+            flushDigests();
+        }
+        logger.info("Notification delivery mode set to " + deliveryMode);
+    }
+    
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+    
+    /**
+     * Prints and resets the digest of every room with pending activity
+     */
+    public void flushDigests() {
+        digestFlushScheduled.set(false);
+        for (String roomId : pendingDigests.keySet()) {
+            RoomDigest digest = pendingDigests.remove(roomId);
+            if (digest != null) {
+                String summary = digest.close(roomId);
+                if (summary != null) {
+                    digestCount.incrementAndGet();
+                    System.out.println(summary);
+                }
+            }
+        }
+    }
+    
+    private void recordDigest(ChatRoom room, Predicate<RoomDigest> update) {
+        // A digest closed by a concurrent flush rejects the update; retry on a fresh one
+        while (!update.test(pendingDigests.computeIfAbsent(room.getRoomId(), id -> new RoomDigest()))) {
+            Thread.onSpinWait();
+        }
+        
+        if (digestFlushScheduled.compareAndSet(false, true)) {
+            EventScheduler.getInstance().schedule(this::flushDigests, digestWindowMillis);
+        }
+    }
+    
     private String truncateMessage(String content) {
         if (content.length() > 50) {
             return content.substring(0, 47) + "...";
@@ -107,6 +209,7 @@ public class ChatNotificationService implements ChatObserver {
         System.out.println("\n📊 Notification Statistics:");
         System.out.println("Messages processed: " + messageCount.get());
         System.out.println("User activities: " + userActivityCount.get());
+        System.out.println("Digests delivered: " + digestCount.get());
         System.out.println("Total notifications: " + (messageCount.get() + userActivityCount.get()));
     }
     
@@ -117,6 +220,67 @@ public class ChatNotificationService implements ChatObserver {
     public void reset() {
         messageCount.set(0);
         userActivityCount.set(0);
+        digestCount.set(0);
         logger.info("Notification statistics reset");
     }
+    
+    /**
+     * Activity of one room within the current digest window
+     */
+    private static final class RoomDigest {
+        private final Set<Integer> senders = new HashSet<>();
+        private int messages;
+        private int joins;
+        private int leaves;
+        private boolean closed;
+        
+        synchronized boolean recordMessage(int senderId) {
+            if (closed) {
+                return false;
+            }
+            senders.add(senderId);
+            messages++;
+            return true;
+        }
+        
+        synchronized boolean recordJoin() {
+            if (closed) {
+                return false;
+            }
+            joins++;
+            return true;
+        }
+        
+        synchronized boolean recordLeave() {
+            if (closed) {
+                return false;
+            }
+            leaves++;
+            return true;
+        }
+        
+        // Returns the summary line, or null if nothing happened
+        synchronized String close(String roomId) {
+            closed = true;
+            if (messages + joins + leaves == 0) {
+                return null;
+            }
+            
+            StringBuilder summary = new StringBuilder("🔔 ");
+            if (messages > 0) {
+                summary.append(messages).append(messages == 1 ? " new message" : " new messages")
+                       .append(" in #").append(roomId)
+                       .append(" from ").append(senders.size()).append(senders.size() == 1 ? " user" : " users");
+            } else {
+                summary.append("Activity in #").append(roomId);
+            }
+            if (joins > 0) {
+                summary.append(", ").append(joins).append(" joined");
+            }
+            if (leaves > 0) {
+                summary.append(", ").append(leaves).append(" left");
+            }
+            return summary.toString();
+        }
+    }
 }
\ No newline at end of file
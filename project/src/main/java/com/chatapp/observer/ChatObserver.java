@@ -2,8 +2,13 @@ package com.chatapp.observer;
 
 import com.chatapp.model.ChatRoom;
 import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.ReactionUpdate;
 import com.chatapp.model.User;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * OBSERVER PATTERN (Behavioral)
  * Interface for observers that want to be notified of chat events
@@ -14,4 +19,24 @@ public interface ChatObserver {
     void onPrivateMessageReceived(ChatRoom room, Message message);
     void onUserJoined(ChatRoom room, User user);
     void onUserLeft(ChatRoom room, User user);
+    
+    // Coalesced typing-set update; the list holds everyone currently typing in the room
+    default void onTypingChanged(ChatRoom room, List<User> typingUsers) {
+    }
+    
+    // A stored room message was edited or deleted; carries only the new revision
+    default void onMessageEdited(ChatRoom room, MessageEdit edit) {
+    }
+    
+    // A reply was added to the thread of a room message; replyCount is the thread's new size
+    default void onReplyPosted(ChatRoom room, Message reply, int replyCount) {
+    }
+    
+    // Reaction count changes of the room, aggregated over one publish interval
+    default void onReactionsChanged(ChatRoom room, List<ReactionUpdate> updates) {
+    }
+    
+    // Batched read-watermark moves: user -> newest sequence number they have read in the room
+    default void onReadReceipts(ChatRoom room, Map<User, Long> watermarks) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,315 @@
+package com.chatapp.persistence;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.AttachmentRef;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Local-disk store for file attachments
+ *
+ * Uploads arrive in chunks into a part file under uploads/; the part file's length is the resume
+ * offset, and a small sidecar keeps the upload's metadata so it survives a restart. A completed
+ * upload is moved to objects/ under its SHA-256 digest, so identical files are stored once.
+ * Downloads use FileChannel.transferTo, letting the OS move the bytes without heap copies.
+ */
+public class AttachmentStore {
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentStore.class);
+    private static volatile AttachmentStore instance;
+    private static final Object lock = new Object();
+    
+    public static final int RECOMMENDED_CHUNK_BYTES = 256 * 1024;
+    private static final String DEFAULT_STORE_PATH = "data/attachments";
+    private static final long DEFAULT_MAX_ATTACHMENT_BYTES = 100L * 1024 * 1024;
+    private static final int DIGEST_BUFFER_BYTES = 64 * 1024;
+    
+    private final Path objectsDir;
+    private final Path uploadsDir;
+    private final long maxAttachmentBytes;
+    // Serializes chunk writes per upload
+    private final ConcurrentHashMap<String, Object> uploadLocks;
+    
+    private AttachmentStore() {
+        Path root = Paths.get(System.getProperty("chatapp.attachments.path", DEFAULT_STORE_PATH));
+        this.objectsDir = root.resolve("objects");
+        this.uploadsDir = root.resolve("uploads");
+        this.maxAttachmentBytes = Long.getLong("chatapp.attachments.max.bytes", DEFAULT_MAX_ATTACHMENT_BYTES);
+        this.uploadLocks = new ConcurrentHashMap<>();
+        logger.info("Attachment Store initialized at: " + root.toAbsolutePath());
+    }
+    
+    public static AttachmentStore getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new AttachmentStore();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Starts a resumable upload and returns its ID
+     */
+    public String beginUpload(String fileName, long size) throws IOException {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be null or empty");
+        }
+        if (size < 0 || size > maxAttachmentBytes) {
+            throw new IllegalArgumentException("Attachment size must be between 0 and " + maxAttachmentBytes + " bytes");
+        }
+        
+        Files.createDirectories(uploadsDir);
+        String uploadId = UUID.randomUUID().toString();
+        
+        Properties metadata = new Properties();
+        metadata.setProperty("fileName", fileName.trim());
+        metadata.setProperty("size", Long.toString(size));
+        try (OutputStream out = Files.newOutputStream(metadataPath(uploadId), StandardOpenOption.CREATE_NEW)) {
+            metadata.store(out, "Attachment upload");
+        }
+        Files.createFile(partPath(uploadId));
+        
+        logger.debug("Upload " + uploadId + " started for " + fileName + " (" + size + " bytes)");
+        return uploadId;
+    }
+    
+    /**
+     * Returns how many bytes of the upload are stored, i.e. the offset to resume from
+     */
+    public long getUploadedBytes(String uploadId) throws IOException {
+        return Files.size(existingPartPath(uploadId));
+    }
+    
+    /**
+     * Writes a chunk at the given offset and returns the new uploaded length
+     * Chunks re-sent after a lost acknowledgement are accepted; only the missing tail is written
+     */
+    public long appendChunk(String uploadId, long offset, ByteBuffer chunk) throws IOException {
+        if (chunk == null) {
+            throw new IllegalArgumentException("Chunk cannot be null");
+        }
+        
+        synchronized (uploadLock(uploadId)) {
+            try (FileChannel part = FileChannel.open(existingPartPath(uploadId), StandardOpenOption.WRITE)) {
+                long skip = checkOffset(uploadId, part.size(), offset, chunk.remaining());
+                ByteBuffer tail = chunk.duplicate();
+                tail.position(tail.position() + (int) skip);
+                
+                long position = offset + skip;
+                while (tail.hasRemaining()) {
+                    position += part.write(tail, position);
+                }
+                return part.size();
+            }
+        }
+    }
+    
+    /**
+     * Copies count bytes from a channel into the upload at the given offset
+     * File and socket sources are transferred by the OS without passing through the heap
+     */
+    public long appendChunk(String uploadId, long offset, ReadableByteChannel source, long count) throws IOException {
+        if (source == null) {
+            throw new IllegalArgumentException("Source cannot be null");
+        }
+        
+        synchronized (uploadLock(uploadId)) {
+            try (FileChannel part = FileChannel.open(existingPartPath(uploadId), StandardOpenOption.WRITE)) {
+                if (offset != part.size()) {
+                    throw new IllegalArgumentException("Channel chunks must start at the uploaded length " + part.size());
+                }
+                checkOffset(uploadId, part.size(), offset, count);
+                
+                long transferred = 0;
+                while (transferred < count) {
+                    long n = part.transferFrom(source, offset + transferred, count - transferred);
+                    if (n <= 0) {
+                        break;
+                    }
+                    transferred += n;
+                }
+                return part.size();
+            }
+        }
+    }
+    
+    /**
+     * Verifies the upload is complete, files it under its digest and returns the reference
+     * If the same content is already stored the new copy is discarded
+     */
+    public AttachmentRef completeUpload(String uploadId) throws IOException {
+        synchronized (uploadLock(uploadId)) {
+            Path part = existingPartPath(uploadId);
+            Properties metadata = readMetadata(uploadId);
+            String fileName = metadata.getProperty("fileName");
+            long expectedSize = Long.parseLong(metadata.getProperty("size"));
+            
+            long actualSize = Files.size(part);
+            if (actualSize != expectedSize) {
+                throw new IllegalStateException("Upload " + uploadId + " has " + actualSize + " of " + expectedSize + " bytes");
+            }
+            
+            String sha256 = digest(part);
+            Path object = objectPath(sha256);
+            Files.createDirectories(object.getParent());
+            if (Files.exists(object)) {
+                Files.delete(part);
+                logger.debug("Upload " + uploadId + " deduplicated against " + sha256);
+            } else {
+                try {
+                    Files.move(part, object, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // An identical upload completed concurrently
+                    Files.delete(part);
+                }
+            }
+            Files.deleteIfExists(metadataPath(uploadId));
+            uploadLocks.remove(uploadId);
+            
+            logger.info("Attachment stored: " + fileName + " (" + expectedSize + " bytes, " + sha256 + ")");
+            return new AttachmentRef(sha256, fileName, expectedSize, URLConnection.guessContentTypeFromName(fileName));
+        }
+    }
+    
+    public void abortUpload(String uploadId) throws IOException {
+        synchronized (uploadLock(uploadId)) {
+            Files.deleteIfExists(partPath(uploadId));
+            Files.deleteIfExists(metadataPath(uploadId));
+            uploadLocks.remove(uploadId);
+        }
+    }
+    
+    /**
+     * Sends the attachment from position onward to target and returns the number of bytes sent
+     * A short count means the target stopped accepting; resume from position plus the count
+     */
+    public long transferTo(AttachmentRef attachment, long position, WritableByteChannel target) throws IOException {
+        if (attachment == null || target == null) {
+            throw new IllegalArgumentException("Attachment and target cannot be null");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("Position cannot be negative");
+        }
+        
+        try (FileChannel object = FileChannel.open(objectPath(attachment.getSha256()), StandardOpenOption.READ)) {
+            long end = object.size();
+            long sent = 0;
+            while (position + sent < end) {
+                long n = object.transferTo(position + sent, end - position - sent, target);
+                if (n <= 0) {
+                    break;
+                }
+                sent += n;
+            }
+            return sent;
+        } catch (NoSuchFileException e) {
+            throw new IOException("Attachment not found: " + attachment.getSha256(), e);
+        }
+    }
+    
+    public boolean contains(String sha256) {
+        return AttachmentRef.isValidDigest(sha256) && Files.exists(objectPath(sha256));
+    }
+    
+    // Returns how many leading bytes of the chunk are already stored
+    private long checkOffset(String uploadId, long uploaded, long offset, long length) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Chunk offset cannot be negative");
+        }
+        if (offset > uploaded) {
+            throw new IllegalArgumentException("Chunk at " + offset + " would leave a gap after " + uploaded + " bytes");
+        }
+        
+        long expectedSize = Long.parseLong(readMetadata(uploadId).getProperty("size"));
+        if (offset + length > expectedSize) {
+            throw new IllegalArgumentException("Chunk ends past the declared size of " + expectedSize + " bytes");
+        }
+        return Math.min(length, uploaded - offset);
+    }
+    
+    private String digest(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_BYTES);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    private Properties readMetadata(String uploadId) throws IOException {
+        Properties metadata = new Properties();
+        try (InputStream in = Files.newInputStream(metadataPath(uploadId))) {
+            metadata.load(in);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("Unknown upload: " + uploadId);
+        }
+        return metadata;
+    }
+    
+    private Object uploadLock(String uploadId) {
+        return uploadLocks.computeIfAbsent(checkUploadId(uploadId), id -> new Object());
+    }
+    
+    private Path existingPartPath(String uploadId) {
+        Path part = partPath(uploadId);
+        if (!Files.exists(part)) {
+            throw new IllegalArgumentException("Unknown upload: " + uploadId);
+        }
+        return part;
+    }
+    
+    private Path partPath(String uploadId) {
+        return uploadsDir.resolve(checkUploadId(uploadId) + ".part");
+    }
+    
+    private Path metadataPath(String uploadId) {
+        return uploadsDir.resolve(checkUploadId(uploadId) + ".upload");
+    }
+    
+    // Objects are fanned out by the first two hex digits to keep directories small
+    private Path objectPath(String sha256) {
+        return objectsDir.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+    
+    // Upload IDs become file names, so only well-formed UUIDs are accepted
+    private static String checkUploadId(String uploadId) {
+        if (uploadId == null) {
+            throw new IllegalArgumentException("Upload ID cannot be null");
+        }
+        try {
+            return UUID.fromString(uploadId).toString();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid upload ID: " + uploadId);
+        }
+    }
+}
\ No newline at end of file
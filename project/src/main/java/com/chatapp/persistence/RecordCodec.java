@@ -0,0 +1,291 @@
+package com.chatapp.persistence;
+
+import com.chatapp.model.AttachmentRef;
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.User;
+import com.chatapp.service.UserService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding helpers shared by the persistence formats
+ * Strings are length-prefixed UTF-8 and timestamps are stored as epoch milliseconds
+ */
+public final class RecordCodec {
+    private static final int NULL_LENGTH = -1;
+    
+    // Bits of the optional-field flags written after a message's fixed fields
+    private static final int HAS_ATTACHMENT = 1;
+    private static final int HAS_SEQUENCE = 2;
+    private static final int HAS_REVISION = 4;
+    private static final int HAS_PARENT = 8;
+    
+    private RecordCodec() {
+        // Utility class
+    }
+    
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    public static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Corrupt string length: " + length);
+        }
+        
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Local date-times are kept zone-less so a snapshot restores identically in any time zone
+    public static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    
+    public static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+            (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+    
+    public static void writeMessage(DataOutputStream out, Message message) throws IOException {
+        out.writeLong(message.getId());
+        writeString(out, message.getSender().getUsername());
+        writeString(out, message.isPrivate() ? message.getRecipient().getUsername() : null);
+        out.writeLong(message.getTimestampMillis());
+        writeString(out, message.getContent());
+        
+        int flags = (message.hasAttachment() ? HAS_ATTACHMENT : 0) |
+                    (message.getSequence() != Message.NO_SEQUENCE ? HAS_SEQUENCE : 0) |
+                    (message.isEdited() ? HAS_REVISION : 0) |
+                    (message.isReply() ? HAS_PARENT : 0);
+        out.writeInt(flags);
+        if (message.hasAttachment()) {
+            writeAttachment(out, message.getAttachment());
+        }
+        if ((flags & HAS_SEQUENCE) != 0) {
+            out.writeLong(message.getSequence());
+        }
+        if ((flags & HAS_REVISION) != 0) {
+            out.writeInt(message.getRevision());
+        }
+        if ((flags & HAS_PARENT) != 0) {
+            out.writeLong(message.getParentId());
+        }
+    }
+    
+    public static Message readMessage(ByteBuffer buffer, UserService userService) {
+        long messageId = buffer.getLong();
+        String senderName = readString(buffer);
+        String recipientName = readString(buffer);
+        long timestamp = buffer.getLong();
+        String content = readString(buffer);
+        // Write-ahead log records from before optional fields existed end here
+        int flags = buffer.hasRemaining() ? buffer.getInt() : 0;
+        AttachmentRef attachment = (flags & HAS_ATTACHMENT) != 0 ? readAttachment(buffer) : null;
+        long sequence = (flags & HAS_SEQUENCE) != 0 ? buffer.getLong() : Message.NO_SEQUENCE;
+        int revision = (flags & HAS_REVISION) != 0 ? buffer.getInt() : Message.NO_REVISION;
+        long parentId = (flags & HAS_PARENT) != 0 ? buffer.getLong() : Message.NO_PARENT;
+        
+        // Users are persisted by name so records stay valid even if IDs are reassigned
+        LocalDateTime seenAt = fromEpochMillis(timestamp);
+        User sender = resolveUser(userService, senderName, seenAt);
+        User recipient = recipientName != null ? resolveUser(userService, recipientName, seenAt) : null;
+        return new Message(messageId, sender, content, timestamp, recipient, attachment, sequence, revision,
+                           parentId);
+    }
+    
+    public static void writeEdit(DataOutputStream out, MessageEdit edit) throws IOException {
+        out.writeLong(edit.getMessageId());
+        out.writeInt(edit.getRevision());
+        writeString(out, edit.getContent());
+        writeString(out, edit.getEditor().getUsername());
+        out.writeLong(edit.getEditedAtMillis());
+    }
+    
+    public static MessageEdit readEdit(ByteBuffer buffer, UserService userService) {
+        long messageId = buffer.getLong();
+        int revision = buffer.getInt();
+        String content = readString(buffer);
+        String editorName = readString(buffer);
+        long editedAtMillis = buffer.getLong();
+        User editor = resolveUser(userService, editorName, fromEpochMillis(editedAtMillis));
+        return MessageEdit.restore(messageId, revision, content, editor, editedAtMillis);
+    }
+    
+    public static void writeRoom(DataOutputStream out, ChatRoom room) throws IOException {
+        List<User> members = room.getActiveUsers();
+        writeString(out, room.getRoomId());
+        writeString(out, room.getAdmin().getUsername());
+        out.writeLong(toEpochMillis(room.getCreatedAt()));
+        out.writeInt(members.size());
+        for (User member : members) {
+            writeString(out, member.getUsername());
+        }
+    }
+    
+    /**
+     * Decodes a room record; members are added to the given list rather than to the room, so the
+     * caller can attach them once the room is registered
+     */
+    public static ChatRoom readRoom(ByteBuffer buffer, UserService userService, List<User> members) {
+        String roomId = readString(buffer);
+        String adminName = readString(buffer);
+        LocalDateTime createdAt = fromEpochMillis(buffer.getLong());
+        
+        int memberCount = buffer.getInt();
+        for (int m = 0; m < memberCount; m++) {
+            members.add(resolveUser(userService, readString(buffer), createdAt));
+        }
+        return new ChatRoom(roomId, resolveUser(userService, adminName, createdAt), createdAt);
+    }
+    
+    /**
+     * Writes the retained history of one room: the room's latest sequence number, its messages,
+     * replies after the timeline they belong to, followed by the IDs of its deleted messages
+     */
+    public static void writeHistory(DataOutputStream out, long latestSequence, List<Message> messages,
+                                    List<Long> deletedIds) throws IOException {
+        out.writeLong(latestSequence);
+        out.writeInt(messages.size());
+        for (Message message : messages) {
+            writeMessage(out, message);
+        }
+        out.writeInt(deletedIds.size());
+        for (long deletedId : deletedIds) {
+            out.writeLong(deletedId);
+        }
+    }
+    
+    /**
+     * Decodes a history record into the given lists, in the order restoreHistory expects
+     * Returns the room's latest sequence number when the history was written
+     */
+    public static long readHistory(ByteBuffer buffer, UserService userService, List<Message> messages,
+                                   List<Long> deletedIds) {
+        long latestSequence = buffer.getLong();
+        int messageCount = buffer.getInt();
+        for (int m = 0; m < messageCount; m++) {
+            messages.add(readMessage(buffer, userService));
+        }
+        int deletedCount = buffer.getInt();
+        for (int d = 0; d < deletedCount; d++) {
+            deletedIds.add(buffer.getLong());
+        }
+        return latestSequence;
+    }
+    
+    public static byte[] encodeHistory(long latestSequence, List<Message> messages, List<Long> deletedIds) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeHistory(new DataOutputStream(bytes), latestSequence, messages, deletedIds);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // In-memory streams do not fail
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Writes one direct conversation: the position of its first retained message, its messages,
+     * followed by each participant's read cursor
+     */
+    public static void writeConversation(DataOutputStream out, int firstPosition, List<Message> messages,
+                                         Map<User, Integer> readCursors) throws IOException {
+        out.writeInt(firstPosition);
+        out.writeInt(messages.size());
+        for (Message message : messages) {
+            writeMessage(out, message);
+        }
+        out.writeInt(readCursors.size());
+        for (Map.Entry<User, Integer> cursor : readCursors.entrySet()) {
+            writeString(out, cursor.getKey().getUsername());
+            out.writeInt(cursor.getValue());
+        }
+    }
+    
+    /**
+     * Decodes a conversation record into the given collections
+     * Returns the position of the conversation's first retained message
+     */
+    public static int readConversation(ByteBuffer buffer, UserService userService, List<Message> messages,
+                                       Map<User, Integer> readCursors) {
+        int firstPosition = buffer.getInt();
+        int messageCount = buffer.getInt();
+        for (int m = 0; m < messageCount; m++) {
+            messages.add(readMessage(buffer, userService));
+        }
+        LocalDateTime seenAt = messages.isEmpty() ? LocalDateTime.now() : messages.get(0).getTimestamp();
+        int cursorCount = buffer.getInt();
+        for (int c = 0; c < cursorCount; c++) {
+            User participant = resolveUser(userService, readString(buffer), seenAt);
+            readCursors.put(participant, buffer.getInt());
+        }
+        return firstPosition;
+    }
+    
+    public static byte[] encodeConversation(int firstPosition, List<Message> messages, Map<User, Integer> readCursors) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeConversation(new DataOutputStream(bytes), firstPosition, messages, readCursors);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // In-memory streams do not fail
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    public static void writeAttachment(DataOutputStream out, AttachmentRef attachment) throws IOException {
+        writeString(out, attachment.getSha256());
+        writeString(out, attachment.getFileName());
+        out.writeLong(attachment.getSize());
+        writeString(out, attachment.getContentType());
+    }
+    
+    public static AttachmentRef readAttachment(ByteBuffer buffer) {
+        String sha256 = readString(buffer);
+        String fileName = readString(buffer);
+        long size = buffer.getLong();
+        String contentType = readString(buffer);
+        return new AttachmentRef(sha256, fileName, size, contentType);
+    }
+    
+    public static byte[] encodeAttachment(AttachmentRef attachment) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeAttachment(new DataOutputStream(bytes), attachment);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // In-memory streams do not fail
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Users referenced by rooms or messages but missing from the user section are recreated
+    static User resolveUser(UserService userService, String username, LocalDateTime seenAt) {
+        User user = userService.getUserByUsername(username);
+        return user != null ? user : userService.restoreUser(username, seenAt);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+package com.chatapp.persistence;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.User;
+import com.chatapp.service.UserService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Disk store for passivated rooms
+ *
+ * Each room is kept as one small file holding the same record a snapshot writes for it: room ID,
+ * admin, creation time and member names. File names are the hex-encoded room ID, so any ID maps
+ * to a safe name. Records are replaced atomically and stay until the room is removed, so a
+ * snapshot can always copy the record of a room that is not in memory.
+ *
+ * A room dropped from memory also leaves its message history here, in a second file holding the
+ * history record a snapshot writes for the room.
+ */
+public class RoomStore {
+    private static final Logger logger = LoggerFactory.getLogger(RoomStore.class);
+    private static volatile RoomStore instance;
+    private static final Object lock = new Object();
+    
+    private static final String DEFAULT_STORE_PATH = "data/rooms";
+    private static final String RECORD_SUFFIX = ".room";
+    private static final String HISTORY_SUFFIX = ".history";
+    
+    private final Path root;
+    
+    private RoomStore() {
+        this.root = Paths.get(System.getProperty("chatapp.rooms.path", DEFAULT_STORE_PATH));
+        logger.info("Room Store initialized at: " + root.toAbsolutePath());
+    }
+    
+    public static RoomStore getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new RoomStore();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public void save(ChatRoom room) throws IOException {
+        if (room == null) {
+            throw new IllegalArgumentException("Room cannot be null");
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RecordCodec.writeRoom(new DataOutputStream(bytes), room);
+        write(recordPath(room.getRoomId()), bytes.toByteArray());
+    }
+    
+    /**
+     * Stores the encoded history of a room, replacing any history stored for it before
+     */
+    public void saveHistory(String roomId, byte[] record) throws IOException {
+        if (roomId == null || record == null) {
+            throw new IllegalArgumentException("Room ID and record cannot be null");
+        }
+        
+        write(historyPath(roomId), record);
+    }
+    
+    /**
+     * Returns the encoded record of a room, or null if none is stored
+     */
+    public byte[] loadRecord(String roomId) throws IOException {
+        return read(recordPath(roomId));
+    }
+    
+    /**
+     * Returns the encoded history of a room, or null if none is stored
+     */
+    public byte[] loadHistoryRecord(String roomId) throws IOException {
+        return read(historyPath(roomId));
+    }
+    
+    /**
+     * Decodes a stored room; its members are added to the given list for restoreMembers
+     * Returns null if no record is stored for the room
+     */
+    public ChatRoom load(String roomId, UserService userService, List<User> members) throws IOException {
+        byte[] record = loadRecord(roomId);
+        if (record == null) {
+            return null;
+        }
+        
+        ChatRoom room = RecordCodec.readRoom(ByteBuffer.wrap(record), userService, members);
+        if (!room.getRoomId().equals(roomId)) {
+            throw new IOException("Room record " + recordPath(roomId) + " belongs to " + room.getRoomId());
+        }
+        return room;
+    }
+    
+    public void delete(String roomId) {
+        try {
+            Files.deleteIfExists(recordPath(roomId));
+            Files.deleteIfExists(historyPath(roomId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete stored room " + roomId + ": " + e.getMessage());
+        }
+    }
+    
+    private void write(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(root);
+        Path tempPath = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tempPath, bytes);
+        try {
+            Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    private static byte[] read(Path path) throws IOException {
+        try {
+            return Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+    
+    private Path recordPath(String roomId) {
+        return root.resolve(fileName(roomId) + RECORD_SUFFIX);
+    }
+    
+    private Path historyPath(String roomId) {
+        return root.resolve(fileName(roomId) + HISTORY_SUFFIX);
+    }
+    
+    private static String fileName(String roomId) {
+        return HexFormat.of().formatHex(roomId.getBytes(StandardCharsets.UTF_8));
+    }
+}
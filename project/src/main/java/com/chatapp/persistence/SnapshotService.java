@@ -0,0 +1,468 @@
+package com.chatapp.persistence;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.Message;
+import com.chatapp.model.User;
+import com.chatapp.service.ChatRoomManager;
+import com.chatapp.service.DirectMessageService;
+import com.chatapp.service.MessageHistoryService;
+import com.chatapp.service.UserService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Writes periodic binary snapshots of users, rooms, history tails and direct conversations and
+ * restores them at startup
+ *
+ * File layout: a sequence of independently decodable chunks, followed by a chunk table and a
+ * fixed-size footer. Restore memory-maps every chunk and decodes them in parallel; users are
+ * loaded first because rooms and messages refer to them by username.
+ */
+public class SnapshotService {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotService.class);
+    private static volatile SnapshotService instance;
+    private static final Object lock = new Object();
+    
+    private static final int MAGIC = 0x43485353; // "CHSS"
+    private static final int FORMAT_VERSION = 6;
+    private static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES * 3;
+    private static final int TABLE_ENTRY_BYTES = Byte.BYTES + Long.BYTES + Integer.BYTES;
+    
+    private static final byte SECTION_USERS = 1;
+    private static final byte SECTION_ROOMS = 2;
+    private static final byte SECTION_HISTORY = 3;
+    private static final byte SECTION_DIRECT = 4;
+    
+    private static final int USERS_PER_CHUNK = 16384;
+    private static final int ROOMS_PER_CHUNK = 4096;
+    private static final int HISTORY_ROOMS_PER_CHUNK = 64;
+    private static final int CONVERSATIONS_PER_CHUNK = 64;
+    
+    private static final String DEFAULT_SNAPSHOT_PATH = "data/chat.snapshot";
+    private static final long DEFAULT_INTERVAL_SECONDS = 60;
+    
+    private final Path snapshotPath;
+    private final long intervalSeconds;
+    private final UserService userService;
+    private final ChatRoomManager chatRoomManager;
+    private final MessageHistoryService messageHistoryService;
+    private final DirectMessageService directMessageService;
+    private final RoomStore roomStore;
+    private final WriteAheadLog writeAheadLog;
+    private final Object writeLock = new Object();
+    // Write-Ahead Log segment started by the last snapshot written; guarded by writeLock
+    private long lastRotatedGeneration = -1;
+    private ScheduledExecutorService scheduler;
+    
+    private SnapshotService() {
+        this.snapshotPath = Paths.get(System.getProperty("chatapp.snapshot.path", DEFAULT_SNAPSHOT_PATH));
+        this.intervalSeconds = Long.getLong("chatapp.snapshot.interval", DEFAULT_INTERVAL_SECONDS);
+        this.userService = UserService.getInstance();
+        this.chatRoomManager = ChatRoomManager.getInstance();
+        this.messageHistoryService = MessageHistoryService.getInstance();
+        this.directMessageService = DirectMessageService.getInstance();
+        this.roomStore = RoomStore.getInstance();
+        this.writeAheadLog = WriteAheadLog.getInstance();
+        logger.info("Snapshot Service initialized for: " + snapshotPath.toAbsolutePath());
+    }
+    
+    public static SnapshotService getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new SnapshotService();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public synchronized void startPeriodicSnapshots() {
+        if (scheduler != null || intervalSeconds <= 0) {
+            return;
+        }
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::writeSnapshot, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        logger.info("Periodic snapshots scheduled every " + intervalSeconds + "s");
+    }
+    
+    /**
+     * Stops periodic snapshots and writes a final one so a clean shutdown loses nothing
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        writeSnapshot();
+    }
+    
+    /**
+     * Writes a snapshot to a temporary file and atomically moves it into place
+     * Rooms and history are captured per room; users created while the snapshot runs are
+     * recreated on restore from the rooms and messages that reference them
+     *
+     * The Write-Ahead Log is rotated first. Once the snapshot is in place, the segments before the
+     * previous snapshot's rotation are deleted; the segment in between is kept, since a message
+     * logged just before that rotation may have reached history only after its room was captured.
+     */
+    public boolean writeSnapshot() {
+        synchronized (writeLock) {
+            long start = System.nanoTime();
+            Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            long generation = rotateLog();
+            
+            try {
+                if (snapshotPath.getParent() != null) {
+                    Files.createDirectories(snapshotPath.getParent());
+                }
+                
+                List<ChunkEntry> table = new ArrayList<>();
+                try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writeUserChunks(channel, table);
+                    writeRoomChunks(channel, table);
+                    writeHistoryChunks(channel, table);
+                    writeDirectChunks(channel, table);
+                    writeTable(channel, table);
+                    channel.force(true);
+                }
+                
+                moveIntoPlace(tempPath);
+                if (generation >= 0) {
+                    if (lastRotatedGeneration >= 0) {
+                        writeAheadLog.deleteSegmentsBefore(lastRotatedGeneration);
+                    }
+                    lastRotatedGeneration = generation;
+                }
+                logger.info("Snapshot written: " + table.size() + " chunks in " +
+                           TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+                return true;
+            
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to write snapshot to " + snapshotPath, e);
+                return false;
+            }
+        }
+    }
+    
+    // Returns the new segment's generation, or -1 if the log is not running or could not rotate
+    private long rotateLog() {
+        if (!writeAheadLog.isRunning()) {
+            return -1;
+        }
+        try {
+            return writeAheadLog.rotate();
+        } catch (IOException | IllegalStateException e) {
+            logger.warn("Failed to rotate Write-Ahead Log before snapshot: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    /**
+     * Loads the latest snapshot, if any, into the user, room and history services
+     */
+    public boolean restore() {
+        if (!Files.exists(snapshotPath)) {
+            logger.info("No snapshot found at " + snapshotPath + ", starting empty");
+            return false;
+        }
+        
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            List<ChunkEntry> table = readTable(channel);
+            
+            int users = table.parallelStream()
+                .filter(entry -> entry.section == SECTION_USERS)
+                .mapToInt(entry -> restoreUsers(map(channel, entry)))
+                .sum();
+            
+            // Rooms and messages only reference users, so the remaining sections load side by side
+            int[] counts = table.parallelStream()
+                .filter(entry -> entry.section != SECTION_USERS)
+                .map(entry -> restoreSection(channel, entry))
+                .reduce(new int[2], (a, b) -> new int[] {a[0] + b[0], a[1] + b[1]});
+            
+            logger.info(String.format("Snapshot restored: %d users, %d rooms, %d messages in %d ms",
+                users, counts[0], counts[1], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            return true;
+        
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to restore snapshot from " + snapshotPath, e);
+            return false;
+        }
+    }
+    
+    private void writeUserChunks(FileChannel channel, List<ChunkEntry> table) throws IOException {
+        List<User> users = userService.getAllUsers();
+        
+        for (int from = 0; from < users.size(); from += USERS_PER_CHUNK) {
+            List<User> chunk = users.subList(from, Math.min(users.size(), from + USERS_PER_CHUNK));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            
+            out.writeInt(chunk.size());
+            for (User user : chunk) {
+                RecordCodec.writeString(out, user.getUsername());
+                out.writeInt(user.getId());
+                out.writeLong(RecordCodec.toEpochMillis(user.getJoinedAt()));
+            }
+            
+            writeChunk(channel, table, SECTION_USERS, bytes);
+        }
+    }
+    
+    // Passivated rooms are copied from their stored records without being loaded
+    private void writeRoomChunks(FileChannel channel, List<ChunkEntry> table) throws IOException {
+        List<String> roomIds = chatRoomManager.getAllRoomIds();
+        
+        for (int from = 0; from < roomIds.size(); from += ROOMS_PER_CHUNK) {
+            List<String> chunk = roomIds.subList(from, Math.min(roomIds.size(), from + ROOMS_PER_CHUNK));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            DataOutputStream recordsOut = new DataOutputStream(records);
+            
+            int count = 0;
+            for (String roomId : chunk) {
+                ChatRoom room = chatRoomManager.getResidentRoom(roomId);
+                if (room != null) {
+                    RecordCodec.writeRoom(recordsOut, room);
+                    count++;
+                    continue;
+                }
+                byte[] record = roomStore.loadRecord(roomId);
+                if (record != null) {
+                    recordsOut.write(record);
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            records.writeTo(out);
+            
+            writeChunk(channel, table, SECTION_ROOMS, bytes);
+        }
+    }
+    
+    // Histories of rooms dropped from memory are copied from the RoomStore, like their room records
+    private void writeHistoryChunks(FileChannel channel, List<ChunkEntry> table) throws IOException {
+        List<String> roomIds = chatRoomManager.getHistoryRoomIds();
+        
+        for (int from = 0; from < roomIds.size(); from += HISTORY_ROOMS_PER_CHUNK) {
+            List<String> chunk = roomIds.subList(from, Math.min(roomIds.size(), from + HISTORY_ROOMS_PER_CHUNK));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            DataOutputStream recordsOut = new DataOutputStream(records);
+            
+            int count = 0;
+            for (String roomId : chunk) {
+                byte[] record = chatRoomManager.captureHistory(roomId);
+                if (record != null) {
+                    RecordCodec.writeString(recordsOut, roomId);
+                    recordsOut.write(record);
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            records.writeTo(out);
+            
+            writeChunk(channel, table, SECTION_HISTORY, bytes);
+        }
+    }
+    
+    private void writeDirectChunks(FileChannel channel, List<ChunkEntry> table) throws IOException {
+        List<Long> keys = directMessageService.getConversationKeys();
+        
+        for (int from = 0; from < keys.size(); from += CONVERSATIONS_PER_CHUNK) {
+            List<Long> chunk = keys.subList(from, Math.min(keys.size(), from + CONVERSATIONS_PER_CHUNK));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            
+            int count = 0;
+            for (long key : chunk) {
+                byte[] record = directMessageService.captureConversation(key);
+                if (record != null) {
+                    records.write(record);
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            records.writeTo(out);
+            
+            writeChunk(channel, table, SECTION_DIRECT, bytes);
+        }
+    }
+    
+    private void writeChunk(FileChannel channel, List<ChunkEntry> table, byte section,
+                            ByteArrayOutputStream bytes) throws IOException {
+        long offset = channel.position();
+        writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()));
+        table.add(new ChunkEntry(section, offset, bytes.size()));
+    }
+    
+    private void writeTable(FileChannel channel, List<ChunkEntry> table) throws IOException {
+        long tableOffset = channel.position();
+        ByteBuffer buffer = ByteBuffer.allocate(table.size() * TABLE_ENTRY_BYTES + FOOTER_BYTES);
+        
+        for (ChunkEntry entry : table) {
+            buffer.put(entry.section).putLong(entry.offset).putInt(entry.length);
+        }
+        buffer.putLong(tableOffset).putInt(table.size()).putInt(FORMAT_VERSION).putInt(MAGIC);
+        buffer.flip();
+        
+        writeFully(channel, buffer);
+    }
+    
+    private List<ChunkEntry> readTable(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < FOOTER_BYTES) {
+            throw new IOException("Snapshot file is truncated");
+        }
+        
+        ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size - FOOTER_BYTES, FOOTER_BYTES);
+        long tableOffset = footer.getLong();
+        int entryCount = footer.getInt();
+        int version = footer.getInt();
+        if (footer.getInt() != MAGIC || version != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format (version " + version + ")");
+        }
+        
+        ByteBuffer tableBuffer = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset,
+            (long) entryCount * TABLE_ENTRY_BYTES);
+        List<ChunkEntry> table = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            table.add(new ChunkEntry(tableBuffer.get(), tableBuffer.getLong(), tableBuffer.getInt()));
+        }
+        return table;
+    }
+    
+    private int restoreUsers(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            String username = RecordCodec.readString(buffer);
+            int id = buffer.getInt();
+            LocalDateTime joinedAt = RecordCodec.fromEpochMillis(buffer.getLong());
+            userService.restoreUser(username, id, joinedAt);
+        }
+        return count;
+    }
+    
+    // Returns {rooms, messages} restored from one chunk
+    private int[] restoreSection(FileChannel channel, ChunkEntry entry) {
+        switch (entry.section) {
+            case SECTION_ROOMS:
+                return new int[] {restoreRooms(map(channel, entry)), 0};
+            case SECTION_HISTORY:
+                return new int[] {0, restoreHistory(map(channel, entry))};
+            case SECTION_DIRECT:
+                return new int[] {0, restoreDirect(map(channel, entry))};
+            default:
+                logger.warn("Skipping unknown snapshot section " + entry.section);
+                return new int[2];
+        }
+    }
+    
+    private int restoreRooms(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            List<User> members = new ArrayList<>();
+            ChatRoom room = RecordCodec.readRoom(buffer, userService, members);
+            chatRoomManager.restoreRoom(room, members);
+        }
+        return count;
+    }
+    
+    private int restoreHistory(ByteBuffer buffer) {
+        int roomCount = buffer.getInt();
+        int messageTotal = 0;
+        for (int i = 0; i < roomCount; i++) {
+            String roomId = RecordCodec.readString(buffer);
+            List<Message> messages = new ArrayList<>();
+            List<Long> deletedIds = new ArrayList<>();
+            long latestSequence = RecordCodec.readHistory(buffer, userService, messages, deletedIds);
+            messageHistoryService.restoreHistory(roomId, messages, deletedIds, latestSequence);
+            messageTotal += messages.size();
+        }
+        return messageTotal;
+    }
+    
+    private int restoreDirect(ByteBuffer buffer) {
+        int conversationCount = buffer.getInt();
+        int messageTotal = 0;
+        for (int i = 0; i < conversationCount; i++) {
+            List<Message> messages = new ArrayList<>();
+            Map<User, Integer> readCursors = new LinkedHashMap<>();
+            int firstPosition = RecordCodec.readConversation(buffer, userService, messages, readCursors);
+            directMessageService.restoreConversation(firstPosition, messages, readCursors);
+            messageTotal += messages.size();
+        }
+        return messageTotal;
+    }
+    
+    private ByteBuffer map(FileChannel channel, ChunkEntry entry) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map snapshot chunk at " + entry.offset, e);
+        }
+    }
+    
+    private void moveIntoPlace(Path tempPath) throws IOException {
+        try {
+            Files.move(tempPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+    
+    private static final class ChunkEntry {
+        private final byte section;
+        private final long offset;
+        private final int length;
+        
+        private ChunkEntry(byte section, long offset, int length) {
+            this.section = section;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,619 @@
+package com.chatapp.persistence;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.service.DirectMessageService;
+import com.chatapp.service.MessageHistoryService;
+import com.chatapp.service.UserService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Write-ahead log for chat messages with group commit
+ *
+ * Sender threads enqueue records and receive a future; a single committer thread writes
+ * everything queued within the batch window and completes all futures after one fsync.
+ * Each record is framed as [length][crc32][payload] so a torn tail is detected on replay.
+ *
+ * A message is logged as [room ID, message] before any client sees it. The sequence number the
+ * room then assigns is logged as a second record, [SEQUENCE_RECORD, room ID, message ID, sequence],
+ * so replay restores the numbering clients saw rather than deriving one from log order; a reply is
+ * marked the same way with NO_SEQUENCE. The second record also commits the message: one logged
+ * without it was never published, because its send failed, and is not replayed. Edits and
+ * deletions are logged as [EDIT_RECORD, room ID, revision] before clients are told about them.
+ * Direct messages are logged as [DIRECT_RECORD, message] before they are appended to their
+ * conversation, in the order they are appended; one whose sender stopped waiting for the log is
+ * followed by [DIRECT_ABORT_RECORD, message ID], since it was reported as failed and never appended.
+ *
+ * The log is a series of segments: the configured path, then path.1, path.2, and so on. Each
+ * snapshot starts a new segment (rotate) and, once written, deletes the segments that the
+ * snapshot before it made redundant (deleteSegmentsBefore). Replay skips every message at or
+ * below a room's snapshot checkpoint, its latest sequence number when the history was captured,
+ * and every direct message logged up to a conversation's newest message in the snapshot.
+ */
+public class WriteAheadLog {
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static volatile WriteAheadLog instance;
+    private static final Object lock = new Object();
+    
+    private static final String DEFAULT_WAL_PATH = "data/messages.wal";
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long DEFAULT_BATCH_LATENCY_MILLIS = 5;
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES * 2;
+    // Message records start with the room ID's length, never below -1, so other types use negative tags
+    private static final int SEQUENCE_RECORD = -2;
+    private static final int EDIT_RECORD = -3;
+    private static final int DIRECT_RECORD = -4;
+    private static final int DIRECT_ABORT_RECORD = -5;
+    private static final PendingRecord SHUTDOWN = new PendingRecord(new byte[0]);
+    
+    private final Path walPath;
+    private final int maxBatchSize;
+    private final long maxBatchLatencyNanos;
+    private final LinkedBlockingQueue<PendingRecord> pending;
+    // Guards the channel and generation: the committer writes while a snapshot may rotate
+    private final Object segmentLock = new Object();
+    private FileChannel channel;
+    private long generation;
+    private Thread committer;
+    private volatile boolean running;
+    
+    private WriteAheadLog() {
+        this.walPath = Paths.get(System.getProperty("chatapp.wal.path", DEFAULT_WAL_PATH));
+        this.maxBatchSize = Math.max(1, Integer.getInteger("chatapp.wal.batch.size", DEFAULT_BATCH_SIZE));
+        this.maxBatchLatencyNanos = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(0, Long.getLong("chatapp.wal.batch.latency.ms", DEFAULT_BATCH_LATENCY_MILLIS)));
+        this.pending = new LinkedBlockingQueue<>();
+        logger.info("Write-Ahead Log initialized for: " + walPath.toAbsolutePath());
+    }
+    
+    public static WriteAheadLog getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new WriteAheadLog();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Opens the log for appending and starts the committer thread
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        
+        if (walPath.getParent() != null) {
+            Files.createDirectories(walPath.getParent());
+        }
+        synchronized (segmentLock) {
+            List<Long> generations = segmentGenerations();
+            generation = generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+            channel = FileChannel.open(segmentPath(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        
+        running = true;
+        committer = new Thread(this::runCommitter, "wal-committer");
+        committer.setDaemon(true);
+        committer.start();
+        logger.info("Write-Ahead Log started (batch size " + maxBatchSize + ", window " +
+                   TimeUnit.NANOSECONDS.toMillis(maxBatchLatencyNanos) + " ms)");
+    }
+    
+    /**
+     * Starts a new segment and returns its generation; records committed from now on go to it
+     * Called when a snapshot starts, so that the older segments can be deleted once it is written
+     */
+    public long rotate() throws IOException {
+        synchronized (segmentLock) {
+            if (!running) {
+                throw new IllegalStateException("Write-Ahead Log is not running");
+            }
+            
+            FileChannel next = FileChannel.open(segmentPath(generation + 1), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+            channel.force(false);
+            channel.close();
+            channel = next;
+            generation++;
+            logger.info("Write-Ahead Log rotated to segment " + generation);
+            return generation;
+        }
+    }
+    
+    /**
+     * Deletes every segment older than the given generation
+     */
+    public void deleteSegmentsBefore(long oldestKept) {
+        try {
+            int deleted = 0;
+            for (long segment : segmentGenerations()) {
+                if (segment < oldestKept && Files.deleteIfExists(segmentPath(segment))) {
+                    deleted++;
+                }
+            }
+            if (deleted > 0) {
+                logger.info("Deleted " + deleted + " Write-Ahead Log segment(s) before " + oldestKept);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete Write-Ahead Log segments: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Queues a message for durable storage
+     * The returned future completes once the batch containing the record has been fsynced
+     */
+    public CompletableFuture<Void> append(String roomId, Message message) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Room ID cannot be null or empty");
+        }
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        
+        return enqueue(out -> {
+            RecordCodec.writeString(out, roomId);
+            RecordCodec.writeMessage(out, message);
+        });
+    }
+    
+    /**
+     * Queues the sequence number a room assigned to a logged message, or NO_SEQUENCE for a reply,
+     * once the message is published
+     * Rooms call this in sequence order, so the log holds each room's numbering in that order too
+     */
+    public CompletableFuture<Void> appendSequence(String roomId, long messageId, long sequence) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Room ID cannot be null or empty");
+        }
+        if (sequence < Message.NO_SEQUENCE) {
+            throw new IllegalArgumentException("Invalid sequence number: " + sequence);
+        }
+        
+        return enqueue(out -> {
+            out.writeInt(SEQUENCE_RECORD);
+            RecordCodec.writeString(out, roomId);
+            out.writeLong(messageId);
+            out.writeLong(sequence);
+        });
+    }
+    
+    /**
+     * Queues an edit or deletion of a logged message
+     */
+    public CompletableFuture<Void> appendEdit(String roomId, MessageEdit edit) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Room ID cannot be null or empty");
+        }
+        if (edit == null) {
+            throw new IllegalArgumentException("Edit cannot be null");
+        }
+        
+        return enqueue(out -> {
+            out.writeInt(EDIT_RECORD);
+            RecordCodec.writeString(out, roomId);
+            RecordCodec.writeEdit(out, edit);
+        });
+    }
+    
+    /**
+     * Queues a direct message; callers append to a conversation in the order they log
+     */
+    public CompletableFuture<Void> appendDirect(Message message) {
+        if (message == null || !message.isPrivate()) {
+            throw new IllegalArgumentException("Direct message cannot be null and must have a recipient");
+        }
+        
+        return enqueue(out -> {
+            out.writeInt(DIRECT_RECORD);
+            RecordCodec.writeMessage(out, message);
+        });
+    }
+    
+    /**
+     * Queues the abort of a direct message whose sender gave up waiting for its record
+     */
+    public CompletableFuture<Void> appendDirectAbort(long messageId) {
+        return enqueue(out -> {
+            out.writeInt(DIRECT_ABORT_RECORD);
+            out.writeLong(messageId);
+        });
+    }
+    
+    // Records are encoded by the calling thread, so the committer only writes bytes
+    private CompletableFuture<Void> enqueue(RecordWriter writer) {
+        PendingRecord record;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writer.write(new DataOutputStream(bytes));
+            record = new PendingRecord(bytes.toByteArray());
+        } catch (IOException e) {
+            // In-memory streams do not fail
+            throw new UncheckedIOException(e);
+        }
+        
+        if (!running) {
+            record.ack.completeExceptionally(new IllegalStateException("Write-Ahead Log is not running"));
+            return record.ack;
+        }
+        
+        pending.add(record);
+        return record.ack;
+    }
+    
+    /**
+     * Re-applies logged messages to the history service
+     * Messages at or below a room's snapshot checkpoint, or whose ID is already present in its
+     * history, are skipped, so replaying the same log twice, or on top of a snapshot that already
+     * contains some records, is harmless. Messages the snapshot records as deleted are skipped as well.
+     *
+     * Each room's messages are applied in the order of their logged sequence numbers. Messages
+     * logged without a sequence record were never published and are skipped. Edits are applied
+     * last, in log order; a revision the history already has is skipped.
+     *
+     * Direct messages are appended to their conversation in log order, starting after the
+     * conversation's newest message; if that message is not in the log, its segment was deleted
+     * and every logged message of the conversation is newer. Aborted direct messages are skipped.
+     */
+    public int replay() {
+        MessageHistoryService historyService = MessageHistoryService.getInstance();
+        UserService userService = UserService.getInstance();
+        Map<String, LoggedRoom> rooms = new HashMap<>();
+        List<Message> directMessages = new ArrayList<>();
+        Set<Long> abortedDirectIds = new HashSet<>();
+        int applied = 0;
+        int skipped = 0;
+        
+        try {
+            for (long segment : segmentGenerations()) {
+                readSegment(segmentPath(segment), userService, rooms, directMessages, abortedDirectIds);
+            }
+            
+            for (Map.Entry<String, LoggedRoom> room : rooms.entrySet()) {
+                int roomApplied = replayRoom(historyService, room.getKey(), room.getValue());
+                applied += roomApplied;
+                skipped += room.getValue().messages.size() + room.getValue().edits.size() - roomApplied;
+            }
+            
+            directMessages.removeIf(message -> abortedDirectIds.contains(message.getId()));
+            int directApplied = replayDirect(DirectMessageService.getInstance(), directMessages);
+            applied += directApplied;
+            skipped += directMessages.size() - directApplied;
+        
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to replay Write-Ahead Log " + walPath, e);
+        }
+        
+        logger.info("Write-Ahead Log replayed: " + applied + " applied, " + skipped + " already present or deleted");
+        return applied;
+    }
+    
+    // Collects the records of one segment, truncating a torn tail
+    private void readSegment(Path segment, UserService userService, Map<String, LoggedRoom> rooms,
+                             List<Message> directMessages, Set<Long> abortedDirectIds) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            long validLength = 0;
+            
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                
+                ByteBuffer payload = buffer.slice();
+                payload.limit(length);
+                if (checksum != checksum(payload.duplicate())) {
+                    break;
+                }
+                buffer.position(buffer.position() + length);
+                validLength = buffer.position();
+                
+                int type = payload.getInt(payload.position());
+                if (type == SEQUENCE_RECORD) {
+                    payload.getInt();
+                    LoggedRoom room = rooms.computeIfAbsent(RecordCodec.readString(payload), id -> new LoggedRoom());
+                    long messageId = payload.getLong();
+                    room.sequences.put(messageId, payload.getLong());
+                } else if (type == EDIT_RECORD) {
+                    payload.getInt();
+                    LoggedRoom room = rooms.computeIfAbsent(RecordCodec.readString(payload), id -> new LoggedRoom());
+                    room.edits.add(RecordCodec.readEdit(payload, userService));
+                } else if (type == DIRECT_RECORD) {
+                    payload.getInt();
+                    directMessages.add(RecordCodec.readMessage(payload, userService));
+                } else if (type == DIRECT_ABORT_RECORD) {
+                    payload.getInt();
+                    abortedDirectIds.add(payload.getLong());
+                } else {
+                    LoggedRoom room = rooms.computeIfAbsent(RecordCodec.readString(payload), id -> new LoggedRoom());
+                    room.messages.add(RecordCodec.readMessage(payload, userService));
+                }
+            }
+            
+            if (validLength < readChannel.size()) {
+                logger.warn("Discarding torn Write-Ahead Log tail of " + segment.getFileName() + " at offset " + validLength);
+                readChannel.truncate(validLength);
+            }
+        }
+    }
+    
+    // Returns the number of messages and edits applied to the room
+    private static int replayRoom(MessageHistoryService historyService, String roomId, LoggedRoom room) {
+        Set<Long> knownIds = new HashSet<>();
+        historyService.getChronologicalHistory(roomId).forEach(m -> knownIds.add(m.getId()));
+        
+        List<Message> sequenced = new ArrayList<>();
+        List<Message> replies = new ArrayList<>();
+        for (Message message : room.messages) {
+            Long sequence = room.sequences.get(message.getId());
+            if (sequence == null || historyService.isDeleted(roomId, message.getId())) {
+                // Never published, or deleted after it was logged; the log itself is append-only
+                continue;
+            }
+            if (message.isReply()) {
+                replies.add(message);
+            } else {
+                sequenced.add(message.withSequence(sequence));
+            }
+        }
+        sequenced.sort(Comparator.comparingLong(Message::getSequence));
+        
+        int applied = 0;
+        long checkpoint = historyService.getLatestSequence(roomId);
+        for (Message message : sequenced) {
+            // At or below the checkpoint: in the snapshot, or evicted from history since
+            if (message.getSequence() > checkpoint && knownIds.add(message.getId())) {
+                historyService.saveMessage(roomId, message);
+                applied++;
+            }
+        }
+        // Replies live in threads, outside the timeline IDs collected above; a reply whose parent
+        // is no longer retained had its thread dropped along with the parent
+        for (Message reply : replies) {
+            if (historyService.getMessage(roomId, reply.getId()) == null &&
+                historyService.getMessage(roomId, reply.getParentId()) != null) {
+                historyService.saveReply(roomId, reply);
+                applied++;
+            }
+        }
+        for (MessageEdit edit : room.edits) {
+            if (historyService.restoreEdit(roomId, edit)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+    
+    // Returns the number of direct messages appended to their conversations
+    private static int replayDirect(DirectMessageService directMessageService, List<Message> directMessages) {
+        Map<List<Integer>, List<Message>> conversations = new LinkedHashMap<>();
+        for (Message message : directMessages) {
+            int low = Math.min(message.getSenderId(), message.getRecipientId());
+            int high = Math.max(message.getSenderId(), message.getRecipientId());
+            conversations.computeIfAbsent(List.of(low, high), k -> new ArrayList<>()).add(message);
+        }
+        
+        int applied = 0;
+        for (List<Message> logged : conversations.values()) {
+            Message first = logged.get(0);
+            long checkpoint = directMessageService.getLastMessageId(first.getSender(), first.getRecipient());
+            int from = 0;
+            for (int i = 0; i < logged.size(); i++) {
+                if (logged.get(i).getId() == checkpoint) {
+                    from = i + 1;
+                }
+            }
+            for (Message message : logged.subList(from, logged.size())) {
+                directMessageService.restoreMessage(message);
+                applied++;
+            }
+        }
+        return applied;
+    }
+    
+    /**
+     * Stops the committer after it has flushed every queued record
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        
+        running = false;
+        pending.add(SHUTDOWN);
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // Records that raced with shutdown never reach the committer
+        PendingRecord straggler;
+        while ((straggler = pending.poll()) != null) {
+            straggler.ack.completeExceptionally(new IllegalStateException("Write-Ahead Log is shutting down"));
+        }
+        
+        synchronized (segmentLock) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.error("Error closing Write-Ahead Log", e);
+            }
+        }
+        logger.info("Write-Ahead Log stopped");
+    }
+    
+    private void runCommitter() {
+        List<PendingRecord> batch = new ArrayList<>(maxBatchSize);
+        boolean stopping = false;
+        
+        while (!stopping) {
+            try {
+                PendingRecord first = pending.take();
+                if (first == SHUTDOWN) {
+                    break;
+                }
+                batch.add(first);
+                stopping = collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopping = true;
+            }
+            
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+    
+    // Returns true if the shutdown marker was reached while collecting
+    private boolean collectBatch(List<PendingRecord> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + maxBatchLatencyNanos;
+        
+        while (batch.size() < maxBatchSize) {
+            PendingRecord next = pending.poll();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+            }
+            if (next == SHUTDOWN) {
+                return true;
+            }
+            batch.add(next);
+        }
+        return false;
+    }
+    
+    private void commit(List<PendingRecord> batch) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            
+            for (PendingRecord record : batch) {
+                out.writeInt(record.payload.length);
+                out.writeInt(checksum(ByteBuffer.wrap(record.payload)));
+                out.write(record.payload);
+            }
+            
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            synchronized (segmentLock) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            
+            for (PendingRecord record : batch) {
+                record.ack.complete(null);
+            }
+            logger.debug("Write-Ahead Log committed batch of " + batch.size() + " records");
+        
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to commit Write-Ahead Log batch", e);
+            for (PendingRecord record : batch) {
+                record.ack.completeExceptionally(e);
+            }
+        }
+    }
+    
+    // Generations of the segments on disk, oldest first; the configured path itself is generation 0
+    private List<Long> segmentGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        if (Files.exists(walPath)) {
+            generations.add(0L);
+        }
+        
+        Path directory = walPath.toAbsolutePath().getParent();
+        String prefix = walPath.getFileName() + ".";
+        if (directory == null || !Files.isDirectory(directory)) {
+            return generations;
+        }
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory)) {
+            for (Path segment : segments) {
+                String name = segment.getFileName().toString();
+                if (name.startsWith(prefix) && name.length() > prefix.length() &&
+                    name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+                    generations.add(Long.parseLong(name.substring(prefix.length())));
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+    
+    private Path segmentPath(long segment) {
+        return segment == 0 ? walPath : walPath.resolveSibling(walPath.getFileName() + "." + segment);
+    }
+    
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    // Records of one room collected from every segment, each list in log order
+    private static final class LoggedRoom {
+        private final List<Message> messages = new ArrayList<>();
+        // Message ID -> assigned sequence number
+        private final Map<Long, Long> sequences = new HashMap<>();
+        private final List<MessageEdit> edits = new ArrayList<>();
+    }
+    
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    private static final class PendingRecord {
+        private final byte[] payload;
+        private final CompletableFuture<Void> ack;
+        
+        private PendingRecord(byte[] payload) {
+            this.payload = payload;
+            this.ack = new CompletableFuture<>();
+        }
+    }
+}
\ No newline at end of file
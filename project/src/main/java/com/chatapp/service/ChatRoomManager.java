@@ -3,16 +3,37 @@ package com.chatapp.service;
 import com.chatapp.logger.Logger;
 import com.chatapp.logger.LoggerFactory;
 import com.chatapp.model.ChatRoom;
+import com.chatapp.model.Message;
 import com.chatapp.model.User;
+import com.chatapp.observer.ChatEventPublisher;
+import com.chatapp.persistence.RecordCodec;
+import com.chatapp.persistence.RoomStore;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * SINGLETON PATTERN (Creational)
  * Manages all chat rooms in the system
  * Ensures centralized room management with thread safety
+ *
+ * Rooms idle for chatapp.room.idle.ms with no member online are written to the RoomStore and
+ * moved to a warm tier of at most chatapp.room.warm.max rooms, oldest first out. Rooms leaving the
+ * warm tier are dropped from memory together with their message history, which moves to the
+ * RoomStore as well. getRoomById brings a room and its history back from either tier, so resident
+ * memory follows the active rooms while the directory still lists every room.
  */
 public class ChatRoomManager {
     private static final Logger logger = LoggerFactory.getLogger(ChatRoomManager.class);
@@ -20,9 +41,41 @@ public class ChatRoomManager {
     private static final Object lock = new Object();
     
     private final ConcurrentHashMap<String, ChatRoom> chatRooms;
+    // Event stream spanning every managed room
+    private final ChatEventPublisher eventPublisher;
+    // Sorted room index for listings and search, so queries never walk every room
+    private final RoomDirectory directory;
+    
+    private static final long DEFAULT_IDLE_MILLIS = 30 * 60 * 1000L;
+    private static final int DEFAULT_MAX_WARM_ROOMS = 1024;
+    private static final long MAX_SWEEP_INTERVAL_MILLIS = 60_000;
+    
+    private final RoomStore roomStore;
+    private final long idleMillis;
+    private final int maxWarmRooms;
+    // Passivated rooms still in memory; entries leave on access, so insertion order is LRU order
+    private final LinkedHashMap<String, WarmRoom> warmRooms;
+    // Rooms whose only copy is in the RoomStore
+    private final Set<String> storedRoomIds;
+    private final MessageHistoryService messageHistoryService;
+    // Held while a room's history moves between memory and the RoomStore, or is captured
+    private final Object historyLock = new Object();
+    // Rooms whose history is only in the RoomStore; guarded by historyLock
+    private final Set<String> storedHistoryIds;
+    private ScheduledExecutorService passivator;
     
     private ChatRoomManager() {
         this.chatRooms = new ConcurrentHashMap<>();
+        this.eventPublisher = new ChatEventPublisher(null);
+        this.directory = new RoomDirectory();
+        this.roomStore = RoomStore.getInstance();
+        this.idleMillis = Long.getLong("chatapp.room.idle.ms", DEFAULT_IDLE_MILLIS);
+        this.maxWarmRooms = Integer.getInteger("chatapp.room.warm.max", DEFAULT_MAX_WARM_ROOMS);
+        this.warmRooms = new LinkedHashMap<>();
+        this.storedRoomIds = ConcurrentHashMap.newKeySet();
+        this.messageHistoryService = MessageHistoryService.getInstance();
+        this.storedHistoryIds = new HashSet<>();
+        startPassivation();
         logger.info("Chat Room Manager initialized");
     }
     
@@ -46,48 +99,373 @@ public class ChatRoomManager {
             throw new IllegalArgumentException("Admin user cannot be null");
         }
         
-        if (chatRooms.containsKey(roomId)) {
+        if (directory.contains(roomId)) {
             throw new IllegalArgumentException("Room with ID '" + roomId + "' already exists");
         }
         
         ChatRoom room = new ChatRoom(roomId, admin);
-        chatRooms.put(roomId, room);
+        if (chatRooms.putIfAbsent(roomId, room) != null) {
+            throw new IllegalArgumentException("Room with ID '" + roomId + "' already exists");
+        }
+        room.addObserver(eventPublisher);
+        room.addObserver(directory);
+        directory.add(room);
         
         logger.info("Chat room created: " + roomId + " by " + admin.getUsername());
         return room;
     }
     
+    /**
+     * Registers a room recovered from a snapshot together with its members
+     * A room created since startup with the same ID wins over the restored copy
+     */
+    public ChatRoom restoreRoom(ChatRoom room, Collection<User> members) {
+        if (room == null) {
+            throw new IllegalArgumentException("Room cannot be null");
+        }
+        
+        if (directory.contains(room.getRoomId())) {
+            return getRoomById(room.getRoomId());
+        }
+        ChatRoom existing = chatRooms.putIfAbsent(room.getRoomId(), room);
+        if (existing != null) {
+            return existing;
+        }
+        room.restoreMembers(members);
+        attach(room);
+        return room;
+    }
+    
+    /**
+     * Returns a room, bringing it back into memory if it was passivated
+     */
     public ChatRoom getRoomById(String roomId) {
         if (roomId == null || roomId.trim().isEmpty()) {
             return null;
         }
         
-        return chatRooms.get(roomId);
+        ChatRoom room = chatRooms.get(roomId);
+        if (room != null || !directory.contains(roomId)) {
+            return room;
+        }
+        // computeIfAbsent makes concurrent lookups of the same room share one hydration
+        return chatRooms.computeIfAbsent(roomId, this::hydrate);
     }
     
+    /**
+     * Returns a room only if it is in memory, without hydrating it or counting as activity
+     */
+    public ChatRoom getResidentRoom(String roomId) {
+        ChatRoom room = chatRooms.get(roomId);
+        if (room != null) {
+            return room;
+        }
+        synchronized (warmRooms) {
+            WarmRoom warm = warmRooms.get(roomId);
+            return warm != null ? warm.room : null;
+        }
+    }
+    
+    /**
+     * Returns the rooms currently resident in memory; passivated rooms are not included
+     */
     public List<ChatRoom> getActiveRooms() {
         return new ArrayList<>(chatRooms.values());
     }
     
+    /**
+     * Returns the IDs of all rooms, resident or passivated, in room ID order
+     */
+    public List<String> getAllRoomIds() {
+        return directory.roomIds();
+    }
+    
+    /**
+     * Returns one page of rooms, most populated and most recently active first
+     * Pass the last entry of the previous page to continue, or null for the first page
+     */
+    public List<RoomSummary> listRooms(RoomSummary after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return directory.page(after, limit);
+    }
+    
+    /**
+     * Returns rooms whose ID starts with the given prefix, in room ID order
+     * Pass the last entry of the previous page to continue, or null for the first page
+     */
+    public List<RoomSummary> searchRooms(String prefix, RoomSummary after, int limit) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return directory.search(prefix, after != null ? after.getRoomId() : null, limit);
+    }
+    
     public boolean removeRoom(String roomId) {
         if (roomId == null || roomId.trim().isEmpty()) {
             return false;
         }
         
         ChatRoom removedRoom = chatRooms.remove(roomId);
-        if (removedRoom != null) {
-            logger.info("Chat room removed: " + roomId);
-            return true;
+        if (removedRoom == null) {
+            synchronized (warmRooms) {
+                WarmRoom warm = warmRooms.remove(roomId);
+                removedRoom = warm != null ? warm.room : null;
+            }
+        }
+        boolean stored = storedRoomIds.remove(roomId);
+        synchronized (historyLock) {
+            storedHistoryIds.remove(roomId);
+        }
+        if (removedRoom == null && !stored) {
+            return false;
         }
         
-        return false;
+        if (removedRoom != null) {
+            removedRoom.removeObserver(eventPublisher);
+            removedRoom.removeObserver(directory);
+        }
+        directory.remove(roomId);
+        roomStore.delete(roomId);
+        logger.info("Chat room removed: " + roomId);
+        return true;
+    }
+    
+    /**
+     * Returns the Flow event stream of all rooms managed here
+     */
+    public ChatEventPublisher getEventPublisher() {
+        return eventPublisher;
     }
     
     public int getTotalRooms() {
-        return chatRooms.size();
+        return directory.size();
+    }
+    
+    public int getResidentRoomCount() {
+        synchronized (warmRooms) {
+            return chatRooms.size() + warmRooms.size();
+        }
     }
     
     public boolean roomExists(String roomId) {
-        return chatRooms.containsKey(roomId);
+        return roomId != null && directory.contains(roomId);
+    }
+    
+    /**
+     * Returns the IDs of rooms with message history, whether in memory or stored with a passivated room
+     */
+    public List<String> getHistoryRoomIds() {
+        synchronized (historyLock) {
+            Set<String> roomIds = messageHistoryService.getRoomIds();
+            roomIds.addAll(storedHistoryIds);
+            return new ArrayList<>(roomIds);
+        }
+    }
+    
+    /**
+     * Returns the encoded history record of a room for a snapshot, or null if none is stored
+     * A passivated room's record is read from the RoomStore; the lock keeps a concurrent
+     * passivation or hydration from hiding the history in both places
+     */
+    public byte[] captureHistory(String roomId) throws IOException {
+        synchronized (historyLock) {
+            if (storedHistoryIds.contains(roomId)) {
+                return roomStore.loadHistoryRecord(roomId);
+            }
+            return encodeHistory(roomId);
+        }
+    }
+    
+    public synchronized void shutdown() {
+        if (passivator != null) {
+            passivator.shutdownNow();
+            passivator = null;
+        }
+    }
+    
+    private void attach(ChatRoom room) {
+        room.addObserver(eventPublisher);
+        room.addObserver(directory);
+        directory.add(room);
+    }
+    
+    // Runs inside computeIfAbsent; returning null leaves the room absent
+    private ChatRoom hydrate(String roomId) {
+        WarmRoom warm;
+        synchronized (warmRooms) {
+            warm = warmRooms.remove(roomId);
+        }
+        if (warm != null) {
+            warm.room.touch();
+            return warm.room;
+        }
+        if (!storedRoomIds.contains(roomId)) {
+            return null;
+        }
+        
+        try {
+            List<User> members = new ArrayList<>();
+            ChatRoom room = roomStore.load(roomId, UserService.getInstance(), members);
+            if (room == null) {
+                logger.warn("Stored room " + roomId + " is missing from the room store");
+                return null;
+            }
+            room.restoreMembers(members);
+            room.touch();
+            synchronized (historyLock) {
+                restoreStoredHistory(roomId);
+                storedRoomIds.remove(roomId);
+            }
+            attach(room);
+            logger.debug("Room hydrated from store: " + roomId);
+            return room;
+            
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load stored room: " + roomId, e);
+            return null;
+        }
+    }
+    
+    private synchronized void startPassivation() {
+        if (idleMillis <= 0) {
+            return;
+        }
+        
+        passivator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "room-passivator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.min(idleMillis, MAX_SWEEP_INTERVAL_MILLIS);
+        passivator.scheduleWithFixedDelay(this::passivateIdleRooms, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    
+    private void passivateIdleRooms() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        int passivated = 0;
+        
+        try {
+            for (ChatRoom room : chatRooms.values()) {
+                long activity = room.getLastActivityMillis();
+                if (!room.isIdleSince(idleSince)) {
+                    continue;
+                }
+                try {
+                    roomStore.save(room);
+                } catch (IOException e) {
+                    logger.warn("Failed to passivate room " + room.getRoomId() + ": " + e.getMessage());
+                    continue;
+                }
+                
+                // Parked in the warm tier before leaving the map, so lookups always find it somewhere;
+                // the map is never touched under the warm lock, which hydration takes inside the map
+                synchronized (warmRooms) {
+                    warmRooms.put(room.getRoomId(), new WarmRoom(room, activity));
+                }
+                chatRooms.remove(room.getRoomId(), room);
+                
+                List<WarmRoom> evicted;
+                synchronized (warmRooms) {
+                    evicted = trimWarmRooms();
+                }
+                evicted.forEach(this::release);
+                passivated++;
+            }
+        } catch (RuntimeException e) {
+            logger.error("Room passivation sweep failed", e);
+        }
+        
+        if (passivated > 0) {
+            logger.info("Passivated " + passivated + " idle room(s); " + getResidentRoomCount() + " resident");
+        }
+    }
+    
+    private List<WarmRoom> trimWarmRooms() {
+        List<WarmRoom> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, WarmRoom>> oldest = warmRooms.entrySet().iterator();
+        while (warmRooms.size() > maxWarmRooms && oldest.hasNext()) {
+            WarmRoom warm = oldest.next().getValue();
+            oldest.remove();
+            storedRoomIds.add(warm.room.getRoomId());
+            evicted.add(warm);
+        }
+        return evicted;
+    }
+    
+    // The stored record is rewritten if a stale reference changed the room while it was warm
+    private void release(WarmRoom warm) {
+        ChatRoom room = warm.room;
+        if (room.getLastActivityMillis() != warm.savedActivityMillis) {
+            try {
+                roomStore.save(room);
+            } catch (IOException e) {
+                logger.warn("Failed to update stored room " + room.getRoomId() + ": " + e.getMessage());
+            }
+        }
+        room.removeObserver(eventPublisher);
+        room.removeObserver(directory);
+        room.releaseMembers();
+        passivateHistory(room.getRoomId());
+    }
+    
+    // Skipped if the room was hydrated again since it left the warm tier, as it is in use
+    private void passivateHistory(String roomId) {
+        synchronized (historyLock) {
+            if (!storedRoomIds.contains(roomId) || storedHistoryIds.contains(roomId)) {
+                return;
+            }
+            try {
+                roomStore.saveHistory(roomId, encodeHistory(roomId));
+            } catch (IOException e) {
+                logger.warn("Failed to store history of room " + roomId + ": " + e.getMessage());
+                return;
+            }
+            messageHistoryService.clearHistory(roomId);
+            storedHistoryIds.add(roomId);
+        }
+    }
+    
+    // Caller holds historyLock
+    private void restoreStoredHistory(String roomId) throws IOException {
+        if (!storedHistoryIds.contains(roomId)) {
+            return;
+        }
+        
+        byte[] record = roomStore.loadHistoryRecord(roomId);
+        if (record != null) {
+            List<Message> messages = new ArrayList<>();
+            List<Long> deletedIds = new ArrayList<>();
+            long latestSequence = RecordCodec.readHistory(ByteBuffer.wrap(record), UserService.getInstance(), messages, deletedIds);
+            messageHistoryService.restoreHistory(roomId, messages, deletedIds, latestSequence);
+        } else {
+            logger.warn("Stored history of room " + roomId + " is missing from the room store");
+        }
+        storedHistoryIds.remove(roomId);
+    }
+    
+    private byte[] encodeHistory(String roomId) {
+        // Read before the messages, so every message at or below it is in the record: a
+        // Write-Ahead Log replay on top of the record skips logged messages up to this number
+        long latestSequence = messageHistoryService.getLatestSequence(roomId);
+        // Thread replies follow the timeline; restoreHistory sorts them back into their threads
+        List<Message> messages = messageHistoryService.getChronologicalHistory(roomId);
+        messages.addAll(messageHistoryService.getAllReplies(roomId));
+        // Deleted IDs keep the replay from restoring those messages
+        return RecordCodec.encodeHistory(latestSequence, messages, messageHistoryService.getDeletedIds(roomId));
+    }
+    
+    private static final class WarmRoom {
+        private final ChatRoom room;
+        private final long savedActivityMillis;
+        
+        WarmRoom(ChatRoom room, long savedActivityMillis) {
+            this.room = room;
+            this.savedActivityMillis = savedActivityMillis;
+        }
     }
 }
\ No newline at end of file
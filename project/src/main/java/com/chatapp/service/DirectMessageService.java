@@ -0,0 +1,456 @@
+package com.chatapp.service;
+
+import com.chatapp.exceptions.ChatException;
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.Message;
+import com.chatapp.model.User;
+import com.chatapp.persistence.RecordCodec;
+import com.chatapp.persistence.WriteAheadLog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Room-independent direct conversations between two users
+ *
+ * Each conversation is an append-only log shared by both participants, trimmed to its newest
+ * MAX_MESSAGES_PER_CONVERSATION messages like room history. Every user has an inbox holding a read
+ * cursor per conversation and, while no session is connected, a bounded queue of undelivered
+ * messages that is flushed as one batch when the user connects again.
+ *
+ * A message is written to the Write-Ahead Log before it is appended, and conversations are
+ * included in snapshots, so direct messages survive a restart like room messages do.
+ */
+public class DirectMessageService {
+    private static final Logger logger = LoggerFactory.getLogger(DirectMessageService.class);
+    private static volatile DirectMessageService instance;
+    private static final Object lock = new Object();
+    
+    private static final int MAX_MESSAGES_PER_CONVERSATION = 1000;
+    private static final int MAX_UNDELIVERED_MESSAGES = 1000;
+    private static final long DURABILITY_TIMEOUT_SECONDS = 5;
+    
+    private final ConcurrentHashMap<Long, Conversation> conversations;
+    private final ConcurrentHashMap<Integer, Inbox> inboxes;
+    private final WriteAheadLog writeAheadLog;
+    
+    private DirectMessageService() {
+        this.conversations = new ConcurrentHashMap<>();
+        this.inboxes = new ConcurrentHashMap<>();
+        this.writeAheadLog = WriteAheadLog.getInstance();
+        logger.info("Direct Message Service initialized");
+    }
+    
+    public static DirectMessageService getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new DirectMessageService();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Logs a message, appends it to the conversation and delivers it to the recipient's session,
+     * or queues it in the recipient's inbox if they are not connected
+     */
+    public Message sendDirectMessage(User sender, User recipient, String content) throws ChatException {
+        if (sender == null || recipient == null) {
+            throw new IllegalArgumentException("Sender and recipient cannot be null");
+        }
+        if (sender.getId() == recipient.getId()) {
+            throw new IllegalArgumentException("Cannot send a direct message to yourself");
+        }
+        
+        Message message = new Message(sender, content, recipient);
+        long key = conversationKey(sender.getId(), recipient.getId());
+        Conversation conversation = conversations.computeIfAbsent(key, k -> new Conversation());
+        int position;
+        // Logged under the conversation's lock, so the log holds every conversation in append order
+        // as replay expects; only the two participants contend for it
+        synchronized (conversation) {
+            awaitDurable(message);
+            position = conversation.append(message);
+        }
+        
+        // The sender has read everything up to their own message
+        inbox(sender.getId()).markRead(recipient.getId(), key, position + 1);
+        inbox(recipient.getId()).deliver(sender.getId(), key, message);
+        
+        logger.debug("Direct message " + message.getMessageId() + " from " + sender.getUsername() +
+                    " to " + recipient.getUsername());
+        return message;
+    }
+    
+    /**
+     * Attaches a delivery session for the user
+     * Messages queued while the user was away are handed to the session in a single batch
+     */
+    public void connect(User user, Consumer<List<Message>> session) {
+        if (user == null || session == null) {
+            throw new IllegalArgumentException("User and session cannot be null");
+        }
+        
+        int flushed = inbox(user.getId()).connect(session);
+        logger.info("Direct message session connected for " + user.getUsername() +
+                   (flushed > 0 ? " (" + flushed + " queued message(s) delivered)" : ""));
+    }
+    
+    public void disconnect(User user) {
+        if (user == null) {
+            return;
+        }
+        
+        Inbox inbox = inboxes.get(user.getId());
+        if (inbox != null) {
+            inbox.disconnect();
+            logger.info("Direct message session disconnected for " + user.getUsername());
+        }
+    }
+    
+    /**
+     * Returns the full conversation between two users in chronological order
+     */
+    public List<Message> getConversation(User user, User other) {
+        if (user == null || other == null) {
+            return new ArrayList<>();
+        }
+        
+        Conversation conversation = conversations.get(conversationKey(user.getId(), other.getId()));
+        return conversation != null ? conversation.range(0) : new ArrayList<>();
+    }
+    
+    /**
+     * Returns the messages of a conversation the user has not read yet, oldest first
+     */
+    public List<Message> getUnreadMessages(User user, User other) {
+        if (user == null || other == null) {
+            return new ArrayList<>();
+        }
+        
+        long key = conversationKey(user.getId(), other.getId());
+        Conversation conversation = conversations.get(key);
+        if (conversation == null) {
+            return new ArrayList<>();
+        }
+        return conversation.range(inbox(user.getId()).cursor(key));
+    }
+    
+    /**
+     * Moves the user's read cursor to the end of the conversation
+     */
+    public void markRead(User user, User other) {
+        if (user == null || other == null) {
+            throw new IllegalArgumentException("Users cannot be null");
+        }
+        
+        long key = conversationKey(user.getId(), other.getId());
+        Conversation conversation = conversations.get(key);
+        if (conversation != null) {
+            inbox(user.getId()).markRead(other.getId(), key, conversation.end());
+        }
+    }
+    
+    public int getUnreadCount(User user, User other) {
+        if (user == null || other == null) {
+            return 0;
+        }
+        
+        long key = conversationKey(user.getId(), other.getId());
+        Conversation conversation = conversations.get(key);
+        if (conversation == null) {
+            return 0;
+        }
+        return conversation.unreadFrom(inbox(user.getId()).cursor(key));
+    }
+    
+    public int getTotalUnreadCount(User user) {
+        if (user == null) {
+            return 0;
+        }
+        
+        Inbox inbox = inboxes.get(user.getId());
+        if (inbox == null) {
+            return 0;
+        }
+        
+        int total = 0;
+        for (Map.Entry<Long, Integer> entry : inbox.readCursors.entrySet()) {
+            Conversation conversation = conversations.get(entry.getKey());
+            if (conversation != null) {
+                total += conversation.unreadFrom(entry.getValue());
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * Returns the users this user has a direct conversation with
+     */
+    public List<User> getConversationPartners(User user) {
+        List<User> partners = new ArrayList<>();
+        if (user == null) {
+            return partners;
+        }
+        
+        Inbox inbox = inboxes.get(user.getId());
+        if (inbox != null) {
+            UserService userService = UserService.getInstance();
+            for (Integer partnerId : inbox.partners) {
+                User partner = userService.getUserById(partnerId);
+                if (partner != null) {
+                    partners.add(partner);
+                }
+            }
+        }
+        return partners;
+    }
+    
+    public int getTotalConversations() {
+        return conversations.size();
+    }
+    
+    /**
+     * Returns the ID of the newest message between two users, or 0 if they have none
+     * Replay uses it as the conversation's checkpoint in the Write-Ahead Log
+     */
+    public long getLastMessageId(User user, User other) {
+        if (user == null || other == null) {
+            return 0;
+        }
+        
+        Conversation conversation = conversations.get(conversationKey(user.getId(), other.getId()));
+        return conversation != null ? conversation.lastMessageId() : 0;
+    }
+    
+    /**
+     * Appends a logged message during replay, without delivering it to either participant
+     */
+    public void restoreMessage(Message message) {
+        if (message == null || !message.isPrivate()) {
+            throw new IllegalArgumentException("Direct message cannot be null and must have a recipient");
+        }
+        
+        int senderId = message.getSenderId();
+        int recipientId = message.getRecipientId();
+        long key = conversationKey(senderId, recipientId);
+        int position = conversations.computeIfAbsent(key, k -> new Conversation()).append(message);
+        inbox(senderId).markRead(recipientId, key, position + 1);
+        inbox(recipientId).track(senderId, key);
+    }
+    
+    public List<Long> getConversationKeys() {
+        return new ArrayList<>(conversations.keySet());
+    }
+    
+    /**
+     * Encodes a conversation and both participants' read cursors for a snapshot
+     * Returns null if the conversation has no messages or a participant no longer exists
+     */
+    public byte[] captureConversation(long key) {
+        Conversation conversation = conversations.get(key);
+        if (conversation == null) {
+            return null;
+        }
+        
+        UserService userService = UserService.getInstance();
+        User low = userService.getUserById((int) (key >> 32));
+        User high = userService.getUserById((int) key);
+        if (low == null || high == null) {
+            return null;
+        }
+        
+        // Captured under the conversation's lock, so a send is either fully in or fully out
+        synchronized (conversation) {
+            if (conversation.messages.isEmpty()) {
+                return null;
+            }
+            Map<User, Integer> readCursors = new LinkedHashMap<>();
+            readCursors.put(low, inbox(low.getId()).cursor(key));
+            readCursors.put(high, inbox(high.getId()).cursor(key));
+            return RecordCodec.encodeConversation(conversation.firstPosition, conversation.range(0), readCursors);
+        }
+    }
+    
+    /**
+     * Replaces a conversation with one loaded from a snapshot
+     */
+    public void restoreConversation(int firstPosition, List<Message> messages, Map<User, Integer> readCursors) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        
+        Message first = messages.get(0);
+        long key = conversationKey(first.getSenderId(), first.getRecipientId());
+        Conversation conversation = new Conversation();
+        conversation.restore(firstPosition, messages);
+        conversations.put(key, conversation);
+        
+        for (Map.Entry<User, Integer> cursor : readCursors.entrySet()) {
+            int userId = cursor.getKey().getId();
+            int partnerId = userId == first.getSenderId() ? first.getRecipientId() : first.getSenderId();
+            inbox(userId).markRead(partnerId, key, cursor.getValue());
+        }
+    }
+    
+    // A record still in flight when the sender gives up is aborted, so that replay does not restore
+    // a message reported as failed; it is not appended later, which would break the log order
+    private void awaitDurable(Message message) throws ChatException {
+        try {
+            writeAheadLog.appendDirect(message).get(DURABILITY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeAheadLog.appendDirectAbort(message.getId());
+            throw new ChatException("Interrupted while persisting direct message", e);
+        } catch (ExecutionException e) {
+            throw new ChatException("Direct message could not be persisted: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            writeAheadLog.appendDirectAbort(message.getId());
+            throw new ChatException("Timed out persisting direct message", e);
+        }
+    }
+    
+    private Inbox inbox(int userId) {
+        return inboxes.computeIfAbsent(userId, id -> new Inbox());
+    }
+    
+    // Order-independent key so both participants share one log
+    private static long conversationKey(int firstUserId, int secondUserId) {
+        int low = Math.min(firstUserId, secondUserId);
+        int high = Math.max(firstUserId, secondUserId);
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Append-only message log of one conversation, keeping the newest MAX_MESSAGES_PER_CONVERSATION
+     * Positions count every message ever appended, so read cursors stay valid as the oldest are dropped
+     */
+    private static final class Conversation {
+        private final ArrayDeque<Message> messages = new ArrayDeque<>();
+        // Position of the oldest retained message
+        private int firstPosition;
+        
+        // Returns the position of the appended message
+        synchronized int append(Message message) {
+            if (messages.size() >= MAX_MESSAGES_PER_CONVERSATION) {
+                messages.pollFirst();
+                firstPosition++;
+            }
+            messages.addLast(message);
+            return end() - 1;
+        }
+        
+        synchronized void restore(int first, List<Message> restored) {
+            messages.clear();
+            int skip = Math.max(0, restored.size() - MAX_MESSAGES_PER_CONVERSATION);
+            firstPosition = first + skip;
+            for (Message message : restored.subList(skip, restored.size())) {
+                messages.addLast(message);
+            }
+        }
+        
+        synchronized List<Message> range(int from) {
+            List<Message> result = new ArrayList<>();
+            int position = firstPosition;
+            for (Message message : messages) {
+                if (position++ >= from) {
+                    result.add(message);
+                }
+            }
+            return result;
+        }
+        
+        // Position after the newest message
+        synchronized int end() {
+            return firstPosition + messages.size();
+        }
+        
+        // Unread messages that are still retained
+        synchronized int unreadFrom(int cursor) {
+            return Math.max(0, end() - Math.max(cursor, firstPosition));
+        }
+        
+        synchronized long lastMessageId() {
+            return messages.isEmpty() ? 0 : messages.peekLast().getId();
+        }
+    }
+    
+    /**
+     * Per-user read cursors, conversation partners and offline delivery queue
+     */
+    private static final class Inbox {
+        private final ConcurrentHashMap<Long, Integer> readCursors = new ConcurrentHashMap<>();
+        private final Set<Integer> partners = ConcurrentHashMap.newKeySet();
+        private final ArrayDeque<Message> undelivered = new ArrayDeque<>();
+        private Consumer<List<Message>> session;
+        
+        int cursor(long key) {
+            return readCursors.getOrDefault(key, 0);
+        }
+        
+        void markRead(int partnerId, long key, int position) {
+            partners.add(partnerId);
+            readCursors.merge(key, position, Math::max);
+        }
+        
+        void track(int partnerId, long key) {
+            partners.add(partnerId);
+            readCursors.putIfAbsent(key, 0);
+        }
+        
+        // Delivery happens under the inbox lock so a session sees messages in send order
+        synchronized void deliver(int partnerId, long key, Message message) {
+            track(partnerId, key);
+            if (session != null) {
+                try {
+                    session.accept(Collections.singletonList(message));
+                    return;
+                } catch (Exception e) {
+                    logger.error("Direct message session failed; queueing message for later delivery", e);
+                    session = null;
+                }
+            }
+            // The oldest queued message is dropped; it stays in the conversation as unread
+            if (undelivered.size() >= MAX_UNDELIVERED_MESSAGES) {
+                undelivered.pollFirst();
+            }
+            undelivered.addLast(message);
+        }
+        
+        synchronized int connect(Consumer<List<Message>> newSession) {
+            session = newSession;
+            if (undelivered.isEmpty()) {
+                return 0;
+            }
+            
+            List<Message> batch = Collections.unmodifiableList(new ArrayList<>(undelivered));
+            try {
+                newSession.accept(batch);
+            } catch (Exception e) {
+                logger.error("Direct message session failed; keeping queued messages", e);
+                session = null;
+                return 0;
+            }
+            undelivered.clear();
+            return batch.size();
+        }
+        
+        synchronized void disconnect() {
+            session = null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.chatapp.service;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Shared timer for deferred and periodic chat work such as coalesced event flushes
+ * Tasks run one at a time on a single daemon thread, so they must stay short
+ */
+public class EventScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(EventScheduler.class);
+    private static volatile EventScheduler instance;
+    private static final Object lock = new Object();
+    
+    private final ScheduledExecutorService executor;
+    
+    private EventScheduler() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Event Scheduler initialized");
+    }
+    
+    public static EventScheduler getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new EventScheduler();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        return executor.schedule(guard(task), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+    
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long periodMillis) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        return executor.scheduleAtFixedRate(guard(task), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    public void shutdown() {
+        executor.shutdownNow();
+        logger.info("Event Scheduler stopped");
+    }
+    
+    // A failing task must not cancel its periodic schedule or stall the thread
+    private static Runnable guard(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("Scheduled task failed", e);
+            }
+        };
+    }
+}
\ No newline at end of file
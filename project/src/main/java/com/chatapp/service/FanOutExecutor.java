@@ -0,0 +1,125 @@
+package com.chatapp.service;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Delivers one event to many recipients, in parallel once the recipient count is large enough
+ *
+ * Below chatapp.fanout.threshold recipients (default 4096) delivery stays on the calling thread.
+ * Above it the recipient array is cut into contiguous slices of chatapp.fanout.chunk entries
+ * (default 1024, rounded to whole cache lines of references) and the slices run on a dedicated
+ * ForkJoinPool. The call returns once every slice is done, so a caller that fans out events one at
+ * a time delivers them to each recipient in order.
+ */
+public class FanOutExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(FanOutExecutor.class);
+    private static volatile FanOutExecutor instance;
+    private static final Object lock = new Object();
+    
+    private static final int DEFAULT_THRESHOLD = 4096;
+    private static final int DEFAULT_CHUNK_SIZE = 1024;
+    // References per 64-byte cache line with compressed oops. The array header offsets chunk
+    // boundaries from line boundaries, so adjacent slices can still share one line at their edge
+    private static final int REFERENCES_PER_LINE = 16;
+    
+    private final int threshold;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    
+    private FanOutExecutor() {
+        this(Integer.getInteger("chatapp.fanout.threshold", DEFAULT_THRESHOLD),
+             Integer.getInteger("chatapp.fanout.chunk", DEFAULT_CHUNK_SIZE),
+             newPool(Integer.getInteger("chatapp.fanout.threads", Runtime.getRuntime().availableProcessors())));
+        logger.info("Fan-out Executor initialized (threshold " + threshold + ", chunk " + chunkSize +
+                   ", " + pool.getParallelism() + " threads)");
+    }
+    
+    // Package-private so benchmarks can compare configurations side by side
+    FanOutExecutor(int threshold, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.threshold = threshold;
+        this.chunkSize = (chunkSize + REFERENCES_PER_LINE - 1) / REFERENCES_PER_LINE * REFERENCES_PER_LINE;
+        this.pool = pool;
+    }
+    
+    public static FanOutExecutor getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new FanOutExecutor();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    static ForkJoinPool newPool(int threads) {
+        return new ForkJoinPool(Math.max(1, threads), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("fan-out-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+    
+    /**
+     * Applies action to every target and returns when all are done
+     * The action must handle its own failures; it is called at most once per target
+     */
+    public <T> void fanOut(T[] targets, Consumer<? super T> action) {
+        if (targets.length < threshold || targets.length <= chunkSize || pool.getParallelism() == 1) {
+            for (T target : targets) {
+                action.accept(target);
+            }
+            return;
+        }
+        pool.invoke(new Slice<>(targets, action, chunkSize, 0, (targets.length + chunkSize - 1) / chunkSize));
+    }
+    
+    public int getThreshold() {
+        return threshold;
+    }
+    
+    // Covers chunks [firstChunk, endChunk); halves until a single chunk remains
+    private static final class Slice<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final T[] targets;
+        private final Consumer<? super T> action;
+        private final int chunkSize;
+        private final int firstChunk;
+        private final int endChunk;
+        
+        Slice(T[] targets, Consumer<? super T> action, int chunkSize, int firstChunk, int endChunk) {
+            this.targets = targets;
+            this.action = action;
+            this.chunkSize = chunkSize;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+        
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk > 1) {
+                int middle = (firstChunk + endChunk) >>> 1;
+                invokeAll(new Slice<>(targets, action, chunkSize, firstChunk, middle),
+                          new Slice<>(targets, action, chunkSize, middle, endChunk));
+                return;
+            }
+            
+            int end = Math.min(targets.length, endChunk * chunkSize);
+            for (int i = firstChunk * chunkSize; i < end; i++) {
+                action.accept(targets[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.chatapp.service;
+
+import com.chatapp.model.AttachmentRef;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Room log that keeps Message objects on the Java heap
+ */
+class HeapRoomMessageLog implements RoomMessageLog {
+    private final CopyOnWriteArrayList<Message> messages;
+    private final int capacity;
+    private volatile long evictedThroughId;
+    private volatile long evictedThroughSequence;
+    private volatile long latestSequence;
+    
+    HeapRoomMessageLog(int capacity) {
+        this.messages = new CopyOnWriteArrayList<>();
+        this.capacity = capacity;
+    }
+    
+    HeapRoomMessageLog(int capacity, List<Message> initial) {
+        int from = Math.max(0, initial.size() - capacity);
+        this.messages = new CopyOnWriteArrayList<>(initial.subList(from, initial.size()));
+        this.capacity = capacity;
+        for (Message dropped : initial.subList(0, from)) {
+            evictedThroughId = Math.max(evictedThroughId, dropped.getId());
+            evictedThroughSequence = Math.max(evictedThroughSequence, dropped.getSequence());
+        }
+        for (Message message : initial) {
+            latestSequence = Math.max(latestSequence, message.getSequence());
+        }
+    }
+    
+    @Override
+    public synchronized void append(Message message) {
+        messages.add(message);
+        latestSequence = Math.max(latestSequence, message.getSequence());
+        
+        // Maintain maximum message limit per room
+        if (messages.size() > capacity) {
+            Message evicted = messages.remove(0); // Remove oldest message
+            evictedThroughId = Math.max(evictedThroughId, evicted.getId());
+            evictedThroughSequence = Math.max(evictedThroughSequence, evicted.getSequence());
+        }
+    }
+    
+    @Override
+    public synchronized void restoreLatestSequence(long sequence) {
+        latestSequence = Math.max(latestSequence, sequence);
+    }
+    
+    @Override
+    public List<Message> toList() {
+        return new ArrayList<>(messages);
+    }
+    
+    @Override
+    public void visitNewestFirst(long beforeSequence, int limit, Consumer<MessageView> visitor) {
+        Object[] snapshot = messages.toArray();
+        int low = 0;
+        int high = snapshot.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (((Message) snapshot[middle]).getSequence() < beforeSequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        visitDownFrom(snapshot, low - 1, limit, visitor);
+    }
+    
+    @Override
+    public void visitAppendedBefore(long beforeId, int limit, Consumer<MessageView> visitor) {
+        Object[] snapshot = messages.toArray();
+        for (int i = snapshot.length - 1; i >= 0; i--) {
+            if (((Message) snapshot[i]).getId() == beforeId) {
+                visitDownFrom(snapshot, i - 1, limit, visitor);
+                return;
+            }
+        }
+    }
+    
+    private static void visitDownFrom(Object[] snapshot, int newest, int limit, Consumer<MessageView> visitor) {
+        HeapMessageView view = new HeapMessageView();
+        for (int i = newest; i >= 0 && newest - i < limit; i--) {
+            view.message = (Message) snapshot[i];
+            visitor.accept(view);
+        }
+    }
+    
+    @Override
+    public void visitSequenceRange(long fromSequence, long toSequence, Consumer<MessageView> visitor) {
+        Object[] snapshot = messages.toArray();
+        HeapMessageView view = new HeapMessageView();
+        
+        int low = 0;
+        int high = snapshot.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (((Message) snapshot[middle]).getSequence() < fromSequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        
+        for (int i = low; i < snapshot.length; i++) {
+            view.message = (Message) snapshot[i];
+            if (view.message.getSequence() > toSequence) {
+                break;
+            }
+            visitor.accept(view);
+        }
+    }
+    
+    @Override
+    public boolean visitMessage(long messageId, Consumer<MessageView> visitor) {
+        Object[] snapshot = messages.toArray();
+        for (int i = snapshot.length - 1; i >= 0; i--) {
+            Message message = (Message) snapshot[i];
+            if (message.getId() == messageId) {
+                HeapMessageView view = new HeapMessageView();
+                view.message = message;
+                visitor.accept(view);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Folds edits with one copy of the backing array, plus one more if anything was deleted
+     */
+    @Override
+    public synchronized int compact(Map<Long, MessageEdit> edits) {
+        int[] folded = new int[1];
+        messages.replaceAll(message -> {
+            MessageEdit edit = edits.get(message.getId());
+            if (edit == null || edit.isDeletion() || edit.getRevision() <= message.getRevision()) {
+                return message;
+            }
+            folded[0]++;
+            return message.withEdit(edit);
+        });
+        messages.removeIf(message -> {
+            MessageEdit edit = edits.get(message.getId());
+            if (edit != null && edit.isDeletion()) {
+                folded[0]++;
+                return true;
+            }
+            return false;
+        });
+        return folded[0];
+    }
+    
+    @Override
+    public long getLatestSequence() {
+        return latestSequence;
+    }
+    
+    @Override
+    public long getEvictedThroughId() {
+        return evictedThroughId;
+    }
+    
+    @Override
+    public long getEvictedThroughSequence() {
+        return evictedThroughSequence;
+    }
+    
+    @Override
+    public int size() {
+        return messages.size();
+    }
+    
+    @Override
+    public void release() {
+        messages.clear();
+    }
+    
+    private static final class HeapMessageView implements MessageView {
+        private Message message;
+        
+        @Override
+        public long getId() {
+            return message.getId();
+        }
+        
+        @Override
+        public String getMessageId() {
+            return message.getMessageId();
+        }
+        
+        @Override
+        public String getSenderName() {
+            return message.getSender().getUsername();
+        }
+        
+        @Override
+        public String getRecipientName() {
+            return message.isPrivate() ? message.getRecipient().getUsername() : null;
+        }
+        
+        @Override
+        public long getTimestampMillis() {
+            return message.getTimestampMillis();
+        }
+        
+        @Override
+        public long getSequence() {
+            return message.getSequence();
+        }
+        
+        @Override
+        public int getRevision() {
+            return message.getRevision();
+        }
+        
+        @Override
+        public long getParentId() {
+            return message.getParentId();
+        }
+        
+        @Override
+        public String getContent() {
+            return message.getContent();
+        }
+        
+        @Override
+        public boolean isPrivate() {
+            return message.isPrivate();
+        }
+        
+        @Override
+        public AttachmentRef getAttachment() {
+            return message.getAttachment();
+        }
+        
+        @Override
+        public Message toMessage() {
+            return message;
+        }
+    }
+}
\ No newline at end of file
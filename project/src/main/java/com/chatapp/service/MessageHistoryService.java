@@ -3,29 +3,58 @@ package com.chatapp.service;
 import com.chatapp.logger.Logger;
 import com.chatapp.logger.LoggerFactory;
 import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
 
 /**
  * SINGLETON PATTERN (Creational)
  * Manages message history for chat rooms
  * Provides persistent message storage and retrieval
+ *
+ * Edits and deletions never rewrite a room log directly. They are kept per room as the latest
+ * revision or tombstone of each message ID, applied on read, and folded into the log by a
+ * compaction that runs COMPACTION_DELAY_MILLIS after the first pending edit.
+ *
+ * Replies are kept out of the room timeline, in one bounded log per parent message (see
+ * RoomThreads), and are only read when a client opens the thread.
  */
 public class MessageHistoryService {
     private static final Logger logger = LoggerFactory.getLogger(MessageHistoryService.class);
     private static volatile MessageHistoryService instance;
     private static final Object lock = new Object();
     
-    private final ConcurrentHashMap<String, CopyOnWriteArrayList<Message>> messageHistory;
+    private final ConcurrentHashMap<String, RoomMessageLog> messageHistory;
     private static final int MAX_MESSAGES_PER_ROOM = 1000;
+    private static final int MAX_REPLIES_PER_THREAD = 500;
+    private static final long COMPACTION_DELAY_MILLIS = 2000;
+    
+    // Pending edits and tombstones per room, until compaction folds them into the log
+    private final ConcurrentHashMap<String, RoomEditOverlay> overlays;
+    private final ConcurrentHashMap<String, RoomThreads> threads;
+    
+    // Set chatapp.history.storage=offheap to keep message payloads outside the Java heap
+    private final OffHeapArena offHeapArena;
     
     private MessageHistoryService() {
         this.messageHistory = new ConcurrentHashMap<>();
-        logger.info("Message History Service initialized");
+        this.overlays = new ConcurrentHashMap<>();
+        this.threads = new ConcurrentHashMap<>();
+        this.offHeapArena = "offheap".equalsIgnoreCase(System.getProperty("chatapp.history.storage"))
+            ? new OffHeapArena() : null;
+        logger.info("Message History Service initialized (" +
+                   (offHeapArena != null ? "off-heap" : "heap") + " storage)");
     }
     
     public static MessageHistoryService getInstance() {
@@ -46,18 +75,96 @@ public class MessageHistoryService {
         if (message == null) {
             throw new IllegalArgumentException("Message cannot be null");
         }
+        if (message.isReply()) {
+            saveReply(roomId, message);
+            return;
+        }
         
-        CopyOnWriteArrayList<Message> roomMessages = messageHistory.computeIfAbsent(
-            roomId, k -> new CopyOnWriteArrayList<>());
+        RoomMessageLog roomMessages = messageHistory.computeIfAbsent(roomId, k -> newRoomLog(MAX_MESSAGES_PER_ROOM));
+        roomMessages.append(message);
+        RoomThreads roomThreads = threads.get(roomId);
+        if (roomThreads != null) {
+            roomThreads.pruneThrough(roomMessages.getEvictedThroughSequence());
+        }
+        RoomEditOverlay overlay = overlays.get(roomId);
+        if (overlay != null) {
+            overlay.pruneDeletedThrough(roomMessages.getEvictedThroughSequence());
+        }
         
-        roomMessages.add(message);
+        logger.debug("Message saved for room " + roomId + ": " + message.getMessageId());
+    }
+    
+    /**
+     * Appends a reply to the thread of its parent and returns the thread's reply count
+     * A reply whose parent has already been evicted is dropped along with the parent's thread
+     */
+    public int saveReply(String roomId, Message reply) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Room ID cannot be null or empty");
+        }
+        if (reply == null || !reply.isReply()) {
+            throw new IllegalArgumentException("Reply must name a parent message");
+        }
         
-        // Maintain maximum message limit per room
-        if (roomMessages.size() > MAX_MESSAGES_PER_ROOM) {
-            roomMessages.remove(0); // Remove oldest message
+        long[] parentSequence = {Message.NO_SEQUENCE};
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
+        if (roomMessages == null ||
+            !roomMessages.visitMessage(reply.getParentId(), view -> parentSequence[0] = view.getSequence())) {
+            logger.debug("Reply " + reply.getMessageId() + " dropped: parent " + reply.getParentId() + " is not retained");
+            return 0;
         }
         
-        logger.debug("Message saved for room " + roomId + ": " + message.getMessageId());
+        int replyCount = threads.computeIfAbsent(roomId, id -> new RoomThreads())
+            .append(reply, parentSequence[0], () -> newRoomLog(MAX_REPLIES_PER_THREAD));
+        logger.debug("Reply saved in room " + roomId + " under " + reply.getParentId() + ": " + reply.getMessageId());
+        return replyCount;
+    }
+    
+    /**
+     * Page-based thread load: visits up to count replies to parentId posted before the reply with ID
+     * beforeReplyId, newest first; Long.MAX_VALUE loads the newest page
+     * Replies carry no sequence number, and reply IDs are not in posting order, so the cursor is the
+     * oldest reply of the previous page rather than a bound
+     */
+    public void visitThread(String roomId, long parentId, long beforeReplyId, int count, Consumer<MessageView> visitor) {
+        if (roomId == null || roomId.trim().isEmpty() || count <= 0) {
+            return;
+        }
+        
+        RoomThreads roomThreads = threads.get(roomId);
+        RoomMessageLog replies = roomThreads != null ? roomThreads.thread(parentId) : null;
+        if (replies == null) {
+            return;
+        }
+        if (beforeReplyId == Long.MAX_VALUE) {
+            visitPage(roomId, (page, limit) -> replies.visitNewestFirst(Long.MAX_VALUE, limit, page), count, visitor);
+        } else {
+            visitPage(roomId, (page, limit) -> replies.visitAppendedBefore(beforeReplyId, limit, page), count, visitor);
+        }
+    }
+    
+    /**
+     * Returns the number of replies in a message's thread, maintained as replies are posted and deleted
+     */
+    public int getReplyCount(String roomId, long parentId) {
+        if (roomId == null) {
+            return 0;
+        }
+        
+        RoomThreads roomThreads = threads.get(roomId);
+        return roomThreads != null ? roomThreads.replyCount(parentId) : 0;
+    }
+    
+    /**
+     * Returns every retained reply of a room, grouped by thread and oldest first within each
+     */
+    public List<Message> getAllReplies(String roomId) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        RoomThreads roomThreads = threads.get(roomId);
+        return roomThreads != null ? applyEdits(roomId, roomThreads.allReplies()) : new ArrayList<>();
     }
     
     public List<Message> getMessageHistory(String roomId) {
@@ -65,26 +172,342 @@ public class MessageHistoryService {
             return new ArrayList<>();
         }
         
-        CopyOnWriteArrayList<Message> roomMessages = messageHistory.get(roomId);
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
         if (roomMessages == null) {
             return new ArrayList<>();
         }
         
         // Return messages in reverse chronological order (newest first)
-        List<Message> messages = new ArrayList<>(roomMessages);
+        List<Message> messages = applyEdits(roomId, roomMessages.toList());
         Collections.reverse(messages);
         
         return messages;
     }
     
     public List<Message> getRecentMessages(String roomId, int count) {
-        List<Message> allMessages = getMessageHistory(roomId);
+        List<Message> messages = new ArrayList<>();
+        visitRecentMessages(roomId, count, view -> messages.add(view.toMessage()));
+        return messages;
+    }
+    
+    /**
+     * Visits up to count of the newest messages in a room, newest first
+     * Only the visited messages are decoded; the view must not be retained after the callback
+     */
+    public void visitRecentMessages(String roomId, int count, Consumer<MessageView> visitor) {
+        if (roomId == null || roomId.trim().isEmpty() || count <= 0) {
+            return;
+        }
+        
+        visitMessagesBefore(roomId, Long.MAX_VALUE, count, visitor);
+    }
+    
+    /**
+     * Page-based load: visits up to count messages sequenced below beforeSequence, newest first
+     * The cursor is the sequence number of the oldest message of the previous page
+     */
+    public void visitMessagesBefore(String roomId, long beforeSequence, int count, Consumer<MessageView> visitor) {
+        if (roomId == null || roomId.trim().isEmpty() || count <= 0) {
+            return;
+        }
+        
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
+        if (roomMessages != null) {
+            visitPage(roomId, (page, limit) -> roomMessages.visitNewestFirst(beforeSequence, limit, page), count, visitor);
+        }
+    }
+    
+    /**
+     * Streams the messages a reconnecting client missed, oldest first
+     * The client names the last room sequence number it saw; sequence numbers follow the order
+     * messages were broadcast, which message IDs do not when senders race
+     * If any message after lastSeenSequence has already been evicted nothing is streamed and
+     * GAP_TOO_LARGE is returned, so the client falls back to visitMessagesBefore paging
+     */
+    public ResyncResult resync(String roomId, long lastSeenSequence, Consumer<MessageView> sink) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Room ID cannot be null or empty");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null");
+        }
+        if (lastSeenSequence < Message.NO_SEQUENCE) {
+            throw new IllegalArgumentException("Invalid sequence number: " + lastSeenSequence);
+        }
+        
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
+        if (roomMessages == null) {
+            return new ResyncResult(roomId, ResyncResult.Status.UP_TO_DATE, 0, 0);
+        }
+        
+        long evictedThroughId = roomMessages.getEvictedThroughId();
+        long evictedThroughSequence = roomMessages.getEvictedThroughSequence();
+        if (lastSeenSequence < evictedThroughSequence) {
+            logger.debug("Resync gap in room " + roomId + ": last seen sequence " + lastSeenSequence +
+                        ", evicted through " + evictedThroughSequence);
+            return new ResyncResult(roomId, ResyncResult.Status.GAP_TOO_LARGE, 0, evictedThroughId);
+        }
+        
+        int[] delivered = new int[1];
+        roomMessages.visitSequenceRange(lastSeenSequence + 1, Long.MAX_VALUE, withEdits(roomId, view -> {
+            sink.accept(view);
+            delivered[0]++;
+        }));
+        
+        ResyncResult.Status status = delivered[0] > 0 ? ResyncResult.Status.DELTA_SENT : ResyncResult.Status.UP_TO_DATE;
+        return new ResyncResult(roomId, status, delivered[0], evictedThroughId);
+    }
+    
+    /**
+     * Streams the retained messages with fromSequence <= sequence <= toSequence, oldest first
+     * Used by clients that saw a jump in sequence numbers; if part of the range has already been
+     * evicted nothing is streamed and GAP_TOO_LARGE is returned
+     */
+    public ResyncResult fetchRange(String roomId, long fromSequence, long toSequence, Consumer<MessageView> sink) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Room ID cannot be null or empty");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null");
+        }
+        if (fromSequence <= Message.NO_SEQUENCE || toSequence < fromSequence) {
+            throw new IllegalArgumentException("Invalid sequence range: " + fromSequence + ".." + toSequence);
+        }
+        
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
+        if (roomMessages == null) {
+            return new ResyncResult(roomId, ResyncResult.Status.UP_TO_DATE, 0, 0);
+        }
+        if (fromSequence <= roomMessages.getEvictedThroughSequence()) {
+            return new ResyncResult(roomId, ResyncResult.Status.GAP_TOO_LARGE, 0, roomMessages.getEvictedThroughId());
+        }
+        
+        int[] delivered = new int[1];
+        roomMessages.visitSequenceRange(fromSequence, toSequence, withEdits(roomId, view -> {
+            sink.accept(view);
+            delivered[0]++;
+        }));
+        
+        ResyncResult.Status status = delivered[0] > 0 ? ResyncResult.Status.DELTA_SENT : ResyncResult.Status.UP_TO_DATE;
+        return new ResyncResult(roomId, status, delivered[0], roomMessages.getEvictedThroughId());
+    }
+    
+    /**
+     * Returns the highest sequence number stored for a room, or 0 if none has one
+     * Deleting the newest message does not lower it, so sequence numbers are never reused
+     */
+    public long getLatestSequence(String roomId) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            return Message.NO_SEQUENCE;
+        }
+        
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
+        return roomMessages != null ? roomMessages.getLatestSequence() : Message.NO_SEQUENCE;
+    }
+    
+    /**
+     * Returns the retained messages of a room in chronological order (oldest first)
+     */
+    public List<Message> getChronologicalHistory(String roomId) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
+        return roomMessages != null ? applyEdits(roomId, roomMessages.toList()) : new ArrayList<>();
+    }
+    
+    /**
+     * Returns a retained message with any pending edit applied, or null if it was deleted or
+     * is no longer retained
+     */
+    public Message getMessage(String roomId, long messageId) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            return null;
+        }
+        
+        RoomMessageLog roomMessages = logOf(roomId, messageId);
+        if (roomMessages == null) {
+            return null;
+        }
         
-        if (count <= 0 || allMessages.isEmpty()) {
+        Message[] found = new Message[1];
+        roomMessages.visitMessage(messageId, view -> found[0] = view.toMessage());
+        RoomEditOverlay overlay = overlays.get(roomId);
+        return found[0] != null && overlay != null ? overlay.apply(found[0]) : found[0];
+    }
+    
+    /**
+     * Records the next revision of a retained message
+     * factory receives the revision number and builds the edit or tombstone; a message that
+     * was deleted or is no longer retained cannot be edited. Revisions of one message are
+     * assigned atomically, so concurrent editors never produce the same revision.
+     */
+    public MessageEdit recordEdit(String roomId, long messageId, IntFunction<MessageEdit> factory) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Room ID cannot be null or empty");
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("Edit factory cannot be null");
+        }
+        
+        RoomMessageLog roomMessages = logOf(roomId, messageId);
+        if (roomMessages == null) {
+            throw new IllegalArgumentException("Message not found: " + messageId);
+        }
+        
+        RoomEditOverlay overlay = overlays.computeIfAbsent(roomId, id -> new RoomEditOverlay());
+        MessageEdit recorded = overlay.edits().compute(messageId, (id, previous) -> {
+            int revision;
+            if (previous != null) {
+                if (previous.isDeletion()) {
+                    throw new IllegalArgumentException("Message was deleted: " + messageId);
+                }
+                revision = previous.getRevision();
+            } else {
+                // Already folded by compaction, or never edited
+                int[] stored = {-1};
+                roomMessages.visitMessage(messageId, view -> stored[0] = view.getRevision());
+                if (stored[0] < 0) {
+                    throw new IllegalArgumentException("Message not found: " + messageId);
+                }
+                revision = stored[0];
+            }
+            
+            MessageEdit edit = factory.apply(revision + 1);
+            if (edit.getMessageId() != messageId || edit.getRevision() != revision + 1) {
+                throw new IllegalArgumentException("Edit does not match message " + messageId + " revision " + (revision + 1));
+            }
+            return edit;
+        });
+        
+        if (recorded.isDeletion()) {
+            // Kept until the timeline evicts the message, or the parent of a reply
+            long[] keptThrough = {Message.NO_SEQUENCE};
+            roomMessages.visitMessage(messageId, view -> keptThrough[0] = view.getSequence());
+            RoomThreads roomThreads = threads.get(roomId);
+            if (roomThreads != null) {
+                if (keptThrough[0] == Message.NO_SEQUENCE) {
+                    keptThrough[0] = roomThreads.parentSequence(messageId);
+                }
+                roomThreads.replyDeleted(messageId);
+            }
+            overlay.markDeleted(messageId, keptThrough[0]);
+        }
+        if (overlay.claimCompaction()) {
+            EventScheduler.getInstance().schedule(() -> compact(roomId), COMPACTION_DELAY_MILLIS);
+        }
+        logger.debug("Recorded " + recorded + " in room " + roomId);
+        return recorded;
+    }
+    
+    /**
+     * Re-applies a logged revision during Write-Ahead Log replay
+     * Returns false if the message is no longer retained, was deleted, or already has the revision
+     */
+    public boolean restoreEdit(String roomId, MessageEdit edit) {
+        if (edit == null) {
+            throw new IllegalArgumentException("Edit cannot be null");
+        }
+        
+        try {
+            recordEdit(roomId, edit.getMessageId(), revision -> edit);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Returns true if a message of the room was deleted and its ID is still retained
+     */
+    public boolean isDeleted(String roomId, long messageId) {
+        if (roomId == null) {
+            return false;
+        }
+        
+        RoomEditOverlay overlay = overlays.get(roomId);
+        return overlay != null && overlay.isDeleted(messageId);
+    }
+    
+    /**
+     * Returns the IDs of deleted messages of a room that have not been evicted yet, in ascending order
+     */
+    public List<Long> getDeletedIds(String roomId) {
+        if (roomId == null) {
             return new ArrayList<>();
         }
         
-        return allMessages.subList(0, Math.min(count, allMessages.size()));
+        RoomEditOverlay overlay = overlays.get(roomId);
+        return overlay != null ? overlay.deletedIds() : new ArrayList<>();
+    }
+    
+    public Set<String> getRoomIds() {
+        return new HashSet<>(messageHistory.keySet());
+    }
+    
+    /**
+     * Replaces the history of a room with messages recovered from a snapshot
+     * Messages must be in chronological order; only the newest MAX_MESSAGES_PER_ROOM are kept
+     */
+    public void restoreHistory(String roomId, List<Message> messages) {
+        restoreHistory(roomId, messages, Collections.emptyList(), Message.NO_SEQUENCE);
+    }
+    
+    /**
+     * Replaces the history of a room and remembers the IDs of its deleted messages
+     * latestSequence is the room's latest sequence when the history was captured; it is kept even
+     * if the messages that carried it were deleted, so their numbers are not handed out again
+     */
+    public void restoreHistory(String roomId, List<Message> messages, Collection<Long> deletedIds, long latestSequence) {
+        if (roomId == null || roomId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Room ID cannot be null or empty");
+        }
+        if (messages == null || deletedIds == null) {
+            throw new IllegalArgumentException("Messages and deleted IDs cannot be null");
+        }
+        
+        // Snapshots carry the replies of a room after its timeline
+        List<Message> timeline = new ArrayList<>(messages.size());
+        Map<Long, Long> parentSequences = new HashMap<>();
+        RoomThreads roomThreads = new RoomThreads();
+        for (Message message : messages) {
+            if (!message.isReply()) {
+                timeline.add(message);
+                parentSequences.put(message.getId(), message.getSequence());
+            } else if (parentSequences.containsKey(message.getParentId())) {
+                roomThreads.append(message, parentSequences.get(message.getParentId()),
+                    () -> newRoomLog(MAX_REPLIES_PER_THREAD));
+            }
+        }
+        
+        RoomMessageLog roomMessages;
+        if (offHeapArena == null) {
+            roomMessages = new HeapRoomMessageLog(MAX_MESSAGES_PER_ROOM, timeline);
+        } else {
+            roomMessages = newRoomLog(MAX_MESSAGES_PER_ROOM);
+            timeline.forEach(roomMessages::append);
+        }
+        roomMessages.restoreLatestSequence(latestSequence);
+        
+        RoomMessageLog previous = messageHistory.put(roomId, roomMessages);
+        RoomThreads previousThreads = threads.put(roomId, roomThreads);
+        if (deletedIds.isEmpty()) {
+            overlays.remove(roomId);
+        } else {
+            // Snapshots do not record what each deletion was kept through; the room's latest sequence
+            // outlasts every message the snapshot knew about
+            RoomEditOverlay overlay = new RoomEditOverlay();
+            long keptThrough = roomMessages.getLatestSequence();
+            deletedIds.forEach(messageId -> overlay.markDeleted(messageId, keptThrough));
+            overlays.put(roomId, overlay);
+        }
+        if (previous != null) {
+            previous.release();
+        }
+        if (previousThreads != null) {
+            previousThreads.release();
+        }
     }
     
     public int getMessageCount(String roomId) {
@@ -92,14 +515,20 @@ public class MessageHistoryService {
             return 0;
         }
         
-        CopyOnWriteArrayList<Message> roomMessages = messageHistory.get(roomId);
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
         return roomMessages != null ? roomMessages.size() : 0;
     }
     
     public void clearHistory(String roomId) {
         if (roomId != null && !roomId.trim().isEmpty()) {
-            CopyOnWriteArrayList<Message> removed = messageHistory.remove(roomId);
+            RoomMessageLog removed = messageHistory.remove(roomId);
+            overlays.remove(roomId);
+            RoomThreads removedThreads = threads.remove(roomId);
+            if (removedThreads != null) {
+                removedThreads.release();
+            }
             if (removed != null) {
+                removed.release();
                 logger.info("Message history cleared for room: " + roomId);
             }
         }
@@ -107,10 +536,94 @@ public class MessageHistoryService {
     
     public int getTotalMessages() {
         return messageHistory.values().stream()
-                .mapToInt(List::size)
+                .mapToInt(RoomMessageLog::size)
                 .sum();
     }
     
+    public long getOffHeapBytes() {
+        return offHeapArena != null ? offHeapArena.getReservedBytes() : 0;
+    }
+    
+    /**
+     * Folds the pending edits of a room into its log
+     * Edits are dropped from the overlay only after the log holds them, and only if no newer
+     * revision arrived meanwhile, so readers never see a message revert
+     */
+    private void compact(String roomId) {
+        RoomEditOverlay overlay = overlays.get(roomId);
+        if (overlay == null) {
+            return;
+        }
+        
+        overlay.startCompaction();
+        Map<Long, MessageEdit> pending = Map.copyOf(overlay.edits());
+        RoomMessageLog roomMessages = messageHistory.get(roomId);
+        int folded = roomMessages != null ? roomMessages.compact(pending) : 0;
+        RoomThreads roomThreads = threads.get(roomId);
+        if (roomThreads != null) {
+            for (RoomMessageLog replies : roomThreads.logsOf(pending.keySet())) {
+                folded += replies.compact(pending);
+            }
+        }
+        // Edits of messages evicted meanwhile have nothing left to apply to and are dropped too
+        overlay.removeFolded(pending);
+        logger.debug("Compacted " + pending.size() + " edits into room " + roomId + " (" + folded + " messages rewritten)");
+    }
+    
+    // The log holding a message: its thread if it is a retained reply, else the room timeline
+    private RoomMessageLog logOf(String roomId, long messageId) {
+        RoomThreads roomThreads = threads.get(roomId);
+        RoomMessageLog replies = roomThreads != null ? roomThreads.threadOf(messageId) : null;
+        return replies != null ? replies : messageHistory.get(roomId);
+    }
+    
+    // Runs one newest-first page visit (visitor, limit) with the room's pending edits applied
+    private void visitPage(String roomId, ObjIntConsumer<Consumer<MessageView>> page, int count,
+                           Consumer<MessageView> visitor) {
+        RoomEditOverlay overlay = overlays.get(roomId);
+        if (overlay == null || overlay.isEmpty()) {
+            page.accept(visitor, count);
+            return;
+        }
+        
+        // Deleted messages are skipped, so look past as many as are pending and stop at count
+        int[] visited = new int[1];
+        page.accept(overlay.apply(view -> {
+            if (visited[0] < count) {
+                visitor.accept(view);
+                visited[0]++;
+            }
+        }), count + overlay.deletionCount());
+    }
+    
+    private Consumer<MessageView> withEdits(String roomId, Consumer<MessageView> visitor) {
+        RoomEditOverlay overlay = overlays.get(roomId);
+        return overlay != null ? overlay.apply(visitor) : visitor;
+    }
+    
+    private List<Message> applyEdits(String roomId, List<Message> messages) {
+        RoomEditOverlay overlay = overlays.get(roomId);
+        if (overlay == null || overlay.isEmpty()) {
+            return messages;
+        }
+        
+        List<Message> edited = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            Message applied = overlay.apply(message);
+            if (applied != null) {
+                edited.add(applied);
+            }
+        }
+        return edited;
+    }
+    
+    private RoomMessageLog newRoomLog(int capacity) {
+        if (offHeapArena != null) {
+            return new OffHeapRoomMessageLog(offHeapArena, UserService.getInstance(), capacity);
+        }
+        return new HeapRoomMessageLog(capacity);
+    }
+    
     public int getTotalRoomsWithHistory() {
         return messageHistory.size();
     }
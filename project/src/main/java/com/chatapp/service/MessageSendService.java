@@ -0,0 +1,363 @@
+package com.chatapp.service;
+
+import com.chatapp.exceptions.ChatException;
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.User;
+import com.chatapp.moderation.ModerationResult;
+import com.chatapp.moderation.ModerationService;
+import com.chatapp.persistence.WriteAheadLog;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Send pipeline for room messages
+ * A message is moderated, then made durable in the write-ahead log before any client can see it
+ * Sends carrying a client nonce are idempotent: a retry within the deduplication window
+ * (chatapp.send.dedup.window.ms) returns the original message instead of sending it again
+ * Replies name a top-level room message and are stored in its thread instead of the timeline
+ * Edits pass the same moderation; edits and deletions are logged too, then reach clients as
+ * compact revision events
+ */
+public class MessageSendService {
+    private static final Logger logger = LoggerFactory.getLogger(MessageSendService.class);
+    private static volatile MessageSendService instance;
+    private static final Object lock = new Object();
+    
+    private static final long DURABILITY_TIMEOUT_SECONDS = 5;
+    private static final long DEFAULT_DEDUP_WINDOW_MILLIS = 60_000;
+    private static final int NONCES_PER_GENERATION = 256;
+    
+    private final WriteAheadLog writeAheadLog;
+    private final MessageHistoryService messageHistoryService;
+    private final ModerationService moderationService;
+    private final SendDeduplicator deduplicator;
+    private final AtomicLong duplicateCount;
+    // Room ID -> the room's newest edit in flight; a room's edits are numbered and logged one at a time
+    private final ConcurrentHashMap<String, CompletableFuture<MessageEdit>> pendingEdits;
+    
+    private MessageSendService() {
+        this.writeAheadLog = WriteAheadLog.getInstance();
+        this.messageHistoryService = MessageHistoryService.getInstance();
+        this.moderationService = ModerationService.getInstance();
+        long windowMillis = Long.getLong("chatapp.send.dedup.window.ms", DEFAULT_DEDUP_WINDOW_MILLIS);
+        this.deduplicator = new SendDeduplicator(windowMillis, NONCES_PER_GENERATION);
+        this.duplicateCount = new AtomicLong();
+        this.pendingEdits = new ConcurrentHashMap<>();
+        EventScheduler.getInstance().scheduleAtFixedRate(deduplicator::evictIdle, windowMillis);
+        logger.info("Message Send Service initialized");
+    }
+    
+    public static MessageSendService getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new MessageSendService();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Moderates, logs, broadcasts and stores a room message
+     * Blocks until the write-ahead log acknowledges the record; concurrent senders share one fsync
+     * Returns the message as delivered: it carries its room sequence number, and its content
+     * differs from the argument if it was masked
+     */
+    public Message sendMessage(ChatRoom room, Message message) throws ChatException {
+        validate(room, message);
+        return deliver(room, message);
+    }
+    
+    /**
+     * Asynchronous form of sendMessage for event-loop mode
+     * The future completes with the delivered message once the write-ahead log has acknowledged
+     * it and the room has broadcast it, and fails with ChatException if moderation rejects it
+     */
+    public CompletableFuture<Message> sendMessageAsync(ChatRoom room, Message message) {
+        validate(room, message);
+        
+        Message delivered;
+        try {
+            delivered = moderate(room, message);
+        } catch (ChatException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // Async so the broadcast never runs on the log's committer thread
+        return writeAheadLog.append(room.getRoomId(), delivered)
+            .orTimeout(DURABILITY_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .thenComposeAsync(durable -> RoomEventLoops.getInstance().submit(room.getRoomId(), () -> publish(room, delivered)));
+    }
+    
+    /**
+     * Sends a message tagged with a client-generated nonce
+     * If the sender already used the nonce within the window, nothing is sent again and the
+     * original message is returned; a retry racing the original waits for its outcome
+     * The nonce is given up only if the message was never logged: after a durability timeout the
+     * original is still published, and retries answered with it, once its log write completes
+     */
+    public Message sendMessage(ChatRoom room, Message message, long nonce) throws ChatException {
+        validate(room, message);
+        int senderId = message.getSender().getId();
+        
+        CompletableFuture<Message> original;
+        while ((original = deduplicator.claim(senderId, nonce)) != null) {
+            try {
+                Message delivered = original.get(DURABILITY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                duplicateCount.incrementAndGet();
+                logger.debug("Duplicate send from " + message.getSender().getUsername() +
+                            " answered with message " + delivered.getId());
+                return delivered;
+            } catch (ExecutionException e) {
+                // The original failed and gave up its claim; this retry sends for real
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ChatException("Interrupted while waiting for the original send", e);
+            } catch (TimeoutException e) {
+                throw new ChatException("Timed out waiting for the original send", e);
+            }
+        }
+        
+        Message delivered;
+        try {
+            delivered = moderate(room, message);
+        } catch (ChatException | RuntimeException e) {
+            // Rejected before it was logged, so a retry may send it again
+            deduplicator.release(senderId, nonce, e);
+            throw e;
+        }
+        
+        CompletableFuture<Void> durable = writeAheadLog.append(room.getRoomId(), delivered);
+        try {
+            awaitDurable(durable);
+        } catch (ChatException e) {
+            if (durable.isCompletedExceptionally()) {
+                // The log reported the record as not committed
+                deduplicator.release(senderId, nonce, e);
+            } else {
+                // Timed out or interrupted: the record may still be logged, and replay would then
+                // restore it, so the claim is held until the append finishes
+                settleWhenLogged(room, delivered, durable, senderId, nonce);
+            }
+            throw e;
+        }
+        
+        try {
+            Message published = publish(room, delivered);
+            deduplicator.complete(senderId, nonce, published);
+            return published;
+        } catch (RuntimeException e) {
+            // Durable already, so retries get this message rather than logging a second copy
+            deduplicator.complete(senderId, nonce, delivered);
+            throw e;
+        }
+    }
+    
+    /**
+     * Replaces the content of a stored room message; only its sender may edit it
+     * Returns the recorded revision, which carries the moderated content
+     */
+    public MessageEdit editMessage(ChatRoom room, User editor, long messageId, String content) throws ChatException {
+        Message original = findEditable(room, editor, messageId);
+        if (original.getSenderId() != editor.getId()) {
+            throw new IllegalArgumentException("Only the sender can edit a message");
+        }
+        if (content == null || content.trim().isEmpty()) {
+            throw new IllegalArgumentException("Message content cannot be null or empty");
+        }
+        
+        String moderated = moderate(room, editor, content.trim());
+        return recordDurably(room, messageId, revision -> MessageEdit.edit(messageId, revision, moderated, editor));
+    }
+    
+    /**
+     * Deletes a stored room message; its sender and the room admin may delete it
+     */
+    public MessageEdit deleteMessage(ChatRoom room, User user, long messageId) throws ChatException {
+        Message original = findEditable(room, user, messageId);
+        if (original.getSenderId() != user.getId() && !user.equals(room.getAdmin())) {
+            throw new IllegalArgumentException("Only the sender or the room admin can delete a message");
+        }
+        
+        return recordDurably(room, messageId, revision -> MessageEdit.deletion(messageId, revision, user));
+    }
+    
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+    
+    private void validate(ChatRoom room, Message message) {
+        if (room == null) {
+            throw new IllegalArgumentException("Room cannot be null");
+        }
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null");
+        }
+        if (!room.isUserInRoom(message.getSender())) {
+            throw new IllegalArgumentException("Sender is not in this room");
+        }
+        if (message.isReply()) {
+            Message parent = messageHistoryService.getMessage(room.getRoomId(), message.getParentId());
+            if (parent == null || parent.isPrivate()) {
+                throw new IllegalArgumentException("Parent message not found: " + message.getParentId());
+            }
+            if (parent.isReply()) {
+                throw new IllegalArgumentException("Replies cannot have replies of their own");
+            }
+        }
+    }
+    
+    private Message findEditable(ChatRoom room, User user, long messageId) {
+        if (room == null || user == null) {
+            throw new IllegalArgumentException("Room and user cannot be null");
+        }
+        if (!room.isUserInRoom(user)) {
+            throw new IllegalArgumentException("User is not in this room");
+        }
+        
+        Message original = messageHistoryService.getMessage(room.getRoomId(), messageId);
+        if (original == null) {
+            throw new IllegalArgumentException("Message not found: " + messageId);
+        }
+        return original;
+    }
+    
+    private Message deliver(ChatRoom room, Message message) throws ChatException {
+        Message delivered = moderate(room, message);
+        awaitDurable(writeAheadLog.append(room.getRoomId(), delivered));
+        return publish(room, delivered);
+    }
+    
+    // Publishes a message whose append outlived its sender's wait, then completes the nonce claim
+    // with it; the claim is released only if the record turns out not to be logged
+    private void settleWhenLogged(ChatRoom room, Message message, CompletableFuture<Void> durable,
+                                  int senderId, long nonce) {
+        durable.thenComposeAsync(logged -> RoomEventLoops.getInstance().submit(room.getRoomId(), () -> publish(room, message)))
+            .whenComplete((published, failure) -> {
+                if (failure == null) {
+                    deduplicator.complete(senderId, nonce, published);
+                } else if (durable.isCompletedExceptionally()) {
+                    deduplicator.release(senderId, nonce, failure);
+                } else {
+                    logger.error("Failed to publish late-logged message " + message.getId(), failure);
+                    deduplicator.complete(senderId, nonce, message);
+                }
+            });
+    }
+    
+    // Delivers a message whose record is durable
+    private Message publish(ChatRoom room, Message message) {
+        String roomId = room.getRoomId();
+        if (message.isReply()) {
+            // Replies take no sequence number; logging NO_SEQUENCE marks them as published
+            room.postReply(message, reply -> {
+                int replyCount = messageHistoryService.saveReply(roomId, reply);
+                writeAheadLog.appendSequence(roomId, reply.getId(), Message.NO_SEQUENCE);
+                return replyCount;
+            });
+            return message;
+        }
+        // The room numbers the message and has it stored in history before anyone sees it; the
+        // number is logged in that same order without waiting, so replay restores it
+        return room.broadcastMessage(message, sequenced -> {
+            messageHistoryService.saveMessage(roomId, sequenced);
+            writeAheadLog.appendSequence(roomId, sequenced.getId(), sequenced.getSequence());
+        });
+    }
+    
+    // Numbers the next revision, waits for its log record and only then records and delivers it
+    // A room's edits queue behind each other, so the revision read here is still the latest when it
+    // is recorded; the log commit is awaited off the room's loop, which only applies the result
+    private MessageEdit recordDurably(ChatRoom room, long messageId, IntFunction<MessageEdit> factory) throws ChatException {
+        String roomId = room.getRoomId();
+        CompletableFuture<MessageEdit> recorded = pendingEdits.compute(roomId, (id, previous) ->
+            (previous != null ? previous.handle((edit, failure) -> null) : CompletableFuture.completedFuture(null))
+                .thenCompose(turn -> logEdit(room, messageId, factory)));
+        recorded.whenComplete((edit, failure) -> pendingEdits.remove(roomId, recorded));
+        
+        try {
+            return recorded.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new ChatException("Timed out persisting edit", cause);
+            }
+            if (cause instanceof IllegalArgumentException) {
+                throw new ChatException(cause.getMessage(), cause);
+            }
+            throw new ChatException("Edit could not be persisted: " + cause.getMessage(), cause);
+        }
+    }
+    
+    // One queued edit: numbered from history, logged, then recorded and delivered on the room's loop
+    private CompletableFuture<MessageEdit> logEdit(ChatRoom room, long messageId, IntFunction<MessageEdit> factory) {
+        String roomId = room.getRoomId();
+        Message current = messageHistoryService.getMessage(roomId, messageId);
+        if (current == null) {
+            throw new IllegalArgumentException("Message not found: " + messageId);
+        }
+        MessageEdit edit = factory.apply(current.getRevision() + 1);
+        // Async so recording never runs on the log's committer thread
+        return writeAheadLog.appendEdit(roomId, edit)
+            .orTimeout(DURABILITY_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .thenComposeAsync(logged -> RoomEventLoops.getInstance().submit(roomId,
+                () -> room.editMessage(() -> messageHistoryService.recordEdit(roomId, messageId, revision -> edit))));
+    }
+    
+    private Message moderate(ChatRoom room, Message message) throws ChatException {
+        String content = message.getContent();
+        String moderated = moderate(room, message.getSender(), content);
+        if (moderated.equals(content)) {
+            return message;
+        }
+        
+        // Masked: the message has not been logged or seen yet, so it is simply rebuilt
+        return new Message(message.getSender(), moderated, message.getRecipient(), message.getAttachment(),
+                           message.getParentId());
+    }
+    
+    // Returns the content to deliver: unchanged, or with matched terms masked
+    private String moderate(ChatRoom room, User sender, String content) throws ChatException {
+        ModerationResult result = moderationService.moderate(content);
+        if (result.isClean()) {
+            return content;
+        }
+        
+        if (result.isRejected()) {
+            logger.warn("Message from " + sender.getUsername() + " in " + room.getRoomId() +
+                       " rejected by moderation: " + result.getMatchedTerms());
+            throw new ChatException("Message rejected by content moderation");
+        }
+        if (result.isFlagged()) {
+            logger.warn("Message from " + sender.getUsername() + " in " + room.getRoomId() +
+                       " flagged by moderation: " + result.getMatchedTerms());
+            return content;
+        }
+        return result.getContent();
+    }
+    
+    private void awaitDurable(CompletableFuture<Void> durable) throws ChatException {
+        try {
+            durable.get(DURABILITY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChatException("Interrupted while persisting message", e);
+        } catch (ExecutionException e) {
+            throw new ChatException("Message could not be persisted: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new ChatException("Timed out persisting message", e);
+        }
+    }
+}
\ No newline at end of file
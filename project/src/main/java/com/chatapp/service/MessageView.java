@@ -0,0 +1,27 @@
+package com.chatapp.service;
+
+import com.chatapp.model.AttachmentRef;
+import com.chatapp.model.Message;
+
+/**
+ * Read-only view of a stored message
+ * Views handed to history visitors are flyweights: they are only valid inside the callback
+ * and fields are decoded from the backing storage when requested
+ */
+public interface MessageView {
+    long getId();
+    String getMessageId();
+    String getSenderName();
+    String getRecipientName();
+    long getTimestampMillis();
+    // Per-room sequence number, or Message.NO_SEQUENCE for messages stored before sequencing
+    long getSequence();
+    // Number of edits applied, or Message.NO_REVISION if the content is as sent
+    int getRevision();
+    // The message whose thread this reply belongs to, or Message.NO_PARENT
+    long getParentId();
+    String getContent();
+    boolean isPrivate();
+    AttachmentRef getAttachment();
+    Message toMessage();
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.chatapp.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Slab allocator over direct ByteBuffers
+ *
+ * Records are bump-allocated into fixed-size slabs and addressed by a long handle
+ * (slab index in the high 32 bits, offset in the low 32 bits). Each slab counts its live
+ * records; once every record in a slab has been released the slab is recycled, so FIFO
+ * eviction from room logs returns memory without any per-record bookkeeping on the heap.
+ */
+final class OffHeapArena {
+    static final int SLAB_SIZE = 1 << 20;
+    private static final int MAX_POOLED_SLABS = 64;
+    
+    private volatile Slab[] slabs;
+    private int slabCount;
+    private final ArrayDeque<Slab> freeSlabs;
+    private Slab current;
+    private long reservedBytes;
+    
+    OffHeapArena() {
+        this.slabs = new Slab[16];
+        this.freeSlabs = new ArrayDeque<>();
+    }
+    
+    /**
+     * Reserves size bytes and returns the handle of the reserved region
+     */
+    synchronized long allocate(int size) {
+        if (size > SLAB_SIZE) {
+            // Oversized records get a dedicated slab that is never pooled
+            Slab oversized = newSlab(size);
+            oversized.used = size;
+            oversized.live = 1;
+            return handle(oversized.index, 0);
+        }
+        
+        if (current == null || current.used + size > current.buffer.capacity()) {
+            current = freeSlabs.isEmpty() ? newSlab(SLAB_SIZE) : freeSlabs.pop();
+        }
+        
+        int offset = current.used;
+        current.used += size;
+        current.live++;
+        return handle(current.index, offset);
+    }
+    
+    synchronized void release(long handle) {
+        Slab slab = slabs[slabIndex(handle)];
+        if (--slab.live > 0 || slab == current) {
+            return;
+        }
+        
+        if (slab.buffer.capacity() == SLAB_SIZE && freeSlabs.size() < MAX_POOLED_SLABS) {
+            slab.used = 0;
+            freeSlabs.push(slab);
+        } else {
+            // Leave the buffer to the garbage collector's cleaner
+            slabs[slab.index] = null;
+            reservedBytes -= slab.buffer.capacity();
+        }
+    }
+    
+    // Absolute get/put methods on the returned buffer are safe to use concurrently
+    ByteBuffer buffer(long handle) {
+        return slabs[slabIndex(handle)].buffer;
+    }
+    
+    static int offset(long handle) {
+        return (int) handle;
+    }
+    
+    synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+    
+    private Slab newSlab(int capacity) {
+        int index = nextFreeIndex();
+        Slab slab = new Slab(index, ByteBuffer.allocateDirect(capacity));
+        
+        Slab[] table = slabs;
+        if (index >= table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[index] = slab;
+        slabs = table; // volatile write publishes the new slab to readers
+        reservedBytes += capacity;
+        return slab;
+    }
+    
+    private int nextFreeIndex() {
+        Slab[] table = slabs;
+        for (int i = 0; i < slabCount; i++) {
+            if (table[i] == null) {
+                return i;
+            }
+        }
+        return slabCount++;
+    }
+    
+    private static long handle(int slabIndex, int offset) {
+        return ((long) slabIndex << 32) | (offset & 0xFFFFFFFFL);
+    }
+    
+    private static int slabIndex(long handle) {
+        return (int) (handle >>> 32);
+    }
+    
+    private static final class Slab {
+        private final int index;
+        private final ByteBuffer buffer;
+        private int used;
+        private int live;
+        
+        private Slab(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+}
\ No newline at end of file
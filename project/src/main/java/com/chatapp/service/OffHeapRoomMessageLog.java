@@ -0,0 +1,404 @@
+package com.chatapp.service;
+
+import com.chatapp.model.AttachmentRef;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+import com.chatapp.model.User;
+import com.chatapp.persistence.RecordCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Room log that stores message payloads in an off-heap arena
+ *
+ * Only a ring of long handles lives on the heap. Each record is laid out as
+ * [id][timestamp millis][sender ID][recipient ID][content length][attachment length][sequence]
+ * [revision][parent ID][UTF-8 content][encoded attachment reference, if any]
+ * and is decoded on demand through a flyweight view.
+ */
+class OffHeapRoomMessageLog implements RoomMessageLog {
+    private static final int INITIAL_RING_SIZE = 16;
+    
+    private static final int ID_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = 8;
+    private static final int SENDER_OFFSET = 16;
+    private static final int RECIPIENT_OFFSET = 20;
+    private static final int CONTENT_LENGTH_OFFSET = 24;
+    private static final int ATTACHMENT_LENGTH_OFFSET = 28;
+    private static final int SEQUENCE_OFFSET = 32;
+    private static final int REVISION_OFFSET = 40;
+    private static final int PARENT_OFFSET = 44;
+    private static final int HEADER_BYTES = 52;
+    
+    private final OffHeapArena arena;
+    private final UserService userService;
+    private final int capacity;
+    private final ReentrantReadWriteLock lock;
+    private long[] handles;
+    private int head;
+    private int count;
+    private long evictedThroughId;
+    private long evictedThroughSequence;
+    private long latestSequence;
+    
+    OffHeapRoomMessageLog(OffHeapArena arena, UserService userService, int capacity) {
+        this.arena = arena;
+        this.userService = userService;
+        this.capacity = capacity;
+        this.lock = new ReentrantReadWriteLock();
+        this.handles = new long[Math.min(INITIAL_RING_SIZE, capacity)];
+    }
+    
+    @Override
+    public void append(Message message) {
+        long handle = writeRecord(message);
+        
+        lock.writeLock().lock();
+        try {
+            latestSequence = Math.max(latestSequence, message.getSequence());
+            if (count == capacity) {
+                long evicted = handles[head];
+                ByteBuffer evictedBuffer = arena.buffer(evicted);
+                int evictedBase = OffHeapArena.offset(evicted);
+                evictedThroughId = Math.max(evictedThroughId, evictedBuffer.getLong(evictedBase + ID_OFFSET));
+                evictedThroughSequence = Math.max(evictedThroughSequence, evictedBuffer.getLong(evictedBase + SEQUENCE_OFFSET));
+                arena.release(evicted);
+                handles[head] = handle;
+                head = (head + 1) % handles.length;
+                return;
+            }
+            if (count == handles.length) {
+                grow();
+            }
+            handles[(head + count) % handles.length] = handle;
+            count++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<Message> toList() {
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>(count);
+            OffHeapMessageView view = new OffHeapMessageView();
+            for (int i = 0; i < count; i++) {
+                messages.add(view.bind(handles[(head + i) % handles.length]).toMessage());
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void visitNewestFirst(long beforeSequence, int limit, Consumer<MessageView> visitor) {
+        lock.readLock().lock();
+        try {
+            OffHeapMessageView view = new OffHeapMessageView();
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (view.bind(handles[(head + middle) % handles.length]).getSequence() < beforeSequence) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            visitDownFrom(view, low - 1, limit, visitor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void visitAppendedBefore(long beforeId, int limit, Consumer<MessageView> visitor) {
+        lock.readLock().lock();
+        try {
+            OffHeapMessageView view = new OffHeapMessageView();
+            for (int i = count - 1; i >= 0; i--) {
+                if (view.bind(handles[(head + i) % handles.length]).getId() == beforeId) {
+                    visitDownFrom(view, i - 1, limit, visitor);
+                    return;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Caller holds the read lock
+    private void visitDownFrom(OffHeapMessageView view, int newest, int limit, Consumer<MessageView> visitor) {
+        for (int i = newest; i >= 0 && newest - i < limit; i--) {
+            visitor.accept(view.bind(handles[(head + i) % handles.length]));
+        }
+    }
+    
+    @Override
+    public void visitSequenceRange(long fromSequence, long toSequence, Consumer<MessageView> visitor) {
+        lock.readLock().lock();
+        try {
+            OffHeapMessageView view = new OffHeapMessageView();
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (view.bind(handles[(head + middle) % handles.length]).getSequence() < fromSequence) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            
+            for (int i = low; i < count; i++) {
+                view.bind(handles[(head + i) % handles.length]);
+                if (view.getSequence() > toSequence) {
+                    break;
+                }
+                visitor.accept(view);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean visitMessage(long messageId, Consumer<MessageView> visitor) {
+        lock.readLock().lock();
+        try {
+            OffHeapMessageView view = new OffHeapMessageView();
+            for (int i = count - 1; i >= 0; i--) {
+                if (view.bind(handles[(head + i) % handles.length]).getId() == messageId) {
+                    visitor.accept(view);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Rewrites edited records into fresh arena space and releases deleted ones, closing the gaps
+     * in the ring in place; the old records go back to the arena like evicted ones
+     */
+    @Override
+    public int compact(Map<Long, MessageEdit> edits) {
+        lock.writeLock().lock();
+        try {
+            OffHeapMessageView view = new OffHeapMessageView();
+            int kept = 0;
+            int folded = 0;
+            for (int i = 0; i < count; i++) {
+                long handle = handles[(head + i) % handles.length];
+                MessageEdit edit = edits.get(view.bind(handle).getId());
+                if (edit != null && edit.isDeletion()) {
+                    arena.release(handle);
+                    folded++;
+                    continue;
+                }
+                if (edit != null && edit.getRevision() > view.getRevision()) {
+                    long rewritten = writeRecord(view.toMessage().withEdit(edit));
+                    arena.release(handle);
+                    handle = rewritten;
+                    folded++;
+                }
+                handles[(head + kept) % handles.length] = handle;
+                kept++;
+            }
+            count = kept;
+            return folded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public long getLatestSequence() {
+        lock.readLock().lock();
+        try {
+            return latestSequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void restoreLatestSequence(long sequence) {
+        lock.writeLock().lock();
+        try {
+            latestSequence = Math.max(latestSequence, sequence);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public long getEvictedThroughSequence() {
+        lock.readLock().lock();
+        try {
+            return evictedThroughSequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public long getEvictedThroughId() {
+        lock.readLock().lock();
+        try {
+            return evictedThroughId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public void release() {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                arena.release(handles[(head + i) % handles.length]);
+            }
+            head = 0;
+            count = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private long writeRecord(Message message) {
+        byte[] content = message.getContentBytes();
+        byte[] attachment = message.hasAttachment() ? RecordCodec.encodeAttachment(message.getAttachment()) : new byte[0];
+        long handle = arena.allocate(HEADER_BYTES + content.length + attachment.length);
+        
+        ByteBuffer buffer = arena.buffer(handle);
+        int base = OffHeapArena.offset(handle);
+        buffer.putLong(base + ID_OFFSET, message.getId());
+        buffer.putLong(base + TIMESTAMP_OFFSET, message.getTimestampMillis());
+        buffer.putInt(base + SENDER_OFFSET, message.getSenderId());
+        buffer.putInt(base + RECIPIENT_OFFSET, message.getRecipientId());
+        buffer.putInt(base + CONTENT_LENGTH_OFFSET, content.length);
+        buffer.putInt(base + ATTACHMENT_LENGTH_OFFSET, attachment.length);
+        buffer.putLong(base + SEQUENCE_OFFSET, message.getSequence());
+        buffer.putInt(base + REVISION_OFFSET, message.getRevision());
+        buffer.putLong(base + PARENT_OFFSET, message.getParentId());
+        buffer.put(base + HEADER_BYTES, content);
+        buffer.put(base + HEADER_BYTES + content.length, attachment);
+        return handle;
+    }
+    
+    private void grow() {
+        long[] grown = new long[Math.min(capacity, handles.length * 2)];
+        for (int i = 0; i < count; i++) {
+            grown[i] = handles[(head + i) % handles.length];
+        }
+        handles = grown;
+        head = 0;
+    }
+    
+    /**
+     * Flyweight over one off-heap record; rebound for every visited message
+     */
+    private final class OffHeapMessageView implements MessageView {
+        private ByteBuffer buffer;
+        private int base;
+        
+        private OffHeapMessageView bind(long handle) {
+            this.buffer = arena.buffer(handle);
+            this.base = OffHeapArena.offset(handle);
+            return this;
+        }
+        
+        @Override
+        public long getTimestampMillis() {
+            return buffer.getLong(base + TIMESTAMP_OFFSET);
+        }
+        
+        @Override
+        public long getId() {
+            return buffer.getLong(base + ID_OFFSET);
+        }
+        
+        @Override
+        public String getMessageId() {
+            return Long.toString(getId());
+        }
+        
+        @Override
+        public long getSequence() {
+            return buffer.getLong(base + SEQUENCE_OFFSET);
+        }
+        
+        @Override
+        public int getRevision() {
+            return buffer.getInt(base + REVISION_OFFSET);
+        }
+        
+        @Override
+        public long getParentId() {
+            return buffer.getLong(base + PARENT_OFFSET);
+        }
+        
+        @Override
+        public String getSenderName() {
+            return userService.getUserById(buffer.getInt(base + SENDER_OFFSET)).getUsername();
+        }
+        
+        @Override
+        public String getRecipientName() {
+            return isPrivate() ? userService.getUserById(buffer.getInt(base + RECIPIENT_OFFSET)).getUsername() : null;
+        }
+        
+        @Override
+        public String getContent() {
+            byte[] bytes = new byte[buffer.getInt(base + CONTENT_LENGTH_OFFSET)];
+            buffer.get(base + HEADER_BYTES, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        @Override
+        public boolean isPrivate() {
+            return buffer.getInt(base + RECIPIENT_OFFSET) != Message.NO_RECIPIENT;
+        }
+        
+        @Override
+        public AttachmentRef getAttachment() {
+            int length = buffer.getInt(base + ATTACHMENT_LENGTH_OFFSET);
+            if (length == 0) {
+                return null;
+            }
+            ByteBuffer encoded = buffer.duplicate();
+            encoded.position(base + HEADER_BYTES + buffer.getInt(base + CONTENT_LENGTH_OFFSET));
+            return RecordCodec.readAttachment(encoded);
+        }
+        
+        @Override
+        public Message toMessage() {
+            User recipient = isPrivate() ? userService.getUserById(buffer.getInt(base + RECIPIENT_OFFSET)) : null;
+            return new Message(buffer.getLong(base + ID_OFFSET),
+                               userService.getUserById(buffer.getInt(base + SENDER_OFFSET)),
+                               getContent(), getTimestampMillis(), recipient, getAttachment(), getSequence(),
+                               getRevision(), getParentId());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,280 @@
+package com.chatapp.service;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.Message;
+import com.chatapp.model.ReactionUpdate;
+import com.chatapp.model.User;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Emoji reactions on room messages, counted per (message ID, emoji)
+ *
+ * Each reaction keeps a striped LongAdder count, so many users reacting to one popular message
+ * do not contend on a single counter, and the set of users who reacted, so each user adds a
+ * given emoji at most once. Count changes are not sent per reaction: every PUBLISH_INTERVAL_MILLIS
+ * the net delta of each reaction that changed is published to room observers as one update.
+ */
+public class ReactionService {
+    private static final Logger logger = LoggerFactory.getLogger(ReactionService.class);
+    private static volatile ReactionService instance;
+    private static final Object lock = new Object();
+    
+    private static final long PUBLISH_INTERVAL_MILLIS = 250;
+    private static final int MAX_EMOJI_LENGTH = 32;
+    private static final int MAX_REACTED_MESSAGES_PER_ROOM = 1000;
+    
+    private final ConcurrentHashMap<String, RoomReactions> reactions;
+    private final MessageHistoryService messageHistoryService;
+    
+    private ReactionService() {
+        this.reactions = new ConcurrentHashMap<>();
+        this.messageHistoryService = MessageHistoryService.getInstance();
+        logger.info("Reaction Service initialized");
+    }
+    
+    public static ReactionService getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new ReactionService();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Adds the user's reaction to a retained room message
+     * Returns false if the user had already reacted to it with this emoji; throws if the room
+     * already tracks reactions on MAX_REACTED_MESSAGES_PER_ROOM newer messages
+     */
+    public boolean addReaction(ChatRoom room, User user, long messageId, String emoji) {
+        validate(room, user, emoji);
+        Message message = messageHistoryService.getMessage(room.getRoomId(), messageId);
+        if (message == null) {
+            throw new IllegalArgumentException("Message not found: " + messageId);
+        }
+        if (message.isPrivate()) {
+            throw new IllegalArgumentException("Private messages cannot be reacted to");
+        }
+        
+        RoomReactions roomReactions = reactions.computeIfAbsent(room.getRoomId(), RoomReactions::new);
+        if (!roomReactions.add(user.getId(), messageId, emoji)) {
+            return false;
+        }
+        
+        logger.debug(user.getUsername() + " reacted " + emoji + " to " + messageId + " in " + room.getRoomId());
+        return true;
+    }
+    
+    /**
+     * Removes the user's reaction; returns false if the user had not reacted with this emoji
+     */
+    public boolean removeReaction(ChatRoom room, User user, long messageId, String emoji) {
+        validate(room, user, emoji);
+        
+        RoomReactions roomReactions = reactions.get(room.getRoomId());
+        if (roomReactions == null || !roomReactions.remove(user.getId(), messageId, emoji)) {
+            return false;
+        }
+        
+        logger.debug(user.getUsername() + " removed " + emoji + " from " + messageId + " in " + room.getRoomId());
+        return true;
+    }
+    
+    public boolean hasReacted(String roomId, User user, long messageId, String emoji) {
+        if (roomId == null || user == null || emoji == null) {
+            return false;
+        }
+        
+        RoomReactions roomReactions = reactions.get(roomId);
+        return roomReactions != null && roomReactions.hasReacted(user.getId(), messageId, emoji);
+    }
+    
+    /**
+     * Returns emoji -> number of users for a message, most used first
+     */
+    public Map<String, Long> getReactionCounts(String roomId, long messageId) {
+        if (roomId == null) {
+            return new LinkedHashMap<>();
+        }
+        
+        RoomReactions roomReactions = reactions.get(roomId);
+        return roomReactions != null ? roomReactions.counts(messageId) : new LinkedHashMap<>();
+    }
+    
+    public void clearRoom(String roomId) {
+        if (roomId != null && reactions.remove(roomId) != null) {
+            logger.info("Reactions cleared for room: " + roomId);
+        }
+    }
+    
+    private static void validate(ChatRoom room, User user, String emoji) {
+        if (room == null || user == null) {
+            throw new IllegalArgumentException("Room and user cannot be null");
+        }
+        if (emoji == null || emoji.isBlank()) {
+            throw new IllegalArgumentException("Emoji cannot be null or empty");
+        }
+        if (emoji.length() > MAX_EMOJI_LENGTH || emoji.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("Invalid emoji: " + emoji);
+        }
+    }
+    
+    /**
+     * Reactions of one room, keyed by message ID so that the oldest messages are dropped first
+     */
+    private static final class RoomReactions {
+        // Resolved at publish time, so a room hydrated again after passivation gets the updates
+        private final String roomId;
+        private final ConcurrentSkipListMap<Long, ConcurrentHashMap<String, Reaction>> messages = new ConcurrentSkipListMap<>();
+        // Counted separately because the skip list's size() walks every entry; guarded by messages
+        private int messageCount;
+        // Reactions whose count changed since the last publish
+        private final Set<Reaction> changed = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean publishScheduled = new AtomicBoolean();
+        
+        private RoomReactions(String roomId) {
+            this.roomId = roomId;
+        }
+        
+        boolean add(int userId, long messageId, String emoji) {
+            ConcurrentHashMap<String, Reaction> byEmoji = reactionsOf(messageId);
+            if (byEmoji == null) {
+                throw new IllegalArgumentException("Message " + messageId + " is too old to react to");
+            }
+            
+            Reaction reaction = byEmoji.computeIfAbsent(emoji, e -> new Reaction(messageId, e));
+            if (!reaction.userIds.add(userId)) {
+                return false;
+            }
+            
+            reaction.count.increment();
+            markChanged(reaction);
+            return true;
+        }
+        
+        boolean remove(int userId, long messageId, String emoji) {
+            Map<String, Reaction> byEmoji = messages.get(messageId);
+            Reaction reaction = byEmoji != null ? byEmoji.get(emoji) : null;
+            if (reaction == null || !reaction.userIds.remove(userId)) {
+                return false;
+            }
+            
+            reaction.count.decrement();
+            markChanged(reaction);
+            return true;
+        }
+        
+        boolean hasReacted(int userId, long messageId, String emoji) {
+            Map<String, Reaction> byEmoji = messages.get(messageId);
+            Reaction reaction = byEmoji != null ? byEmoji.get(emoji) : null;
+            return reaction != null && reaction.userIds.contains(userId);
+        }
+        
+        Map<String, Long> counts(long messageId) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            Map<String, Reaction> byEmoji = messages.get(messageId);
+            if (byEmoji == null) {
+                return counts;
+            }
+            
+            byEmoji.values().stream()
+                .filter(reaction -> reaction.count.sum() > 0)
+                .sorted((a, b) -> Long.compare(b.count.sum(), a.count.sum()))
+                .forEach(reaction -> counts.put(reaction.emoji, reaction.count.sum()));
+            return counts;
+        }
+        
+        private ConcurrentHashMap<String, Reaction> reactionsOf(long messageId) {
+            ConcurrentHashMap<String, Reaction> byEmoji = messages.get(messageId);
+            if (byEmoji != null) {
+                return byEmoji;
+            }
+            
+            // Only the first reaction on a message takes the lock, so eviction is decided before
+            // the insert and the new entry can never be the one evicted
+            synchronized (messages) {
+                byEmoji = messages.get(messageId);
+                if (byEmoji != null) {
+                    return byEmoji;
+                }
+                
+                if (messageCount >= MAX_REACTED_MESSAGES_PER_ROOM) {
+                    // Oldest reacted messages go first, mirroring how room history evicts;
+                    // a message older than all of them would be evicted at once, so it is refused
+                    if (messageId < messages.firstKey()) {
+                        return null;
+                    }
+                    messages.pollFirstEntry();
+                    messageCount--;
+                }
+                
+                byEmoji = new ConcurrentHashMap<>();
+                messages.put(messageId, byEmoji);
+                messageCount++;
+                return byEmoji;
+            }
+        }
+        
+        private void markChanged(Reaction reaction) {
+            changed.add(reaction);
+            if (publishScheduled.compareAndSet(false, true)) {
+                EventScheduler.getInstance().schedule(this::publish, PUBLISH_INTERVAL_MILLIS);
+            }
+        }
+        
+        // Sends the net change of every reaction touched during the interval as one update
+        private void publish() {
+            List<ReactionUpdate> updates = new ArrayList<>();
+            synchronized (this) {
+                // Cleared first, so a reaction arriving while this runs schedules the next publish
+                publishScheduled.set(false);
+                Iterator<Reaction> iterator = changed.iterator();
+                while (iterator.hasNext()) {
+                    Reaction reaction = iterator.next();
+                    iterator.remove();
+                    long count = reaction.count.sum();
+                    long delta = count - reaction.publishedCount;
+                    if (delta != 0) {
+                        reaction.publishedCount = count;
+                        updates.add(new ReactionUpdate(reaction.messageId, reaction.emoji, delta, count));
+                    }
+                }
+            }
+            
+            ChatRoom room = ChatRoomManager.getInstance().getResidentRoom(roomId);
+            if (!updates.isEmpty() && room != null) {
+                room.publishReactions(updates);
+            }
+        }
+    }
+    
+    private static final class Reaction {
+        private final long messageId;
+        private final String emoji;
+        private final LongAdder count = new LongAdder();
+        // Users who reacted with this emoji; adding twice is rejected by the set
+        private final Set<Integer> userIds = ConcurrentHashMap.newKeySet();
+        // Count in the last published update; guarded by the room's publish lock
+        private long publishedCount;
+        
+        private Reaction(long messageId, String emoji) {
+            this.messageId = messageId;
+            this.emoji = emoji;
+        }
+    }
+}
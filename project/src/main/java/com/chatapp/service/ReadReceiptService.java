@@ -0,0 +1,188 @@
+package com.chatapp.service;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.User;
+import com.chatapp.util.IntLongHashMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Read receipts kept as one watermark per user and room: the newest sequence number the user has read
+ *
+ * Message IDs are assigned before sending and so are not in room order; only the sequence number
+ * broadcast assigns is, which is what lets one number stand for everything read before it.
+ *
+ * Memory grows with members, not with messages times members. "Seen by N" is answered from a
+ * sorted copy of the room's watermarks that is rebuilt only after they change, and watermark
+ * moves are published to room observers in batches rather than one event per scroll step.
+ */
+public class ReadReceiptService {
+    private static final Logger logger = LoggerFactory.getLogger(ReadReceiptService.class);
+    private static volatile ReadReceiptService instance;
+    private static final Object lock = new Object();
+    
+    private static final long PUBLISH_INTERVAL_MILLIS = 500;
+    private static final long NO_WATERMARK = 0;
+    
+    private final ConcurrentHashMap<String, RoomReceipts> receipts;
+    
+    private ReadReceiptService() {
+        this.receipts = new ConcurrentHashMap<>();
+        logger.info("Read Receipt Service initialized");
+    }
+    
+    public static ReadReceiptService getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new ReadReceiptService();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Moves the user's watermark in the room forward to the given sequence number
+     * Returns false if the user had already read that far, or for a message without one
+     */
+    public boolean markRead(ChatRoom room, User user, long sequence) {
+        if (room == null || user == null) {
+            throw new IllegalArgumentException("Room and user cannot be null");
+        }
+        if (sequence <= NO_WATERMARK) {
+            return false;
+        }
+        
+        RoomReceipts roomReceipts = receipts.computeIfAbsent(room.getRoomId(), RoomReceipts::new);
+        if (!roomReceipts.advance(user.getId(), sequence)) {
+            return false;
+        }
+        
+        logger.debug("Read watermark for " + user.getUsername() + " in " + room.getRoomId() + " -> " + sequence);
+        return true;
+    }
+    
+    /**
+     * Returns the newest sequence number the user has read in the room, or 0 if none
+     */
+    public long getWatermark(String roomId, User user) {
+        if (roomId == null || user == null) {
+            return NO_WATERMARK;
+        }
+        
+        RoomReceipts roomReceipts = receipts.get(roomId);
+        return roomReceipts != null ? roomReceipts.watermark(user.getId()) : NO_WATERMARK;
+    }
+    
+    /**
+     * Counts the users other than the sender whose watermark has reached the message with the given sequence number
+     */
+    public int getSeenByCount(String roomId, long sequence, int senderId) {
+        if (roomId == null) {
+            return 0;
+        }
+        
+        RoomReceipts roomReceipts = receipts.get(roomId);
+        return roomReceipts != null ? roomReceipts.seenBy(sequence, senderId) : 0;
+    }
+    
+    public void clearRoom(String roomId) {
+        if (roomId != null && receipts.remove(roomId) != null) {
+            logger.info("Read receipts cleared for room: " + roomId);
+        }
+    }
+    
+    /**
+     * Watermarks of one room, guarded by the instance lock
+     * Holds the room ID rather than the room, which is replaced when it is hydrated from the store
+     */
+    private static final class RoomReceipts {
+        private final String roomId;
+        private final IntLongHashMap watermarks = new IntLongHashMap();
+        // Watermarks moved since the last publish
+        private final IntLongHashMap pending = new IntLongHashMap();
+        private long[] sortedWatermarks = new long[0];
+        private boolean sortedStale;
+        private boolean publishScheduled;
+        
+        private RoomReceipts(String roomId) {
+            this.roomId = roomId;
+        }
+        
+        synchronized boolean advance(int userId, long sequence) {
+            if (watermarks.get(userId, NO_WATERMARK) >= sequence) {
+                return false;
+            }
+            
+            watermarks.put(userId, sequence, NO_WATERMARK);
+            pending.put(userId, sequence, NO_WATERMARK);
+            sortedStale = true;
+            if (!publishScheduled) {
+                publishScheduled = true;
+                EventScheduler.getInstance().schedule(this::publish, PUBLISH_INTERVAL_MILLIS);
+            }
+            return true;
+        }
+        
+        synchronized long watermark(int userId) {
+            return watermarks.get(userId, NO_WATERMARK);
+        }
+        
+        synchronized int seenBy(long sequence, int senderId) {
+            if (sortedStale) {
+                sortedWatermarks = watermarks.values();
+                Arrays.sort(sortedWatermarks);
+                sortedStale = false;
+            }
+            
+            int seen = sortedWatermarks.length - lowerBound(sortedWatermarks, sequence);
+            if (watermarks.get(senderId, NO_WATERMARK) >= sequence) {
+                seen--;
+            }
+            return Math.max(0, seen);
+        }
+        
+        // Sends every watermark that moved during the interval as one update
+        private void publish() {
+            Map<User, Long> update = new HashMap<>();
+            synchronized (this) {
+                UserService userService = UserService.getInstance();
+                pending.forEach((userId, sequence) -> {
+                    User user = userService.getUserById(userId);
+                    if (user != null) {
+                        update.put(user, sequence);
+                    }
+                });
+                pending.clear();
+                publishScheduled = false;
+            }
+            
+            // A room that is not resident has no sessions to tell
+            ChatRoom room = ChatRoomManager.getInstance().getResidentRoom(roomId);
+            if (!update.isEmpty() && room != null) {
+                room.publishReadReceipts(update);
+            }
+        }
+        
+        private static int lowerBound(long[] sorted, long value) {
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
\ No newline at end of file
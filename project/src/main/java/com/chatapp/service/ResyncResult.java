@@ -0,0 +1,49 @@
+package com.chatapp.service;
+
+/**
+ * Outcome of a delta resync request for one room
+ */
+public class ResyncResult {
+    
+    public enum Status {
+        // The client already has every retained message
+        UP_TO_DATE,
+        // Every message after the client's last-seen sequence number was streamed
+        DELTA_SENT,
+        // Messages after the last-seen sequence number were evicted; the client must reload page by page
+        GAP_TOO_LARGE
+    }
+    
+    private final String roomId;
+    private final Status status;
+    private final int deliveredCount;
+    private final long evictedThroughId;
+    
+    ResyncResult(String roomId, Status status, int deliveredCount, long evictedThroughId) {
+        this.roomId = roomId;
+        this.status = status;
+        this.deliveredCount = deliveredCount;
+        this.evictedThroughId = evictedThroughId;
+    }
+    
+    public String getRoomId() {
+        return roomId;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public int getDeliveredCount() {
+        return deliveredCount;
+    }
+    
+    public long getEvictedThroughId() {
+        return evictedThroughId;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("ResyncResult[%s, %s, delivered: %d]", roomId, status, deliveredCount);
+    }
+}
\ No newline at end of file
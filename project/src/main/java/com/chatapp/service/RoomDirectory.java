@@ -0,0 +1,144 @@
+package com.chatapp.service;
+
+import com.chatapp.model.ChatRoom;
+import com.chatapp.model.Message;
+import com.chatapp.model.User;
+import com.chatapp.observer.ChatObserver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * OBSERVER PATTERN (Behavioral) - Concrete Observer
+ * Incremental index of all rooms, kept current from room events
+ *
+ * Entries are held in two skip lists: one ranked by population and recent activity for paging,
+ * one ordered by room ID for prefix search. A join, leave or message moves a single entry, and
+ * every query starts from a cursor, so no listing walks the whole room set.
+ */
+final class RoomDirectory implements ChatObserver {
+    // Activity moves closer together than this do not re-rank the room
+    private static final long ACTIVITY_RESOLUTION_MILLIS = 1000;
+    
+    // Per-room updates are serialized through compute on this map
+    private final ConcurrentHashMap<String, RoomSummary> entries;
+    private final ConcurrentSkipListMap<String, RoomSummary> byRoomId;
+    private final ConcurrentSkipListSet<RoomSummary> ranked;
+    
+    RoomDirectory() {
+        this.entries = new ConcurrentHashMap<>();
+        this.byRoomId = new ConcurrentSkipListMap<>();
+        this.ranked = new ConcurrentSkipListSet<>(RoomSummary.BY_RANK);
+    }
+    
+    // A room loaded back from disk keeps the activity time of its existing entry
+    void add(ChatRoom room) {
+        entries.compute(room.getRoomId(), (roomId, current) -> {
+            int count = room.getUserCount();
+            if (current == null) {
+                return replace(null, new RoomSummary(roomId, count, room.getLastActivityMillis(), room.getCreatedAt()));
+            }
+            return count == current.getMemberCount() ? current : replace(current, current.withMemberCount(count));
+        });
+    }
+    
+    void remove(String roomId) {
+        entries.computeIfPresent(roomId, (id, current) -> replace(current, null));
+    }
+    
+    /**
+     * Returns up to limit rooms in rank order, starting after the given entry (null for the first page)
+     */
+    List<RoomSummary> page(RoomSummary after, int limit) {
+        NavigableSet<RoomSummary> view = after == null ? ranked : ranked.tailSet(after, false);
+        return take(view.iterator(), limit, null);
+    }
+    
+    /**
+     * Returns up to limit rooms whose ID starts with prefix, in ID order after the given room ID
+     */
+    List<RoomSummary> search(String prefix, String afterRoomId, int limit) {
+        Map<String, RoomSummary> view = afterRoomId != null && afterRoomId.compareTo(prefix) >= 0
+            ? byRoomId.tailMap(afterRoomId, false)
+            : byRoomId.tailMap(prefix, true);
+        return take(view.values().iterator(), limit, prefix);
+    }
+    
+    boolean contains(String roomId) {
+        return entries.containsKey(roomId);
+    }
+    
+    List<String> roomIds() {
+        return new ArrayList<>(byRoomId.keySet());
+    }
+    
+    int size() {
+        return entries.size();
+    }
+    
+    @Override
+    public void onMessageReceived(ChatRoom room, Message message) {
+        recordActivity(room, message.getTimestampMillis());
+    }
+    
+    @Override
+    public void onPrivateMessageReceived(ChatRoom room, Message message) {
+        recordActivity(room, message.getTimestampMillis());
+    }
+    
+    @Override
+    public void onUserJoined(ChatRoom room, User user) {
+        updateMemberCount(room);
+    }
+    
+    @Override
+    public void onUserLeft(ChatRoom room, User user) {
+        updateMemberCount(room);
+    }
+    
+    // The count is read inside compute, so the last update for a room always sees the latest value
+    private void updateMemberCount(ChatRoom room) {
+        entries.computeIfPresent(room.getRoomId(), (roomId, current) -> {
+            int count = room.getUserCount();
+            return count == current.getMemberCount() ? current : replace(current, current.withMemberCount(count));
+        });
+    }
+    
+    private void recordActivity(ChatRoom room, long activityMillis) {
+        entries.computeIfPresent(room.getRoomId(), (roomId, current) ->
+            activityMillis - current.getLastActivityMillis() < ACTIVITY_RESOLUTION_MILLIS
+                ? current
+                : replace(current, current.withActivity(activityMillis)));
+    }
+    
+    private RoomSummary replace(RoomSummary current, RoomSummary updated) {
+        if (current != null) {
+            ranked.remove(current);
+        }
+        if (updated != null) {
+            ranked.add(updated);
+            byRoomId.put(updated.getRoomId(), updated);
+        } else if (current != null) {
+            byRoomId.remove(current.getRoomId());
+        }
+        return updated;
+    }
+    
+    private static List<RoomSummary> take(Iterator<RoomSummary> iterator, int limit, String prefix) {
+        List<RoomSummary> result = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+        while (result.size() < limit && iterator.hasNext()) {
+            RoomSummary summary = iterator.next();
+            if (prefix != null && !summary.getRoomId().startsWith(prefix)) {
+                break;
+            }
+            result.add(summary);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,204 @@
+package com.chatapp.service;
+
+import com.chatapp.model.AttachmentRef;
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Edits and tombstones of one room that have not been folded into its message log yet
+ * Holds only the latest revision per message ID, so reads apply an edit with one hash lookup
+ * and the log itself is rewritten at most once per compaction rather than once per edit.
+ * Deleted IDs outlive compaction until the timeline evicts them, so that snapshots can carry
+ * them and a replayed Write-Ahead Log does not bring the messages back. Each is kept through a
+ * sequence number, the order the timeline evicts in, since message IDs may be out of that order.
+ */
+final class RoomEditOverlay {
+    private final ConcurrentHashMap<Long, MessageEdit> edits = new ConcurrentHashMap<>();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    // Deleted message ID -> sequence number its tombstone is kept through
+    private final ConcurrentHashMap<Long, Long> deletedIds = new ConcurrentHashMap<>();
+    // The same tombstones by sequence; the replies of one parent share its sequence number
+    private final ConcurrentSkipListMap<Long, Set<Long>> deletedBySequence = new ConcurrentSkipListMap<>();
+    
+    MessageEdit get(long messageId) {
+        return edits.get(messageId);
+    }
+    
+    Map<Long, MessageEdit> edits() {
+        return edits;
+    }
+    
+    boolean isEmpty() {
+        return edits.isEmpty();
+    }
+    
+    int deletionCount() {
+        int deletions = 0;
+        for (MessageEdit edit : edits.values()) {
+            if (edit.isDeletion()) {
+                deletions++;
+            }
+        }
+        return deletions;
+    }
+    
+    void markDeleted(long messageId, long keptThroughSequence) {
+        deletedBySequence.computeIfAbsent(keptThroughSequence, sequence -> ConcurrentHashMap.newKeySet()).add(messageId);
+        deletedIds.put(messageId, keptThroughSequence);
+    }
+    
+    boolean isDeleted(long messageId) {
+        return deletedIds.containsKey(messageId);
+    }
+    
+    List<Long> deletedIds() {
+        List<Long> ids = new ArrayList<>(deletedIds.keySet());
+        ids.sort(null);
+        return ids;
+    }
+    
+    // Forgets deletions kept through the given sequence number, once the timeline has evicted it
+    void pruneDeletedThrough(long evictedThroughSequence) {
+        if (deletedBySequence.isEmpty() || deletedBySequence.firstKey() > evictedThroughSequence) {
+            return;
+        }
+        
+        ConcurrentNavigableMap<Long, Set<Long>> evicted = deletedBySequence.headMap(evictedThroughSequence, true);
+        for (Set<Long> messageIds : evicted.values()) {
+            messageIds.forEach(deletedIds::remove);
+        }
+        evicted.clear();
+    }
+    
+    // Returns true if the caller should schedule a compaction
+    boolean claimCompaction() {
+        return compactionScheduled.compareAndSet(false, true);
+    }
+    
+    // Cleared before the edits are copied, so an edit arriving during compaction schedules the next one
+    void startCompaction() {
+        compactionScheduled.set(false);
+    }
+    
+    /**
+     * Drops the folded edits that are still the latest revision of their message
+     */
+    void removeFolded(Map<Long, MessageEdit> folded) {
+        folded.forEach(edits::remove);
+    }
+    
+    /**
+     * Wraps a history visitor so it sees messages as edited and never sees deleted ones
+     * Returns the visitor itself while nothing is pending
+     */
+    Consumer<MessageView> apply(Consumer<MessageView> visitor) {
+        if (edits.isEmpty()) {
+            return visitor;
+        }
+        
+        EditedMessageView edited = new EditedMessageView();
+        return view -> {
+            MessageEdit edit = edits.get(view.getId());
+            if (edit == null || edit.getRevision() <= view.getRevision()) {
+                visitor.accept(view);
+            } else if (!edit.isDeletion()) {
+                visitor.accept(edited.bind(view, edit));
+            }
+        };
+    }
+    
+    /**
+     * Applies the pending edit of a message; returns null if the message was deleted
+     */
+    Message apply(Message message) {
+        MessageEdit edit = edits.get(message.getId());
+        if (edit == null || edit.getRevision() <= message.getRevision()) {
+            return message;
+        }
+        return edit.isDeletion() ? null : message.withEdit(edit);
+    }
+    
+    /**
+     * Flyweight decorator that overrides the content and revision of the underlying view
+     */
+    private static final class EditedMessageView implements MessageView {
+        private MessageView base;
+        private MessageEdit edit;
+        
+        private EditedMessageView bind(MessageView base, MessageEdit edit) {
+            this.base = base;
+            this.edit = edit;
+            return this;
+        }
+        
+        @Override
+        public long getId() {
+            return base.getId();
+        }
+        
+        @Override
+        public String getMessageId() {
+            return base.getMessageId();
+        }
+        
+        @Override
+        public String getSenderName() {
+            return base.getSenderName();
+        }
+        
+        @Override
+        public String getRecipientName() {
+            return base.getRecipientName();
+        }
+        
+        @Override
+        public long getTimestampMillis() {
+            return base.getTimestampMillis();
+        }
+        
+        @Override
+        public long getSequence() {
+            return base.getSequence();
+        }
+        
+        @Override
+        public int getRevision() {
+            return edit.getRevision();
+        }
+        
+        @Override
+        public long getParentId() {
+            return base.getParentId();
+        }
+        
+        @Override
+        public String getContent() {
+            return edit.getContent();
+        }
+        
+        @Override
+        public boolean isPrivate() {
+            return base.isPrivate();
+        }
+        
+        @Override
+        public AttachmentRef getAttachment() {
+            return base.getAttachment();
+        }
+        
+        @Override
+        public Message toMessage() {
+            return base.toMessage().withEdit(edit);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.chatapp.service;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Optional single-writer execution for rooms
+ *
+ * With chatapp.room.execution=eventloop each room is hashed onto one of chatapp.room.loops
+ * single-threaded event loops (default: one per CPU). Every state change of a room is submitted
+ * to its loop as a task, so a room is only ever modified by one thread and its operations apply
+ * in submission order. Operations already running on the owning loop execute inline. A room task
+ * must never wait on another room's loop, since two loops waiting on each other would deadlock.
+ *
+ * In the default mode operations run on the calling thread and futures are already complete.
+ */
+public class RoomEventLoops {
+    private static final Logger logger = LoggerFactory.getLogger(RoomEventLoops.class);
+    private static volatile RoomEventLoops instance;
+    private static final Object lock = new Object();
+    
+    private final ExecutorService[] loops;
+    private final Thread[] loopThreads;
+    
+    private RoomEventLoops() {
+        boolean enabled = "eventloop".equalsIgnoreCase(System.getProperty("chatapp.room.execution"));
+        int count = enabled ? Math.max(1, Integer.getInteger("chatapp.room.loops", Runtime.getRuntime().availableProcessors())) : 0;
+        
+        this.loops = new ExecutorService[count];
+        this.loopThreads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            loops[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "room-loop-" + index);
+                thread.setDaemon(true);
+                loopThreads[index] = thread;
+                return thread;
+            });
+        }
+        logger.info("Room Event Loops initialized (" + (enabled ? count + " loops" : "caller-thread execution") + ")");
+    }
+    
+    public static RoomEventLoops getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new RoomEventLoops();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public boolean isEnabled() {
+        return loops.length > 0;
+    }
+    
+    /**
+     * Returns true if the calling thread may touch the room's state directly: event loops are
+     * disabled, or the caller is the room's own loop
+     */
+    public boolean isOwner(String roomId) {
+        return loops.length == 0 || Thread.currentThread() == loopThreads[loopIndex(roomId)];
+    }
+    
+    /**
+     * Runs an operation on the room's loop and returns its result
+     * A failure of the operation completes the future exceptionally
+     */
+    public <T> CompletableFuture<T> submit(String roomId, Supplier<T> operation) {
+        if (isOwner(roomId)) {
+            try {
+                return CompletableFuture.completedFuture(operation.get());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(operation, loops[loopIndex(roomId)]);
+    }
+    
+    public CompletableFuture<Void> execute(String roomId, Runnable operation) {
+        return submit(roomId, () -> {
+            operation.run();
+            return null;
+        });
+    }
+    
+    /**
+     * Waits for a room operation and rethrows its failure unwrapped, for synchronous callers
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    public void shutdown() {
+        for (ExecutorService loop : loops) {
+            loop.shutdown();
+        }
+    }
+    
+    private int loopIndex(String roomId) {
+        int hash = roomId.hashCode();
+        // Spread the high bits, as HashMap does, so similar IDs land on different loops
+        return Math.floorMod(hash ^ (hash >>> 16), loops.length);
+    }
+}
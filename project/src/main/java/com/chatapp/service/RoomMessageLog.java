@@ -0,0 +1,54 @@
+package com.chatapp.service;
+
+import com.chatapp.model.Message;
+import com.chatapp.model.MessageEdit;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, append-only message log for a single room
+ * Appending beyond the capacity evicts the oldest message; edits are only folded in by compact
+ */
+interface RoomMessageLog {
+    void append(Message message);
+    
+    // Chronological order (oldest first)
+    List<Message> toList();
+    
+    // Visits at most limit messages sequenced below beforeSequence, newest first, through a reused flyweight view
+    void visitNewestFirst(long beforeSequence, int limit, Consumer<MessageView> visitor);
+    
+    // Visits at most limit messages appended before the one with ID beforeId, newest first
+    // For reply threads, whose messages carry no sequence number; visits nothing if beforeId is not retained
+    void visitAppendedBefore(long beforeId, int limit, Consumer<MessageView> visitor);
+    
+    // Visits retained messages with fromSequence <= sequence <= toSequence in order
+    // Sequences only grow along the log, so the start is found by binary search
+    void visitSequenceRange(long fromSequence, long toSequence, Consumer<MessageView> visitor);
+    
+    // Visits the message with the given ID, searching from the newest; returns false if it is not retained
+    boolean visitMessage(long messageId, Consumer<MessageView> visitor);
+    
+    // Applies edits (message ID -> latest revision) to the stored messages and drops deleted ones
+    // Returns the number of messages rewritten or dropped
+    int compact(Map<Long, MessageEdit> edits);
+    
+    // Highest sequence number ever appended, even if that message was since deleted, or 0 if none
+    long getLatestSequence();
+    
+    // Raises the latest sequence number, for a log restored without its newest (deleted) messages
+    void restoreLatestSequence(long sequence);
+    
+    // Highest message ID dropped by eviction, or 0 if nothing has been evicted
+    long getEvictedThroughId();
+    
+    // Highest sequence number dropped by eviction, or 0 if nothing has been evicted
+    long getEvictedThroughSequence();
+    
+    int size();
+    
+    // Frees any storage held outside the Java heap
+    void release();
+}
\ No newline at end of file
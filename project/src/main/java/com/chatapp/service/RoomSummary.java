@@ -0,0 +1,57 @@
+package com.chatapp.service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * Immutable directory entry for a room
+ * A room's entry is replaced, never modified, so the directory's sorted indexes stay consistent
+ */
+public final class RoomSummary {
+    // Most populated first, then most recently active, then by room ID
+    static final Comparator<RoomSummary> BY_RANK = Comparator
+        .comparingInt(RoomSummary::getMemberCount).reversed()
+        .thenComparing(Comparator.comparingLong(RoomSummary::getLastActivityMillis).reversed())
+        .thenComparing(RoomSummary::getRoomId);
+    
+    private final String roomId;
+    private final int memberCount;
+    private final long lastActivityMillis;
+    private final LocalDateTime createdAt;
+    
+    RoomSummary(String roomId, int memberCount, long lastActivityMillis, LocalDateTime createdAt) {
+        this.roomId = roomId;
+        this.memberCount = memberCount;
+        this.lastActivityMillis = lastActivityMillis;
+        this.createdAt = createdAt;
+    }
+    
+    RoomSummary withMemberCount(int count) {
+        return new RoomSummary(roomId, count, lastActivityMillis, createdAt);
+    }
+    
+    RoomSummary withActivity(long activityMillis) {
+        return new RoomSummary(roomId, memberCount, activityMillis, createdAt);
+    }
+    
+    public String getRoomId() {
+        return roomId;
+    }
+    
+    public int getMemberCount() {
+        return memberCount;
+    }
+    
+    public long getLastActivityMillis() {
+        return lastActivityMillis;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("RoomSummary[%s, %d members]", roomId, memberCount);
+    }
+}
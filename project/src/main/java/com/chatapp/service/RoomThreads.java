@@ -0,0 +1,131 @@
+package com.chatapp.service;
+
+import com.chatapp.model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Reply threads of one room, each an independent bounded log keyed by its parent message ID
+ *
+ * Opening a thread reads only that thread's log, and reply counts are kept per parent as replies
+ * arrive, so the room timeline never scans replies. Parents are also indexed by their sequence
+ * number, the order the timeline evicts in, which lets the threads of evicted timeline messages be
+ * dropped with one head-map cut; message IDs are taken before sequencing and may be out of order.
+ */
+final class RoomThreads {
+    private final ConcurrentHashMap<Long, ReplyThread> threads = new ConcurrentHashMap<>();
+    // Parent sequence number -> parent ID, for every parent with a thread
+    private final ConcurrentSkipListMap<Long, Long> parentsBySequence = new ConcurrentSkipListMap<>();
+    // Reply ID -> parent ID, to find the thread holding a reply that is edited or deleted
+    private final ConcurrentHashMap<Long, Long> parentsByReply = new ConcurrentHashMap<>();
+    
+    /**
+     * Appends a reply to its parent's thread and returns the thread's new reply count
+     * parentSequence is the parent's sequence number in the room timeline
+     */
+    int append(Message reply, long parentSequence, Supplier<RoomMessageLog> newLog) {
+        ReplyThread thread = threads.computeIfAbsent(reply.getParentId(), id -> {
+            parentsBySequence.put(parentSequence, id);
+            return new ReplyThread(newLog.get(), parentSequence);
+        });
+        thread.replies.append(reply);
+        parentsByReply.put(reply.getId(), reply.getParentId());
+        return thread.replyCount.incrementAndGet();
+    }
+    
+    RoomMessageLog thread(long parentId) {
+        ReplyThread thread = threads.get(parentId);
+        return thread != null ? thread.replies : null;
+    }
+    
+    // The log holding a reply, or null if the ID is not a retained reply
+    RoomMessageLog threadOf(long replyId) {
+        Long parentId = parentsByReply.get(replyId);
+        return parentId != null ? thread(parentId) : null;
+    }
+    
+    // Sequence number of the parent of a retained reply, or NO_SEQUENCE if the ID is not one
+    long parentSequence(long replyId) {
+        Long parentId = parentsByReply.get(replyId);
+        ReplyThread thread = parentId != null ? threads.get(parentId) : null;
+        return thread != null ? thread.parentSequence : Message.NO_SEQUENCE;
+    }
+    
+    int replyCount(long parentId) {
+        ReplyThread thread = threads.get(parentId);
+        return thread != null ? thread.replyCount.get() : 0;
+    }
+    
+    void replyDeleted(long replyId) {
+        Long parentId = parentsByReply.get(replyId);
+        ReplyThread thread = parentId != null ? threads.get(parentId) : null;
+        if (thread != null) {
+            thread.replyCount.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Drops the threads of parents sequenced at or below the given number, once those parents have
+     * left the timeline
+     */
+    void pruneThrough(long evictedThroughSequence) {
+        if (parentsBySequence.isEmpty() || parentsBySequence.firstKey() > evictedThroughSequence) {
+            return;
+        }
+        
+        ConcurrentNavigableMap<Long, Long> evicted = parentsBySequence.headMap(evictedThroughSequence, true);
+        for (Long parentId : evicted.values()) {
+            ReplyThread thread = threads.remove(parentId);
+            if (thread != null) {
+                thread.replies.toList().forEach(reply -> parentsByReply.remove(reply.getId()));
+                thread.replies.release();
+            }
+        }
+        evicted.clear();
+    }
+    
+    // Every retained reply, thread by thread and oldest first within a thread
+    List<Message> allReplies() {
+        List<Message> replies = new ArrayList<>();
+        for (ReplyThread thread : threads.values()) {
+            replies.addAll(thread.replies.toList());
+        }
+        return replies;
+    }
+    
+    Iterable<RoomMessageLog> logsOf(Iterable<Long> replyIds) {
+        List<RoomMessageLog> logs = new ArrayList<>();
+        for (Long replyId : replyIds) {
+            RoomMessageLog log = threadOf(replyId);
+            if (log != null && !logs.contains(log)) {
+                logs.add(log);
+            }
+        }
+        return logs;
+    }
+    
+    void release() {
+        threads.values().forEach(thread -> thread.replies.release());
+        threads.clear();
+        parentsBySequence.clear();
+        parentsByReply.clear();
+    }
+    
+    private static final class ReplyThread {
+        private final RoomMessageLog replies;
+        private final long parentSequence;
+        // Replies ever posted minus replies deleted; unlike the log size it is not capped
+        private final AtomicInteger replyCount = new AtomicInteger();
+        
+        private ReplyThread(RoomMessageLog replies, long parentSequence) {
+            this.replies = replies;
+            this.parentSequence = parentSequence;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.chatapp.service;
+
+import com.chatapp.model.Message;
+import com.chatapp.util.LongBloomFilter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Remembers recent client send nonces per user so retried sends can be answered with the original
+ *
+ * Each user has two generations of nonces. A generation is a Bloom filter in front of an exact
+ * map: a new nonce, the common case, is ruled out by a few bit probes, and only a possible hit
+ * looks in the map. When the current generation is older than the window or full, it becomes the
+ * previous one and the old previous one is dropped whole, so memory per user is bounded and a
+ * nonce is remembered for at least one window unless the user sends faster than the capacity.
+ */
+final class SendDeduplicator {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    
+    private final long windowMillis;
+    private final int generationCapacity;
+    private final ConcurrentHashMap<Integer, UserNonces> users;
+    
+    SendDeduplicator(long windowMillis, int generationCapacity) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Deduplication window must be positive");
+        }
+        if (generationCapacity <= 0) {
+            throw new IllegalArgumentException("Generation capacity must be positive");
+        }
+        
+        this.windowMillis = windowMillis;
+        this.generationCapacity = generationCapacity;
+        this.users = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Claims the nonce for a new send and returns null, or returns the result of the send that
+     * already claimed it. The claimant must later call complete or release.
+     */
+    CompletableFuture<Message> claim(int userId, long nonce) {
+        long now = System.currentTimeMillis();
+        // Claimed inside compute so idle eviction cannot drop the entry in between
+        AtomicReference<CompletableFuture<Message>> existing = new AtomicReference<>();
+        users.compute(userId, (id, nonces) -> {
+            UserNonces target = nonces != null ? nonces : new UserNonces();
+            existing.set(target.claim(nonce, now));
+            return target;
+        });
+        return existing.get();
+    }
+    
+    void complete(int userId, long nonce, Message delivered) {
+        CompletableFuture<Message> result = find(userId, nonce);
+        if (result != null) {
+            result.complete(delivered);
+        }
+    }
+    
+    /**
+     * Forgets a claim whose send failed, so a retry runs the send again
+     */
+    void release(int userId, long nonce, Throwable failure) {
+        UserNonces nonces = users.get(userId);
+        if (nonces != null) {
+            CompletableFuture<Message> result = nonces.remove(nonce);
+            if (result != null) {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+    
+    /**
+     * Drops users whose nonces have all aged out
+     */
+    void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Integer userId : users.keySet()) {
+            users.computeIfPresent(userId, (id, nonces) -> nonces.isIdle(now) ? null : nonces);
+        }
+    }
+    
+    int getTrackedUserCount() {
+        return users.size();
+    }
+    
+    private CompletableFuture<Message> find(int userId, long nonce) {
+        UserNonces nonces = users.get(userId);
+        return nonces != null ? nonces.get(nonce) : null;
+    }
+    
+    private final class UserNonces {
+        private Generation current;
+        private Generation previous;
+        
+        synchronized CompletableFuture<Message> claim(long nonce, long now) {
+            CompletableFuture<Message> existing = lookup(nonce);
+            if (existing != null) {
+                return existing;
+            }
+            
+            if (current == null || now - current.startedAt >= windowMillis || current.results.size() >= generationCapacity) {
+                previous = current != null && now - current.startedAt < 2 * windowMillis ? current : null;
+                current = new Generation(now);
+            }
+            current.filter.add(nonce);
+            current.results.put(nonce, new CompletableFuture<>());
+            return null;
+        }
+        
+        synchronized CompletableFuture<Message> get(long nonce) {
+            return lookup(nonce);
+        }
+        
+        synchronized CompletableFuture<Message> remove(long nonce) {
+            // Filter bits stay set; a false positive only costs a map lookup
+            CompletableFuture<Message> result = current != null ? current.results.remove(nonce) : null;
+            if (result == null && previous != null) {
+                result = previous.results.remove(nonce);
+            }
+            return result;
+        }
+        
+        synchronized boolean isIdle(long now) {
+            return current == null || now - current.startedAt >= 2 * windowMillis;
+        }
+        
+        private CompletableFuture<Message> lookup(long nonce) {
+            CompletableFuture<Message> result = current != null ? current.find(nonce) : null;
+            if (result == null && previous != null) {
+                result = previous.find(nonce);
+            }
+            return result;
+        }
+    }
+    
+    private final class Generation {
+        private final long startedAt;
+        private final LongBloomFilter filter;
+        private final Map<Long, CompletableFuture<Message>> results;
+        
+        private Generation(long startedAt) {
+            this.startedAt = startedAt;
+            this.filter = new LongBloomFilter(generationCapacity, FALSE_POSITIVE_RATE);
+            this.results = new HashMap<>();
+        }
+        
+        CompletableFuture<Message> find(long nonce) {
+            return filter.mightContain(nonce) ? results.get(nonce) : null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,305 @@
+package com.chatapp.service;
+
+import com.chatapp.logger.Logger;
+import com.chatapp.logger.LoggerFactory;
+import com.chatapp.model.User;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * SINGLETON PATTERN (Creational)
+ * Issues and resumes client sessions
+ *
+ * A session token carries its session ID, user ID and expiry, signed with HMAC-SHA256, so it is
+ * verified locally without a credential check. Room memberships live in a bounded cache keyed by
+ * session ID; resuming is one signature check and one map lookup. An evicted or idle-expired
+ * session still authenticates its user while the token is valid, but resumes with no rooms.
+ * Closing a session revokes its token for the rest of the token's lifetime.
+ *
+ * The signing key comes from chatapp.session.secret; without it a random key is generated, and
+ * tokens do not survive a restart.
+ */
+public class SessionService {
+    private static final Logger logger = LoggerFactory.getLogger(SessionService.class);
+    private static volatile SessionService instance;
+    private static final Object lock = new Object();
+    
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int SESSION_ID_BYTES = 16;
+    private static final int PAYLOAD_BYTES = SESSION_ID_BYTES + Integer.BYTES + Long.BYTES;
+    private static final long DEFAULT_TOKEN_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+    private static final int DEFAULT_MAX_CACHED_SESSIONS = 10_000;
+    private static final long SWEEP_INTERVAL_MILLIS = 60_000;
+    
+    private final SecretKeySpec signingKey;
+    // Mac instances are not thread-safe
+    private final ThreadLocal<Mac> macs;
+    private final SecureRandom random;
+    private final long tokenTtlMillis;
+    private final long idleTimeoutMillis;
+    private final int maxCachedSessions;
+    private final ConcurrentHashMap<String, Session> sessions;
+    // Caching order, for evicting the oldest sessions once the cache is full; each ID appears once
+    private final ConcurrentLinkedQueue<String> creationOrder;
+    // Closed session ID -> token expiry; kept in memory until the token would have expired anyway
+    private final ConcurrentHashMap<String, Long> revokedSessions;
+    
+    private SessionService() {
+        this.random = new SecureRandom();
+        this.signingKey = new SecretKeySpec(loadSecret(), HMAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.tokenTtlMillis = Long.getLong("chatapp.session.ttl.ms", DEFAULT_TOKEN_TTL_MILLIS);
+        this.idleTimeoutMillis = Long.getLong("chatapp.session.idle.ms", DEFAULT_IDLE_TIMEOUT_MILLIS);
+        this.maxCachedSessions = Integer.getInteger("chatapp.session.cache.max", DEFAULT_MAX_CACHED_SESSIONS);
+        this.sessions = new ConcurrentHashMap<>();
+        this.creationOrder = new ConcurrentLinkedQueue<>();
+        this.revokedSessions = new ConcurrentHashMap<>();
+        EventScheduler.getInstance().scheduleAtFixedRate(this::sweepExpired, SWEEP_INTERVAL_MILLIS);
+        logger.info("Session Service initialized");
+    }
+    
+    public static SessionService getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new SessionService();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Starts a session for an authenticated user; the client keeps its token to resume later
+     */
+    public Session openSession(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        
+        byte[] sessionIdBytes = new byte[SESSION_ID_BYTES];
+        random.nextBytes(sessionIdBytes);
+        long expiresAt = System.currentTimeMillis() + tokenTtlMillis;
+        
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES);
+        payload.put(sessionIdBytes).putInt(user.getId()).putLong(expiresAt);
+        byte[] payloadBytes = payload.array();
+        
+        String token = encode(payloadBytes) + "." + encode(sign(payloadBytes));
+        Session session = new Session(encode(sessionIdBytes), token, user.getId(), expiresAt);
+        cache(session);
+        logger.info("Session opened for " + user.getUsername());
+        return session;
+    }
+    
+    /**
+     * Verifies a token and returns its session, or null if the token is forged, malformed,
+     * expired or revoked. The returned session has no rooms if it had left the cache.
+     */
+    public Session resume(String token) {
+        Session verified = verify(token);
+        if (verified == null) {
+            return null;
+        }
+        if (revokedSessions.containsKey(verified.getSessionId())) {
+            logger.debug("Rejected revoked session " + verified.getSessionId());
+            return null;
+        }
+        
+        long now = System.currentTimeMillis();
+        Session cached = sessions.get(verified.getSessionId());
+        if (cached != null && !cached.isIdle(now, idleTimeoutMillis)) {
+            cached.touch(now);
+            return cached;
+        }
+        
+        cache(verified);
+        logger.debug("Session " + verified.getSessionId() + " resumed without cached rooms");
+        return verified;
+    }
+    
+    /**
+     * Cheap format check, to tell a pasted token from a username
+     */
+    public boolean looksLikeToken(String value) {
+        int dot = value != null ? value.indexOf('.') : -1;
+        return dot > 0 && dot == value.lastIndexOf('.') && value.length() > PAYLOAD_BYTES;
+    }
+    
+    /**
+     * Ends a session on sign-out; its token can no longer be resumed
+     */
+    public void closeSession(Session session) {
+        if (session != null) {
+            revokedSessions.put(session.getSessionId(), session.getExpiresAt());
+            sessions.remove(session.getSessionId());
+            logger.info("Session " + session.getSessionId() + " closed");
+        }
+    }
+    
+    public int getCachedSessionCount() {
+        return sessions.size();
+    }
+    
+    private Session verify(String token) {
+        if (!looksLikeToken(token)) {
+            return null;
+        }
+        
+        int dot = token.indexOf('.');
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        
+        if (payloadBytes.length != PAYLOAD_BYTES || !MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            logger.warn("Rejected session token with invalid signature");
+            return null;
+        }
+        
+        ByteBuffer payload = ByteBuffer.wrap(payloadBytes);
+        byte[] sessionIdBytes = new byte[SESSION_ID_BYTES];
+        payload.get(sessionIdBytes);
+        int userId = payload.getInt();
+        long expiresAt = payload.getLong();
+        if (expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        return new Session(encode(sessionIdBytes), token, userId, expiresAt);
+    }
+    
+    private void cache(Session session) {
+        if (sessions.put(session.getSessionId(), session) != null) {
+            // Re-cached after going idle: move it to the back instead of tracking it twice
+            creationOrder.remove(session.getSessionId());
+        }
+        creationOrder.add(session.getSessionId());
+        while (sessions.size() > maxCachedSessions) {
+            String oldest = creationOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            sessions.remove(oldest);
+        }
+    }
+    
+    private void sweepExpired() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.isIdle(now, idleTimeoutMillis) || session.getExpiresAt() <= now);
+        creationOrder.removeIf(sessionId -> !sessions.containsKey(sessionId));
+        revokedSessions.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+    
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+    
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+    
+    private byte[] loadSecret() {
+        String configured = System.getProperty("chatapp.session.secret");
+        if (configured != null && !configured.isEmpty()) {
+            return configured.getBytes(StandardCharsets.UTF_8);
+        }
+        logger.warn("No chatapp.session.secret set; session tokens will not survive a restart");
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        return secret;
+    }
+    
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+    
+    /**
+     * A resumable client session: its user and the rooms it has joined
+     */
+    public static final class Session {
+        private final String sessionId;
+        private final String token;
+        private final int userId;
+        private final long expiresAt;
+        private final Set<String> roomIds;
+        private volatile String activeRoomId;
+        private volatile long lastAccess;
+        
+        private Session(String sessionId, String token, int userId, long expiresAt) {
+            this.sessionId = sessionId;
+            this.token = token;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+            this.roomIds = ConcurrentHashMap.newKeySet();
+            this.lastAccess = System.currentTimeMillis();
+        }
+        
+        public void roomJoined(String roomId) {
+            roomIds.add(roomId);
+            activeRoomId = roomId;
+            touch(System.currentTimeMillis());
+        }
+        
+        public void roomLeft(String roomId) {
+            roomIds.remove(roomId);
+            if (roomId.equals(activeRoomId)) {
+                activeRoomId = null;
+            }
+            touch(System.currentTimeMillis());
+        }
+        
+        public String getSessionId() {
+            return sessionId;
+        }
+        
+        public String getToken() {
+            return token;
+        }
+        
+        public int getUserId() {
+            return userId;
+        }
+        
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+        
+        public Set<String> getRoomIds() {
+            return Set.copyOf(roomIds);
+        }
+        
+        // Room the client was viewing, or null
+        public String getActiveRoomId() {
+            return activeRoomId;
+        }
+        
+        private void touch(long now) {
+            lastAccess = now;
+        }
+        
+        private boolean isIdle(long now, long idleTimeoutMillis) {
+            return now - lastAccess >= idleTimeoutMillis;
+        }
+    }
+}
\ No newline at end of file
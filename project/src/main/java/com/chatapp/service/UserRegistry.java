@@ -0,0 +1,281 @@
+package com.chatapp.service;
+
+import com.chatapp.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+
+/**
+ * Registry of users by dense int ID and by case-insensitive name
+ *
+ * IDs index straight into an array. Names are found through an open-addressing table of user IDs
+ * that is hashed and compared against the caller's string in place, ignoring surrounding
+ * whitespace and case, so lookups allocate nothing. Writers take a stamped write lock; readers run
+ * optimistically and only lock if a write raced them.
+ */
+final class UserRegistry {
+    private static final int EMPTY = -1;
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private final StampedLock lock;
+    private User[] usersById;
+    // Open-addressing table of the IDs of named users
+    private int[] nameSlots;
+    private int namedCount;
+    private int nextId;
+    
+    UserRegistry() {
+        this.lock = new StampedLock();
+        this.usersById = new User[64];
+        this.nameSlots = new int[128];
+        Arrays.fill(nameSlots, EMPTY);
+    }
+    
+    /**
+     * Returns the user with this ID, including users whose name has since been removed
+     */
+    User get(int id) {
+        long stamp = lock.tryOptimisticRead();
+        User[] users = usersById;
+        User user = id >= 0 && id < users.length ? users[id] : null;
+        if (lock.validate(stamp)) {
+            return user;
+        }
+        
+        stamp = lock.readLock();
+        try {
+            return id >= 0 && id < usersById.length ? usersById[id] : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    User getByName(String name) {
+        long stamp = lock.tryOptimisticRead();
+        User user = findByName(name, usersById, nameSlots);
+        if (lock.validate(stamp)) {
+            return user;
+        }
+        
+        stamp = lock.readLock();
+        try {
+            return findByName(name, usersById, nameSlots);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    /**
+     * Returns the user registered under name, or registers the one built by factory from the next ID
+     */
+    User getOrCreate(String name, IntFunction<User> factory) {
+        User existing = getByName(name);
+        if (existing != null) {
+            return existing;
+        }
+        
+        long stamp = lock.writeLock();
+        try {
+            existing = findByName(name, usersById, nameSlots);
+            if (existing != null) {
+                return existing;
+            }
+            User user = factory.apply(nextId);
+            add(user);
+            return user;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Registers a restored user under its persisted ID if that ID is free, otherwise under the next
+     * free one. A user already registered under the name wins.
+     */
+    User restore(String name, int id, IntFunction<User> factory) {
+        long stamp = lock.writeLock();
+        try {
+            User existing = findByName(name, usersById, nameSlots);
+            if (existing != null) {
+                return existing;
+            }
+            boolean idFree = id >= 0 && (id >= usersById.length || usersById[id] == null);
+            User user = factory.apply(idFree ? id : nextId);
+            add(user);
+            return user;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Unregisters the name; the user stays resolvable by ID
+     */
+    User removeName(String name) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(name, usersById, nameSlots);
+            if (slot < 0) {
+                return null;
+            }
+            User removed = usersById[nameSlots[slot]];
+            deleteSlot(slot);
+            namedCount--;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    List<User> getNamedUsers() {
+        long stamp = lock.readLock();
+        try {
+            List<User> named = new ArrayList<>(namedCount);
+            for (int id : nameSlots) {
+                if (id != EMPTY) {
+                    named.add(usersById[id]);
+                }
+            }
+            return named;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    int getNamedCount() {
+        long stamp = lock.tryOptimisticRead();
+        int count = namedCount;
+        if (lock.validate(stamp)) {
+            return count;
+        }
+        
+        stamp = lock.readLock();
+        try {
+            return namedCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    
+    // Caller holds the write lock
+    private void add(User user) {
+        int id = user.getId();
+        if (id >= usersById.length) {
+            usersById = Arrays.copyOf(usersById, Math.max(usersById.length << 1, id + 1));
+        }
+        usersById[id] = user;
+        nextId = Math.max(nextId, id + 1);
+        
+        if (++namedCount > nameSlots.length * LOAD_FACTOR) {
+            rehash(nameSlots.length << 1);
+        }
+        insertSlot(nameSlots, id, user.getUsername());
+    }
+    
+    private void insertSlot(int[] slots, int id, String name) {
+        int mask = slots.length - 1;
+        int slot = hashName(name) & mask;
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id;
+    }
+    
+    private void rehash(int capacity) {
+        int[] rehashed = new int[capacity];
+        Arrays.fill(rehashed, EMPTY);
+        for (int id : nameSlots) {
+            if (id != EMPTY) {
+                insertSlot(rehashed, id, usersById[id].getUsername());
+            }
+        }
+        nameSlots = rehashed;
+    }
+    
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private void deleteSlot(int slot) {
+        int mask = nameSlots.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (nameSlots[next] != EMPTY) {
+            int home = hashName(usersById[nameSlots[next]].getUsername()) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                nameSlots[gap] = nameSlots[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        nameSlots[gap] = EMPTY;
+    }
+    
+    private static User findByName(String name, User[] users, int[] slots) {
+        int slot = findSlot(name, users, slots);
+        if (slot < 0) {
+            return null;
+        }
+        int id = slots[slot];
+        return id >= 0 && id < users.length ? users[id] : null;
+    }
+    
+    // Bounds are checked because an optimistic reader may see arrays mid-update
+    private static int findSlot(String name, User[] users, int[] slots) {
+        int start = trimStart(name);
+        int end = trimEnd(name, start);
+        if (start == end) {
+            return -1;
+        }
+        
+        int mask = slots.length - 1;
+        int slot = hashName(name, start, end) & mask;
+        for (int probes = 0; probes < slots.length; probes++) {
+            int id = slots[slot];
+            if (id == EMPTY) {
+                return -1;
+            }
+            User user = id >= 0 && id < users.length ? users[id] : null;
+            if (user != null) {
+                String candidate = user.getUsername();
+                if (candidate.length() == end - start && candidate.regionMatches(true, 0, name, start, end - start)) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    private static int hashName(String name) {
+        int start = trimStart(name);
+        return hashName(name, start, trimEnd(name, start));
+    }
+    
+    // Folds case the way String.regionMatches(true, ...) compares it
+    private static int hashName(String name, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    // Same whitespace rule as String.trim()
+    private static int trimStart(String name) {
+        int start = 0;
+        while (start < name.length() && name.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    
+    private static int trimEnd(String name, int start) {
+        int end = name.length();
+        while (end > start && name.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
\ No newline at end of file
@@ -4,7 +4,8 @@ import com.chatapp.logger.Logger;
 import com.chatapp.logger.LoggerFactory;
 import com.chatapp.model.User;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * SINGLETON PATTERN (Creational)
@@ -16,10 +17,11 @@ public class UserService {
     private static volatile UserService instance;
     private static final Object lock = new Object();
     
-    private final ConcurrentHashMap<String, User> users;
+    // Dense int IDs; users stay resolvable by ID after removal so stored messages can still name their sender
+    private final UserRegistry registry;
     
     private UserService() {
-        this.users = new ConcurrentHashMap<>();
+        this.registry = new UserRegistry();
         logger.info("User Service initialized");
     }
     
@@ -39,38 +41,61 @@ public class UserService {
             throw new IllegalArgumentException("Username cannot be null or empty");
         }
         
-        String normalizedUsername = username.trim().toLowerCase();
-        
-        return users.computeIfAbsent(normalizedUsername, key -> {
-            User newUser = new User(username.trim());
+        return registry.getOrCreate(username, id -> {
+            User newUser = new User(username.trim(), id);
             logger.info("New user created: " + username);
             return newUser;
         });
     }
     
-    public User getUserByUsername(String username) {
+    /**
+     * Registers a user recovered from a snapshot
+     * An already registered user with the same name wins over the restored copy
+     */
+    public User restoreUser(String username, LocalDateTime joinedAt) {
+        return restoreUser(username, -1, joinedAt);
+    }
+    
+    /**
+     * Registers a user recovered from a snapshot under its persisted ID
+     * A fresh ID is assigned if the persisted one is unknown (negative) or already taken
+     */
+    public User restoreUser(String username, int id, LocalDateTime joinedAt) {
         if (username == null || username.trim().isEmpty()) {
-            return null;
+            throw new IllegalArgumentException("Username cannot be null or empty");
         }
         
-        return users.get(username.trim().toLowerCase());
+        return registry.restore(username, id, assignedId -> new User(username, assignedId, joinedAt));
     }
     
-    public boolean userExists(String username) {
-        if (username == null || username.trim().isEmpty()) {
-            return false;
+    public User getUserById(int id) {
+        return registry.get(id);
+    }
+    
+    public List<User> getAllUsers() {
+        return registry.getNamedUsers();
+    }
+    
+    // Case-insensitive and allocation-free, so it is safe on hot paths such as log replay
+    public User getUserByUsername(String username) {
+        if (username == null) {
+            return null;
         }
         
-        return users.containsKey(username.trim().toLowerCase());
+        return registry.getByName(username);
+    }
+    
+    public boolean userExists(String username) {
+        return getUserByUsername(username) != null;
     }
     
     public int getTotalUsers() {
-        return users.size();
+        return registry.getNamedCount();
     }
     
     public void removeUser(String username) {
         if (username != null && !username.trim().isEmpty()) {
-            User removedUser = users.remove(username.trim().toLowerCase());
+            User removedUser = registry.removeName(username);
             if (removedUser != null) {
                 removedUser.setOnline(false);
                 logger.info("User removed: " + username);
@@ -0,0 +1,176 @@
+package com.chatapp.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int keys to long values
+ * Keys and values live in two primitive arrays, so entries cost no objects or boxing.
+ * Not thread-safe; callers guard it with their own lock.
+ */
+public class IntLongHashMap {
+    private static final int FREE = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+    
+    private int[] keys;
+    private long[] values;
+    private int size;
+    
+    public IntLongHashMap() {
+        this(16);
+    }
+    
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new int[capacity];
+        this.values = new long[capacity];
+        Arrays.fill(keys, FREE);
+    }
+    
+    public long get(int key, long defaultValue) {
+        checkKey(key);
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+    
+    public boolean containsKey(int key) {
+        checkKey(key);
+        return find(key) >= 0;
+    }
+    
+    /**
+     * Returns the previous value, or defaultValue if the key was absent
+     */
+    public long put(int key, long value, long defaultValue) {
+        checkKey(key);
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize(keys.length << 1);
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * Returns the removed value, or defaultValue if the key was absent
+     */
+    public long remove(int key, long defaultValue) {
+        checkKey(key);
+        int slot = find(key);
+        if (slot < 0) {
+            return defaultValue;
+        }
+        
+        long removed = values[slot];
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE;
+        size--;
+        return removed;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+    
+    /**
+     * Copies all values into a new array in no particular order
+     */
+    public long[] values() {
+        long[] result = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                result[count++] = values[slot];
+            }
+        }
+        return result;
+    }
+    
+    public void forEach(IntLongConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+    
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+        
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    // Sequential user IDs would cluster without scrambling
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    private static void checkKey(int key) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Key " + FREE + " is reserved");
+        }
+    }
+    
+    @FunctionalInterface
+    public interface IntLongConsumer {
+        void accept(int key, long value);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.chatapp.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size Bloom filter over long keys
+ * Answers "definitely absent" or "possibly present" from a few bit probes in one long array.
+ * Not thread-safe; callers guard it with their own lock.
+ */
+public class LongBloomFilter {
+    private final long[] bits;
+    private final int bitMask;
+    private final int hashCount;
+    
+    /**
+     * Sized for expectedKeys at roughly the given false positive rate
+     * The bit count is rounded up to a power of two
+     */
+    public LongBloomFilter(int expectedKeys, double falsePositiveRate) {
+        if (expectedKeys <= 0) {
+            throw new IllegalArgumentException("Expected keys must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int bitCount = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(64, optimalBits)) - 1) << 1;
+        this.bits = new long[bitCount >>> 6];
+        this.bitMask = bitCount - 1;
+        this.hashCount = Math.max(1, (int) Math.round(-Math.log(falsePositiveRate) / ln2));
+    }
+    
+    public void add(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1; // odd, so the probes never cycle early
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+    
+    public boolean mightContain(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public void clear() {
+        Arrays.fill(bits, 0L);
+    }
+    
+    public int getBitCount() {
+        return bitMask + 1;
+    }
+    
+    public int getHashCount() {
+        return hashCount;
+    }
+    
+    // Both halves of the result feed double hashing, so every input bit must reach both
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+}
\ No newline at end of file